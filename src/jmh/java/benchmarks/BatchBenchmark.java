@@ -0,0 +1,82 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A whole BatchProcessor run over a directory of PNGs, decode and encode included, so
+ * backends can be compared where I/O dominates:
+ *
+ * MANY_SMALL: 200 images of 320x240, mostly file handling and codec work.
+ * FEW_LARGE: 4 images of 3840x2160, mostly filtering.
+ *
+ * The result cache is off, so every run does all the work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Djava.awt.headless=true"})
+public class BatchBenchmark {
+
+    @Param({"MANY_SMALL", "FEW_LARGE"})
+    public String workload;
+
+    @Param({"FORKJOIN", "EXECUTOR", "VIRTUAL"})
+    public String processor;
+
+    @Param({"GRAYSCALE>GAUSSIAN_BLUR"})
+    public String filter;
+
+    private Path input;
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        input = Files.createTempDirectory("batch-bench-in");
+        output = Files.createTempDirectory("batch-bench-out");
+        int count = workload.equals("MANY_SMALL") ? 200 : 4;
+        int[] size = SyntheticImages.parseResolution(workload.equals("MANY_SMALL") ? "320x240" : "3840x2160");
+        for (int i = 0; i < count; i++) {
+            ImageIO.write(SyntheticImages.image(size[0], size[1], i), "png", input.resolve("img" + i + ".png").toFile());
+        }
+    }
+
+    @Benchmark
+    public int runBatch() throws Throwable {
+        int failures = Imaging.batch("--input", input.toString(), "--output", output.toString(),
+                "--pipeline", filter, "--processor", processor, "--no-cache");
+        if (failures != 0) throw new IllegalStateException(failures + " images failed");
+        return failures;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (Path dir : new Path[] {input, output}) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
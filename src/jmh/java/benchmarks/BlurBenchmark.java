@@ -0,0 +1,78 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GAUSSIAN_BLUR(radius) over a 1080p image, reported per pixel. Radius 1 is the 3x3 kernel,
+ * small radii are separable passes and larger ones a box cascade, so the cost per pixel should
+ * stay roughly flat across the whole sweep. The block size is left to the autotuner, which
+ * keeps blocks at least four halos wide; it is resolved once per trial, after calibration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(BlurBenchmark.WIDTH * BlurBenchmark.HEIGHT)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"--add-modules=jdk.incubator.vector"})
+public class BlurBenchmark {
+
+    static final int WIDTH = 1920;
+    static final int HEIGHT = 1080;
+
+    @Param({"1", "2", "3", "4", "8", "16", "32", "64", "100"})
+    public int radius;
+
+    @Param({"FORKJOIN", "EXECUTOR"})
+    public String processor;
+
+    @Param({"1", "4", "8"})
+    public int threads;
+
+    private MethodHandle apply;
+    private Object pipeline;
+    private int blockSize;
+    private BufferedImage image;
+    private int[] pixels;
+    private int[] pristine;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        image = SyntheticImages.image(WIDTH, HEIGHT, 42);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        pristine = pixels.clone();
+        pipeline = Imaging.pipeline("GAUSSIAN_BLUR(" + radius + ")");
+        blockSize = Imaging.tunedBlockSize(processor, pipeline, WIDTH, HEIGHT, threads);
+        apply = Imaging.imageFilter(processor)
+                .asType(MethodType.methodType(void.class, Object.class, BufferedImage.class, int.class, int.class));
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        System.arraycopy(pristine, 0, pixels, 0, pixels.length);
+    }
+
+    @Benchmark
+    public BufferedImage blur() throws Throwable {
+        apply.invokeExact(pipeline, image, threads, blockSize);
+        return image;
+    }
+}
@@ -0,0 +1,83 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One filter pass over a synthetic image, for every backend. The worker pools are created in
+ * warmup, so the measurement covers steady-state filtering only. filter also accepts a chain,
+ * e.g. -p filter=GRAYSCALE>GAUSSIAN_BLUR. The sequential backend ignores threads, blockSize and
+ * tiling. Compare tile layouts with -p tiling=QUADRANT,RASTER,ROW_BANDS,LONGER_AXIS,MORTON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"--add-modules=jdk.incubator.vector"})
+public class FilterBenchmark {
+
+    @Param({"GRAYSCALE", "INVERT", "SEPIA", "GAUSSIAN_BLUR", "EDGE_DETECTION"})
+    public String filter;
+
+    @Param({"SEQUENTIAL", "FORKJOIN", "EXECUTOR", "SIMD", "VIRTUAL"})
+    public String processor;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"64", "128", "256"})
+    public int blockSize;
+
+    @Param({"640x480", "1920x1080", "3840x2160"})
+    public String resolution;
+
+    // TilingStrategy name, or DEFAULT for the backend's default layout
+    @Param({"DEFAULT"})
+    public String tiling;
+
+    private MethodHandle apply;
+    private Object pipeline;
+    private BufferedImage image;
+    private int[] pixels;
+    private int[] pristine;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        int[] size = SyntheticImages.parseResolution(resolution);
+        image = SyntheticImages.image(size[0], size[1], 42);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        pristine = pixels.clone();
+        pipeline = Imaging.pipeline(filter);
+        apply = Imaging.imageFilter(processor, tiling)
+                .asType(MethodType.methodType(void.class, Object.class, BufferedImage.class, int.class, int.class));
+    }
+
+    // Filters work in place; every invocation starts from the same input
+    @Setup(Level.Invocation)
+    public void restore() {
+        System.arraycopy(pristine, 0, pixels, 0, pixels.length);
+    }
+
+    @Benchmark
+    public BufferedImage applyFilter() throws Throwable {
+        apply.invokeExact(pipeline, image, threads, blockSize);
+        return image;
+    }
+}
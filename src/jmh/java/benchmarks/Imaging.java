@@ -0,0 +1,118 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Handles to the application classes. JMH only accepts benchmarks in a named package, and
+ * named packages cannot refer to the default package where the application lives, so the
+ * entry points are looked up once per trial and called through method handles.
+ */
+final class Imaging {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private Imaging() {
+    }
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Application class not on the benchmark classpath: " + name, e);
+        }
+    }
+
+    // FilterPipeline.parse(spec)
+    static Object pipeline(String spec) throws Throwable {
+        Class<?> pipeline = type("FilterPipeline");
+        return LOOKUP.findStatic(pipeline, "parse", MethodType.methodType(pipeline, String.class)).invoke(spec);
+    }
+
+    /**
+     * (pipeline, image, numThreads, blockSize) -> void for an ImageProcessor name. The
+     * sequential backend ignores the last two arguments.
+     */
+    static MethodHandle imageFilter(String processor) throws ReflectiveOperationException {
+        return filter(processor, BufferedImage.class);
+    }
+
+    /**
+     * imageFilter with an explicit TilingStrategy name, bound into the handle. "DEFAULT" keeps
+     * the backend's own default; the sequential backend has no tiling.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static MethodHandle imageFilter(String processor, String tiling) throws ReflectiveOperationException {
+        if (tiling.equals("DEFAULT") || processor.equals("SEQUENTIAL")) {
+            return imageFilter(processor);
+        }
+        Class<?> strategy = type("TilingStrategy");
+        Object value = Enum.valueOf((Class<? extends Enum>) strategy.asSubclass(Enum.class), tiling);
+        MethodHandle tiled = LOOKUP.findStatic(type(owner(processor)), "applyFilter",
+                MethodType.methodType(void.class, type("FilterPipeline"), BufferedImage.class, int.class, int.class, strategy));
+        return MethodHandles.insertArguments(tiled, 4, value);
+    }
+
+    // Same as imageFilter, for a PixelSurface (e.g. a FrameSurface wrapping a decoded frame)
+    static MethodHandle surfaceFilter(String processor) throws ReflectiveOperationException {
+        return filter(processor, type("PixelSurface"));
+    }
+
+    // YuvProcessing.applyFilter(pipeline, frame, numThreads, blockSize)
+    static MethodHandle yuvFilter() throws ReflectiveOperationException {
+        return LOOKUP.findStatic(type("YuvProcessing"), "applyFilter",
+                MethodType.methodType(void.class, type("FilterPipeline"), Frame.class, int.class, int.class));
+    }
+
+    /**
+     * AutoTuner.resolveCalibrated(...).blockSize() for the pinned thread count: the tuned block
+     * size, after waiting for a first-run calibration sweep so that it does not run beside the
+     * measurement.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int tunedBlockSize(String processor, Object pipeline, int width, int height, int threads) throws Throwable {
+        Class<?> backend = type("ImageProcessor");
+        Class<?> profile = type("AutoTuner$Profile");
+        Object value = Enum.valueOf((Class<? extends Enum>) backend.asSubclass(Enum.class), processor);
+        Object resolved = LOOKUP.findStatic(type("AutoTuner"), "resolveCalibrated", MethodType.methodType(profile, backend,
+                type("FilterPipeline"), int.class, int.class, int.class, int.class)).invoke(value, pipeline, width, height, threads, 0);
+        return (int) LOOKUP.findVirtual(profile, "blockSize", MethodType.methodType(int.class)).invoke(resolved);
+    }
+
+    // BatchProcessor.run(args): a whole batch, returning the number of failed files
+    static int batch(String... args) throws Throwable {
+        return (int) LOOKUP.findStatic(type("BatchProcessor"), "run", MethodType.methodType(int.class, String[].class))
+                .invoke(args);
+    }
+
+    // new FrameSurface(frame)
+    static Object frameSurface(Frame frame) throws Throwable {
+        Class<?> surface = type("FrameSurface");
+        return LOOKUP.findConstructor(surface, MethodType.methodType(void.class, Frame.class)).invoke(frame);
+    }
+
+    private static MethodHandle filter(String processor, Class<?> target) throws ReflectiveOperationException {
+        Class<?> pipeline = type("FilterPipeline");
+        if (processor.equals("SEQUENTIAL")) {
+            MethodHandle sequential = LOOKUP.findStatic(type("SequentialProcessing"), "applyFilter",
+                    MethodType.methodType(void.class, pipeline, target));
+            return MethodHandles.dropArguments(sequential, 2, int.class, int.class);
+        }
+        return LOOKUP.findStatic(type(owner(processor)), "applyFilter",
+                MethodType.methodType(void.class, pipeline, target, int.class, int.class));
+    }
+
+    private static String owner(String processor) {
+        return switch (processor) {
+            case "FORKJOIN" -> "ForkJoinProcessing";
+            case "EXECUTOR" -> "ExecutorServiceProcessing";
+            case "SIMD" -> "SimdProcessing";
+            case "VIRTUAL" -> "VirtualThreadProcessing";
+            default -> throw new IllegalArgumentException("No image backend for " + processor);
+        };
+    }
+}
@@ -0,0 +1,103 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Deterministic test content, so benchmarks run anywhere without asset files. Images mix
+ * smooth gradients, hard-edged shapes and noise, which keeps every filter (including edge
+ * detection, whose cost does not depend on content) on realistic data.
+ */
+final class SyntheticImages {
+
+    private SyntheticImages() {
+    }
+
+    // "WIDTHxHEIGHT", e.g. "1920x1080"
+    static int[] parseResolution(String resolution) {
+        String[] parts = resolution.toLowerCase().split("x");
+        return new int[] {Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())};
+    }
+
+    static int pixel(int x, int y, int width, int height, SplittableRandom random) {
+        int r = x * 255 / Math.max(1, width - 1);
+        int g = y * 255 / Math.max(1, height - 1);
+        int b = ((x / 64 + y / 64) & 1) == 0 ? 40 : 215;
+        int noise = random.nextInt(32) - 16;
+        r = Math.max(0, Math.min(255, r + noise));
+        g = Math.max(0, Math.min(255, g + noise));
+        b = Math.max(0, Math.min(255, b + noise));
+        return r << 16 | g << 8 | b;
+    }
+
+    static BufferedImage image(int width, int height, long seed) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = pixel(x, y, width, height, random);
+            }
+            img.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return img;
+    }
+
+    // Packed 8-bit BGR frame, as the grabber produces with AV_PIX_FMT_BGR24
+    static Frame bgrFrame(int width, int height, long seed) {
+        Frame frame = new Frame(width, height, Frame.DEPTH_UBYTE, 3);
+        ByteBuffer buffer = (ByteBuffer) frame.image[0];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = pixel(x, y, width, height, random);
+                int i = y * frame.imageStride + x * 3;
+                buffer.put(i, (byte) rgb);
+                buffer.put(i + 1, (byte) (rgb >> 8));
+                buffer.put(i + 2, (byte) (rgb >> 16));
+            }
+        }
+        return frame;
+    }
+
+    // Contiguous YUV420P frame, as the grabber produces with AV_PIX_FMT_YUV420P
+    static Frame yuvFrame(int width, int height, long seed) {
+        int chromaW = (width + 1) / 2;
+        int chromaH = (height + 1) / 2;
+        Frame frame = new Frame();
+        frame.imageWidth = width;
+        frame.imageHeight = height;
+        frame.imageDepth = Frame.DEPTH_UBYTE;
+        frame.imageChannels = 1;
+        frame.imageStride = width;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(width * height + 2 * chromaW * chromaH);
+        frame.image = new java.nio.Buffer[] {buffer};
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = pixel(x, y, width, height, random);
+                int luma = (int) (0.299 * (rgb >> 16 & 0xFF) + 0.587 * (rgb >> 8 & 0xFF) + 0.114 * (rgb & 0xFF));
+                buffer.put(y * width + x, (byte) luma);
+            }
+        }
+        for (int i = width * height; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) (96 + random.nextInt(64)));
+        }
+        return frame;
+    }
+
+    // Copy of a frame's pixel buffer, used to restore the input before every invocation
+    static ByteBuffer copyOf(Frame frame) {
+        ByteBuffer source = (ByteBuffer) frame.image[0];
+        ByteBuffer copy = ByteBuffer.allocateDirect(source.capacity());
+        copy.put(0, source, 0, source.capacity());
+        return copy;
+    }
+
+    static void restore(Frame frame, ByteBuffer pristine) {
+        ((ByteBuffer) frame.image[0]).put(0, pristine, 0, pristine.capacity());
+    }
+}
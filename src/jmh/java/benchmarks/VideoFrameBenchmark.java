@@ -0,0 +1,116 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.Java2DFrameConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-frame cost of the video paths in VideoProcessor, without decode and encode:
+ *
+ * CONVERT: Frame -> BufferedImage, filter, BufferedImage -> Frame (processVideoInMemory).
+ * ZERO_COPY: filter the BGR frame buffer in place (processVideoZeroCopy).
+ * YUV: filter the YUV420P planes in place (processVideoYuv); processor is ignored.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"--add-modules=jdk.incubator.vector"})
+public class VideoFrameBenchmark {
+
+    @Param({"CONVERT", "ZERO_COPY", "YUV"})
+    public String path;
+
+    @Param({"GRAYSCALE", "GAUSSIAN_BLUR", "EDGE_DETECTION"})
+    public String filter;
+
+    @Param({"SEQUENTIAL", "FORKJOIN", "EXECUTOR", "SIMD", "VIRTUAL"})
+    public String processor;
+
+    @Param({"8"})
+    public int threads;
+
+    @Param({"128"})
+    public int blockSize;
+
+    @Param({"1920x1080", "3840x2160"})
+    public String resolution;
+
+    private Object pipeline;
+    private MethodHandle apply;
+    private Frame frame;
+    private ByteBuffer pristine;
+    private Object surface;
+    private Java2DFrameConverter converter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        int[] size = SyntheticImages.parseResolution(resolution);
+        pipeline = Imaging.pipeline(filter);
+        switch (path) {
+            case "CONVERT" -> {
+                frame = SyntheticImages.bgrFrame(size[0], size[1], 42);
+                converter = new Java2DFrameConverter();
+                apply = Imaging.imageFilter(processor)
+                        .asType(MethodType.methodType(void.class, Object.class, BufferedImage.class, int.class, int.class));
+            }
+            case "ZERO_COPY" -> {
+                frame = SyntheticImages.bgrFrame(size[0], size[1], 42);
+                surface = Imaging.frameSurface(frame);
+                apply = Imaging.surfaceFilter(processor)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class, int.class, int.class));
+            }
+            case "YUV" -> {
+                frame = SyntheticImages.yuvFrame(size[0], size[1], 42);
+                apply = Imaging.yuvFilter()
+                        .asType(MethodType.methodType(void.class, Object.class, Frame.class, int.class, int.class));
+            }
+            default -> throw new IllegalArgumentException("Unknown frame path: " + path);
+        }
+        pristine = SyntheticImages.copyOf(frame);
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        SyntheticImages.restore(frame, pristine);
+    }
+
+    @Benchmark
+    public Object filterFrame() throws Throwable {
+        switch (path) {
+            case "CONVERT" -> {
+                BufferedImage img = converter.convert(frame);
+                apply.invokeExact(pipeline, img, threads, blockSize);
+                return converter.convert(img);
+            }
+            case "ZERO_COPY" -> apply.invokeExact(pipeline, surface, threads, blockSize);
+            default -> apply.invokeExact(pipeline, frame, threads, blockSize);
+        }
+        return frame;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (converter != null) converter.close();
+        frame.close();
+    }
+}
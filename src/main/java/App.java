@@ -12,16 +12,14 @@ public class App {
         try {
             // Load the input image
             BufferedImage originalImage = ImageIO.read(new File("nature.jpg"));
-            int width = originalImage.getWidth();
-            int height = originalImage.getHeight();
             int maxThreads = Runtime.getRuntime().availableProcessors();
             System.out.println("threads,speedup_fk,speedup_ex");
             for (int numThreads = 1; numThreads <= maxThreads; numThreads++) {
-                int numBlocks = numThreads * 2;
-                int imageArea = width * height;
-                int blockArea = Math.max(1, imageArea / numBlocks);
-                int blockSize = (int) Math.ceil(Math.sqrt(blockArea));
                 FilterType selectedFilter = FilterType.EDGE_DETECTION;
+                // Thread count is pinned; the autotuner picks the block size for it here, waiting
+                // for a first-run calibration sweep so that it is not inside the timings below
+                int blockSize = AutoTuner.resolveCalibrated(ImageProcessor.FORKJOIN, FilterPipeline.of(selectedFilter),
+                        originalImage.getWidth(), originalImage.getHeight(), numThreads, 0).blockSize();
                 BufferedImage seqImage = deepCopy(originalImage);
                 BufferedImage parallelFKImage = deepCopy(originalImage);
                 BufferedImage parallelExImage = deepCopy(originalImage);
@@ -0,0 +1,400 @@
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Picks thread count and block size for a backend when the caller leaves them open (passes 0
+ * or less). The first request for a (backend, chain geometry, resolution class, aspect, cores)
+ * combination starts a short calibration sweep in the background, on a synthetic image of that
+ * shape capped at about a megapixel and within a time budget (autotune.budgetMillis,
+ * default 2000). Until the sweep has finished, calls for that key get the heuristic below, so
+ * no caller waits for it. The result is saved to a local profile file (system property
+ * autotune.file, default autotune.properties) that is read back at startup. Chain geometry is
+ * the halo and the summed cost, each rounded to a coarse class, so chains that tile alike share
+ * one calibration.
+ *
+ * A sweep times the real backends, so it waits until no other caller is filtering on the
+ * runtime's shared pools and then runs on pools of its own ({@link ProcessingRuntime#isolated}).
+ * If other work reaches the shared pools before or after any timed run anyway, the sweep measured
+ * contention rather than the machine: it is discarded, not saved, and the heuristic stays in use.
+ *
+ * With -Dautotune.enabled=false the old heuristic is used instead: all configured threads and
+ * square blocks of sqrt(area / (threads * 2)). Either way blocks are kept at least the chain's
+ * {@link FilterPipeline#minBlockSize}, which follows from its halo and declared cost, so a cheap
+ * chain is not cut into tasks too small to pay for their scheduling.
+ */
+public final class AutoTuner {
+
+    // What a call will actually run with
+    public record Profile(int threads, int blockSize) {
+    }
+
+    // A thread budget divided between frames processed at once and tile threads inside each
+    public record FrameSplit(int frameWorkers, int tileThreads) {
+
+        /**
+         * numThreads for each frame worker's filter call. With one tile thread the worker filters
+         * its frame itself; otherwise every worker submits to the runtime pool of the whole
+         * budget, since a pool of tileThreads would be shared by all of them.
+         */
+        public int frameThreads() {
+            return tileThreads == 1 ? 1 : frameWorkers * tileThreads;
+        }
+    }
+
+    /**
+     * Calibration result for one key: the fastest overall configuration, plus the fastest
+     * block size for every thread count tried (used when only the thread count is pinned).
+     */
+    private record Tuning(int threads, int blockSize, Map<Integer, Integer> blockByThreads) {
+
+        int blockFor(int numThreads) {
+            // Closest calibrated thread count
+            int best = threads;
+            for (int t : blockByThreads.keySet()) {
+                if (Math.abs(t - numThreads) < Math.abs(best - numThreads)) best = t;
+            }
+            return blockByThreads.getOrDefault(best, blockSize);
+        }
+
+        // "8x128;1:256,2:128,4:128,8:128"
+        String format() {
+            return threads + "x" + blockSize + ";" + blockByThreads.entrySet().stream()
+                    .map(e -> e.getKey() + ":" + e.getValue())
+                    .collect(Collectors.joining(","));
+        }
+
+        static Tuning parse(String value) {
+            String[] parts = value.split(";");
+            String[] best = parts[0].split("x");
+            Map<Integer, Integer> byThreads = new TreeMap<>();
+            if (parts.length > 1) {
+                for (String entry : parts[1].split(",")) {
+                    String[] kv = entry.split(":");
+                    byThreads.put(Integer.parseInt(kv[0].trim()), Integer.parseInt(kv[1].trim()));
+                }
+            }
+            return new Tuning(Integer.parseInt(best[0].trim()), Integer.parseInt(best[1].trim()), byThreads);
+        }
+    }
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("autotune.enabled"));
+    private static final Path PROFILE_FILE = Path.of(System.getProperty("autotune.file", "autotune.properties"));
+
+    // Calibration images are this many pixels for each resolution class
+    private static final int SD_PIXELS = 640 * 480;
+    private static final int HD_PIXELS = 1920 * 1080;
+    private static final int UHD_PIXELS = 3840 * 2160;
+    // Larger classes are calibrated on a sample of the same shape scaled down to this
+    private static final int SAMPLE_PIXELS = 1 << 20;
+    private static final int RUNS = 3;
+    private static final long BUDGET_NANOS = Long.getLong("autotune.budgetMillis", 2000L) * 1_000_000;
+    // How often a sweep checks whether the shared pools have gone idle
+    private static final long IDLE_POLL_MILLIS = 50;
+
+    // Frames of about this many pixels keep one tile thread busy; larger frames get more
+    private static final long PIXELS_PER_TILE_THREAD = 2_000_000;
+
+    // Each key is calibrated once; callers asking for a key being calibrated use the heuristic
+    private static final Map<String, CompletableFuture<Tuning>> PROFILES = new ConcurrentHashMap<>();
+    // One sweep at a time, so sweeps do not skew each other's timings
+    private static final ExecutorService CALIBRATION = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autotune");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static boolean loaded;
+
+    private AutoTuner() {
+    }
+
+    /**
+     * Thread count and block size for one call. Values above 0 are kept as given; the others
+     * come from the tuned profile for this backend, chain and image shape, or from the heuristic
+     * while that profile is still being calibrated.
+     */
+    public static Profile resolve(ImageProcessor backend, FilterPipeline pipeline, int width, int height, int numThreads, int blockSize) {
+        if (numThreads > 0 && blockSize > 0) {
+            return new Profile(numThreads, blockSize);
+        }
+        CompletableFuture<Tuning> tuning = ENABLED ? tuning(backend, pipeline, width, height) : null;
+        return profile(pipeline, width, height, numThreads, blockSize, tuning != null && tuning.isDone() ? finished(tuning) : null);
+    }
+
+    /**
+     * Same as {@link #resolve}, but waits for the calibration of this key to finish. For
+     * benchmarks, which should neither time a sweep running beside them nor the heuristic.
+     */
+    public static Profile resolveCalibrated(ImageProcessor backend, FilterPipeline pipeline, int width, int height, int numThreads, int blockSize) {
+        if (numThreads > 0 && blockSize > 0 || !ENABLED) {
+            return resolve(backend, pipeline, width, height, numThreads, blockSize);
+        }
+        CompletableFuture<Tuning> tuning = tuning(backend, pipeline, width, height);
+        try {
+            tuning.join();
+        } catch (CompletionException e) {
+            // Reported by the sweep; the heuristic stands in
+        }
+        return profile(pipeline, width, height, numThreads, blockSize, finished(tuning));
+    }
+
+    /**
+     * Splits numThreads (settings().threads() if <= 0) for frame-parallel video. Whole frames
+     * need no synchronisation, so small frames use every thread for frames; large frames also
+     * get tile threads, so fewer of them are in flight and each is finished sooner.
+     */
+    public static FrameSplit frameSplit(int width, int height, int numThreads) {
+        int threads = numThreads > 0 ? numThreads : ProcessingRuntime.settings().threads();
+        int tileThreads = (int) Math.max(1, Math.min(threads, (long) width * height / PIXELS_PER_TILE_THREAD));
+        return new FrameSplit(Math.max(1, threads / tileThreads), tileThreads);
+    }
+
+    // The fixed rule used before tuning: about two square blocks per thread
+    public static int heuristicBlockSize(int width, int height, int numThreads) {
+        int blockArea = Math.max(1, width * height / (Math.max(1, numThreads) * 2));
+        return (int) Math.ceil(Math.sqrt(blockArea));
+    }
+
+    // The tuned values when there are any, the heuristic otherwise
+    private static Profile profile(FilterPipeline pipeline, int width, int height, int numThreads, int blockSize, Tuning tuning) {
+        int threads = numThreads > 0 ? numThreads : tuning != null ? tuning.threads() : ProcessingRuntime.settings().threads();
+        if (blockSize > 0) return new Profile(threads, blockSize);
+        int block = tuning != null ? tuning.blockFor(threads) : heuristicBlockSize(width, height, threads);
+        return new Profile(threads, Math.max(pipeline.minBlockSize(), block));
+    }
+
+    // The result of a finished sweep, or null if it failed
+    private static Tuning finished(CompletableFuture<Tuning> tuning) {
+        return tuning.isCompletedExceptionally() ? null : tuning.join();
+    }
+
+    // The calibration of this key, started in the background on the first request for it
+    private static CompletableFuture<Tuning> tuning(ImageProcessor backend, FilterPipeline pipeline, int width, int height) {
+        loadOnce();
+        int cores = ProcessingRuntime.settings().threads();
+        String key = backend + "." + geometry(pipeline) + "." + resolutionClass(width, height) + "-" + aspect(width, height)
+                + "." + cores + "cores";
+        CompletableFuture<Tuning> created = new CompletableFuture<>();
+        CompletableFuture<Tuning> tuning = PROFILES.putIfAbsent(key, created);
+        if (tuning != null) {
+            return tuning;
+        }
+        CALIBRATION.execute(() -> {
+            try {
+                awaitIdle();
+                created.complete(ProcessingRuntime.isolated(() -> calibrate(backend, pipeline, width, height, cores)));
+                save();
+            } catch (RuntimeException e) {
+                // Kept as failed and not saved, so this run stays on the heuristic instead of retrying the sweep
+                created.completeExceptionally(e);
+                System.err.println("❌ Autotune calibration of " + key + " failed: " + e.getMessage());
+            }
+        });
+        return created;
+    }
+
+    // Halo down to a power of two and cost to the nearest half octave: what decides the block
+    // candidates and their relative speed, but not the literal chain, so GAUSSIAN_BLUR(8) and
+    // GAUSSIAN_BLUR(9) share a profile
+    private static String geometry(FilterPipeline pipeline) {
+        int halo = Integer.highestOneBit(pipeline.haloRadius());
+        double cost = Math.pow(2, Math.round(2 * Math.log(pipeline.cost()) / Math.log(2)) / 2.0);
+        return String.format(Locale.ROOT, "halo%d-cost%.1f", halo, cost);
+    }
+
+    private static Tuning calibrate(ImageProcessor backend, FilterPipeline pipeline, int width, int height, int cores) {
+        // Same aspect ratio as the real image, scaled to the resolution class but no larger than
+        // SAMPLE_PIXELS; block candidates still follow from the class size
+        int pixels = classPixels(width, height);
+        double ratio = (double) width / height;
+        int classW = Math.max(16, (int) Math.round(Math.sqrt(pixels * ratio)));
+        int classH = Math.max(16, pixels / classW);
+        int samplePixels = Math.min(pixels, SAMPLE_PIXELS);
+        int w = Math.max(16, (int) Math.round(Math.sqrt(samplePixels * ratio)));
+        int h = Math.max(16, samplePixels / w);
+        BufferedImage sample = sampleImage(w, h);
+        int[] original = new int[w * h];
+        sample.getRGB(0, 0, w, h, original, 0, w);
+
+        Map<Integer, Integer> blockByThreads = new TreeMap<>();
+        int bestThreads = 1;
+        int bestBlock = heuristicBlockSize(w, h, 1);
+        long bestNanos = Long.MAX_VALUE;
+        long deadline = System.nanoTime() + BUDGET_NANOS;
+        // Most threads first, so a sweep cut short by the budget has tried the likely winner
+        for (int threads : threadCandidates(backend, cores).reversed()) {
+            long fastest = Long.MAX_VALUE;
+            for (int block : blockCandidates(classW, classH, Math.max(w, h), threads, pipeline.minBlockSize())) {
+                if (System.nanoTime() > deadline && bestNanos < Long.MAX_VALUE) break;
+                long nanos = Long.MAX_VALUE;
+                // One warm-up run, then the best of RUNS
+                for (int run = 0; run <= RUNS; run++) {
+                    sample.setRGB(0, 0, w, h, original, 0, w);
+                    requireIdle();
+                    long start = System.nanoTime();
+                    run(backend, pipeline, sample, threads, block);
+                    long elapsed = System.nanoTime() - start;
+                    requireIdle();
+                    if (run > 0) nanos = Math.min(nanos, elapsed);
+                }
+                if (nanos < fastest) {
+                    fastest = nanos;
+                    blockByThreads.put(threads, block);
+                }
+                if (nanos < bestNanos) {
+                    bestNanos = nanos;
+                    bestThreads = threads;
+                    bestBlock = block;
+                }
+            }
+        }
+        return new Tuning(bestThreads, bestBlock, blockByThreads);
+    }
+
+    // Waits until no other caller is filtering on the shared pools
+    private static void awaitIdle() {
+        while (busy()) {
+            try {
+                Thread.sleep(IDLE_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the processing pools to go idle", e);
+            }
+        }
+    }
+
+    // The sweep runs on its own pools, so anything on the shared ones is someone else's job
+    private static void requireIdle() {
+        if (busy()) {
+            throw new IllegalStateException("other filtering overlapped the sweep; result discarded");
+        }
+    }
+
+    private static boolean busy() {
+        ProcessingRuntime.PoolStats stats = ProcessingRuntime.poolStats();
+        return stats.activeThreads() > 0 || stats.queuedTasks() > 0;
+    }
+
+    private static void run(ImageProcessor backend, FilterPipeline pipeline, BufferedImage img, int threads, int block) {
+        switch (backend) {
+            case FORKJOIN -> ForkJoinProcessing.applyFilter(pipeline, img, threads, block);
+            case EXECUTOR -> ExecutorServiceProcessing.applyFilter(pipeline, img, threads, block);
+            case SIMD -> SimdProcessing.applyFilter(pipeline, img, threads, block);
+            case VIRTUAL -> VirtualThreadProcessing.applyFilter(pipeline, img, threads, block);
+            case SEQUENTIAL -> SequentialProcessing.applyFilter(pipeline, img);
+            default -> throw new IllegalArgumentException("Cannot tune processor type: " + backend);
+        }
+    }
+
+    // Powers of two up to the core count, plus the core count itself
+    private static List<Integer> threadCandidates(ImageProcessor backend, int cores) {
+        TreeSet<Integer> candidates = new TreeSet<>();
+        if (backend == ImageProcessor.SEQUENTIAL) {
+            candidates.add(1);
+        } else {
+            for (int t = 1; t <= cores; t *= 2) {
+                candidates.add(t);
+            }
+            candidates.add(cores);
+        }
+        return new ArrayList<>(candidates);
+    }
+
+    // Fixed cache-friendly sizes plus the old heuristic for the class size, none larger than the sample
+    private static List<Integer> blockCandidates(int width, int height, int longest, int threads, int minBlock) {
+        TreeSet<Integer> candidates = new TreeSet<>();
+        for (int block : new int[] {64, 128, 256, 512}) {
+            // Blocks below the chain's minimum would be raised to it anyway
+            if (block < longest && block >= minBlock) candidates.add(block);
+        }
+        candidates.add(Math.min(longest, Math.max(minBlock, heuristicBlockSize(width, height, threads))));
+        return new ArrayList<>(candidates);
+    }
+
+    private static String resolutionClass(int width, int height) {
+        long pixels = (long) width * height;
+        if (pixels < 1_000_000) return "SD";
+        if (pixels < 4_000_000) return "HD";
+        return "UHD";
+    }
+
+    private static int classPixels(int width, int height) {
+        return switch (resolutionClass(width, height)) {
+            case "SD" -> SD_PIXELS;
+            case "HD" -> HD_PIXELS;
+            default -> UHD_PIXELS;
+        };
+    }
+
+    private static String aspect(int width, int height) {
+        double ratio = (double) width / height;
+        if (ratio > 1.2) return "wide";
+        if (ratio < 1 / 1.2) return "tall";
+        return "square";
+    }
+
+    // Gradients, hard edges and noise, so every filter runs on realistic data
+    private static BufferedImage sampleImage(int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        SplittableRandom random = new SplittableRandom(42);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(32) - 16;
+                int r = Filters.clamp(x * 255 / width + noise, 0, 255);
+                int g = Filters.clamp(y * 255 / height + noise, 0, 255);
+                int b = Filters.clamp((((x / 64 + y / 64) & 1) == 0 ? 40 : 215) + noise, 0, 255);
+                row[x] = r << 16 | g << 8 | b;
+            }
+            img.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return img;
+    }
+
+    private static synchronized void loadOnce() {
+        if (loaded) return;
+        loaded = true;
+        if (!Files.exists(PROFILE_FILE)) return;
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(PROFILE_FILE)) {
+            properties.load(reader);
+            for (String key : properties.stringPropertyNames()) {
+                PROFILES.put(key, CompletableFuture.completedFuture(Tuning.parse(properties.getProperty(key))));
+            }
+        } catch (IOException | RuntimeException e) {
+            // A broken profile only means recalibrating
+            System.err.println("❌ Ignoring autotune profile " + PROFILE_FILE + ": " + e.getMessage());
+            PROFILES.clear();
+        }
+    }
+
+    // Writes every finished calibration; sweeps still running are saved when they finish
+    private static synchronized void save() {
+        Properties properties = new Properties();
+        PROFILES.forEach((key, tuning) -> {
+            if (tuning.isDone() && !tuning.isCompletedExceptionally()) properties.setProperty(key, tuning.join().format());
+        });
+        try (Writer writer = Files.newBufferedWriter(PROFILE_FILE)) {
+            properties.store(writer, "Autotuned threads x block size per backend, chain geometry and image shape");
+        } catch (IOException e) {
+            System.err.println("❌ Could not save autotune profile " + PROFILE_FILE + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,392 @@
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Headless batch mode: walks input directories and filters every image and video into an
+ * output directory with the same layout. Needs neither a display nor JavaFX.
+ *
+ * Images are scheduled at two levels. Up to --jobs images are filtered at once, each on one
+ * thread, while images of at least --tile-mp megapixels are additionally split into tiles
+ * across the worker runtime. Decoding and encoding run on their own I/O threads, so disk and
+ * codec work overlaps with filtering. Videos go through the pipelined video engine one at a
+ * time. Outputs are written to a temporary name and renamed when complete, so with --resume
+ * an interrupted batch picks up where it stopped. Results are also kept in the ResultCache, so
+ * re-running a batch over unchanged inputs (even into another output directory) skips the
+ * filtering; --no-cache turns that off.
+ *
+ * With --incremental TOLERANCE videos are filtered by {@link IncrementalFilter}: tiles whose
+ * input did not change since the previous frame by more than TOLERANCE per channel reuse their
+ * previous output, and the share of reused tiles is printed per clip. Tolerance 0 gives the
+ * same output as filtering every frame; larger tolerances are not cached.
+ *
+ * With --processor VIRTUAL every decode, filter and encode step runs on its own virtual thread
+ * instead of the fixed I/O and filter pools; filtering still only occupies as many threads as
+ * there are cores (see {@link VirtualThreadProcessing}).
+ *
+ *   java -cp demo.jar BatchProcessor --input photos --output out --pipeline "GRAYSCALE>GAUSSIAN_BLUR"
+ */
+public class BatchProcessor {
+
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "bmp", "gif");
+    private static final Set<String> VIDEO_EXTENSIONS = Set.of("mp4", "mov", "mkv", "avi");
+
+    private record Options(List<Path> inputs, Path output, FilterPipeline pipeline, ImageProcessor processor,
+                           int threads, int blockSize, int jobs, double tileMegapixels, boolean resume, boolean cache,
+                           int incremental) {
+    }
+
+    private record Job(Path input, Path output) {
+    }
+
+    // A decoded input, or the cached result (already filtered) when there was a hit
+    private record Decoded(ResultCache.Key key, BufferedImage image, boolean cached) {
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        Options options;
+        try {
+            options = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+        try {
+            int failures = run(options);
+            ProcessingRuntime.shutdown();
+            System.exit(failures == 0 ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println("❌ Batch failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Same as the command line, without exiting; returns the number of files that failed
+    public static int run(String... args) throws IOException {
+        return run(parse(args));
+    }
+
+    // Runs the whole batch and returns the number of files that failed
+    static int run(Options options) throws IOException {
+        try (var _ = Instrumentation.beginRun("batch")) {
+            return runJobs(options);
+        }
+    }
+
+    private static int runJobs(Options options) throws IOException {
+        List<Job> images = new ArrayList<>();
+        List<Job> videos = new ArrayList<>();
+        int skipped = 0;
+        for (Path root : options.inputs()) {
+            try (Stream<Path> files = Files.walk(root)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                    String ext = extension(file);
+                    boolean video = VIDEO_EXTENSIONS.contains(ext);
+                    if (!video && !IMAGE_EXTENSIONS.contains(ext)) continue;
+                    Path target = options.output().resolve(root.relativize(file).toString());
+                    if (video) target = target.resolveSibling(stripExtension(target.getFileName().toString()) + ".mp4");
+                    if (options.resume() && isDone(file, target)) {
+                        skipped++;
+                        continue;
+                    }
+                    (video ? videos : images).add(new Job(file, target));
+                }
+            }
+        }
+        System.out.printf("%d images and %d videos to process (%d already done), pipeline %s, %s%n",
+                images.size(), videos.size(), skipped, options.pipeline(), options.processor());
+
+        AtomicInteger failures = new AtomicInteger();
+        // YUV mode only exists for video; images use the fork/join backend instead
+        ImageProcessor imageProcessor = options.processor() == ImageProcessor.YUV ? ImageProcessor.FORKJOIN : options.processor();
+        processImages(images, options, imageProcessor, failures);
+        for (Job job : videos) {
+            Path partial = partialPath(job.output());
+            try {
+                Files.createDirectories(job.output().getParent());
+                long start = System.nanoTime();
+                // A tolerance above 0 keeps small differences, so that output is not the cached result
+                boolean cacheable = options.cache() && options.incremental() <= 0;
+                ResultCache.Key key = cacheable ? ResultCache.key(job.input(), options.pipeline(), options.processor()) : null;
+                if (key != null && ResultCache.copyEncoded(key, partial)) {
+                    System.out.printf("%s: cached%n", job.input());
+                } else {
+                    if (options.incremental() >= 0) {
+                        IncrementalFilter.Stats stats = VideoProcessor.processVideoIncremental(job.input().toString(), partial.toString(),
+                                options.pipeline(), options.processor(), options.threads(), options.incremental());
+                        System.out.printf("%s: %.2f fps, %s%n", job.input(), stats.frames() / ((System.nanoTime() - start) / 1e9), stats);
+                    } else if (options.processor() == ImageProcessor.YUV) {
+                        VideoProcessor.processVideoYuv(job.input().toString(), partial.toString(), options.pipeline(), options.threads(), options.blockSize());
+                        System.out.printf("%s done in %.2f s%n", job.input(), (System.nanoTime() - start) / 1e9);
+                    } else {
+                        VideoPipeline.Report report = VideoPipeline.process(job.input().toString(), partial.toString(), options.pipeline(),
+                                options.processor(), options.threads(), options.blockSize(), options.jobs(), true);
+                        System.out.printf("%s: %.2f fps%n", job.input(), report.framesPerSecond());
+                    }
+                    if (key != null) ResultCache.putEncoded(key, partial);
+                }
+                Files.move(partial, job.output(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                System.err.println("❌ " + job.input() + ": " + e.getMessage());
+                deletePartial(partial);
+            }
+        }
+        return failures.get();
+    }
+
+    private static void processImages(List<Job> images, Options options, ImageProcessor processor, AtomicInteger failures) {
+        if (images.isEmpty()) return;
+        boolean virtual = processor == ImageProcessor.VIRTUAL;
+        ExecutorService io = virtual ? ProcessingRuntime.virtualThreads() : Executors.newFixedThreadPool(Math.max(2, options.jobs() / 2), daemon("batch-io"));
+        ExecutorService filters = virtual ? ProcessingRuntime.virtualThreads() : Executors.newFixedThreadPool(options.jobs(), daemon("batch-filter"));
+        // Bounds the number of decoded images held in memory at once
+        Semaphore inFlight = new Semaphore(options.jobs() * 2);
+        LongAdder pixels = new LongAdder();
+        LongAdder cacheHits = new LongAdder();
+        AtomicInteger done = new AtomicInteger();
+        long tilePixels = (long) (options.tileMegapixels() * 1_000_000);
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+        long start = System.nanoTime();
+        try {
+            for (Job job : images) {
+                inFlight.acquireUninterruptibly();
+                CompletableFuture<Void> future = CompletableFuture
+                        .supplyAsync(() -> decode(job.input(), options), io)
+                        .thenApplyAsync(decoded -> {
+                            BufferedImage img = decoded.image();
+                            long area = (long) img.getWidth() * img.getHeight();
+                            pixels.add(area);
+                            if (decoded.cached()) {
+                                cacheHits.increment();
+                                return decoded;
+                            }
+                            // Large images also go tile-parallel; small ones stay on this thread, except
+                            // that VIRTUAL always hands its tiles to the capped CPU pool
+                            if (area >= tilePixels || virtual) {
+                                int innerThreads = area >= tilePixels ? options.threads() : 1;
+                                VideoProcessor.filterFrame(img, options.pipeline(), processor, innerThreads, options.blockSize());
+                            } else {
+                                SequentialProcessing.applyFilter(processor == ImageProcessor.SIMD ? SimdFilters.KERNELS : Filters.SCALAR,
+                                        options.pipeline(), PixelSurface.of(img));
+                            }
+                            return decoded;
+                        }, filters)
+                        .thenAcceptAsync(result -> {
+                            encode(result.image(), job.output());
+                            // Stored from the I/O threads too, since the disk tier writes a PNG
+                            if (result.key() != null && !result.cached()) cache(result.key(), result.image());
+                        }, io)
+                        .handle((unused, failure) -> {
+                            inFlight.release();
+                            if (failure != null) {
+                                failures.incrementAndGet();
+                                Throwable cause = failure;
+                                while (cause.getCause() != null && (cause instanceof CompletionException || cause instanceof UncheckedIOException)) {
+                                    cause = cause.getCause();
+                                }
+                                System.err.println("❌ " + job.input() + ": " + cause.getMessage());
+                            } else {
+                                done.incrementAndGet();
+                            }
+                            return null;
+                        });
+                pending.add(future);
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            // The virtual-thread executor is shared and stays up
+            if (!virtual) {
+                io.shutdown();
+                filters.shutdown();
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double megapixels = pixels.sum() / 1e6;
+        System.out.printf("%d images (%d from cache), %.1f MP in %.2f s: %.2f images/s, %.2f MP/s%n",
+                done.get(), cacheHits.sum(), megapixels, seconds, done.get() / seconds, megapixels / seconds);
+        if (options.cache()) System.out.println(ResultCache.stats());
+    }
+
+    // A cache hit skips decoding the input as well as filtering it
+    private static Decoded decode(Path file, Options options) {
+        try {
+            ResultCache.Key key = options.cache() ? ResultCache.key(file, options.pipeline()) : null;
+            BufferedImage cached = key == null ? null : ResultCache.getImage(key);
+            if (cached != null) return new Decoded(key, cached, true);
+            BufferedImage img = ImageIO.read(file.toFile());
+            if (img == null) throw new IOException("Unsupported image format");
+            return new Decoded(key, filterable(img), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Palette and grey images (GIFs, many PNGs) are filtered in place through setRGB, which would
+    // snap every result back to the palette or to grey, so they are filtered as packed RGB instead
+    private static BufferedImage filterable(BufferedImage img) {
+        if (RasterAccess.layoutOf(img) != RasterAccess.Layout.GENERIC) return img;
+        int width = img.getWidth();
+        BufferedImage rgb = new BufferedImage(width, img.getHeight(),
+                img.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[width];
+        for (int y = 0; y < img.getHeight(); y++) {
+            RasterAccess.read(img, 0, y, width, 1, row, 0, width);
+            RasterAccess.write(rgb, 0, y, width, 1, row, 0, width);
+        }
+        return rgb;
+    }
+
+    private static void cache(ResultCache.Key key, BufferedImage img) {
+        try {
+            ResultCache.putImage(key, img);
+        } catch (IOException e) {
+            // The output is still written; only the next run loses the shortcut
+            System.err.println("❌ Could not cache result: " + e.getMessage());
+        }
+    }
+
+    private static void encode(BufferedImage img, Path target) {
+        Path partial = partialPath(target);
+        try {
+            Files.createDirectories(target.getParent());
+            if (!ImageIO.write(img, extension(target), partial.toFile())) {
+                throw new IOException("No " + extension(target) + " writer for image type " + img.getType());
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deletePartial(partial);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // A failed output leaves nothing behind; --resume would not pick up a partial file anyway
+    private static void deletePartial(Path partial) {
+        try {
+            Files.deleteIfExists(partial);
+        } catch (IOException e) {
+            System.err.println("❌ Could not delete " + partial + ": " + e.getMessage());
+        }
+    }
+
+    // Finished outputs are only ever created by a rename, so any output newer than its input is complete
+    private static boolean isDone(Path input, Path output) throws IOException {
+        return Files.exists(output) && Files.getLastModifiedTime(output).compareTo(Files.getLastModifiedTime(input)) >= 0;
+    }
+
+    // Same directory (so the rename is atomic), hidden, and keeps the extension for ImageIO/FFmpeg
+    private static Path partialPath(Path target) {
+        return target.resolveSibling(".partial-" + target.getFileName());
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static String stripExtension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Options parse(String[] args) {
+        List<Path> inputs = new ArrayList<>();
+        Path output = null;
+        FilterPipeline pipeline = null;
+        ImageProcessor processor = ImageProcessor.FORKJOIN;
+        int threads = 0;
+        int blockSize = 0;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        double tileMegapixels = 4;
+        boolean resume = false;
+        boolean cache = true;
+        int incremental = -1;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--input" -> inputs.add(Path.of(value(args, ++i, arg)));
+                case "--output" -> output = Path.of(value(args, ++i, arg));
+                case "--filter", "--pipeline" -> pipeline = FilterPipeline.parse(value(args, ++i, arg));
+                case "--processor" -> processor = ImageProcessor.valueOf(value(args, ++i, arg).toUpperCase(Locale.ROOT));
+                case "--threads" -> threads = Integer.parseInt(value(args, ++i, arg));
+                case "--block" -> blockSize = Integer.parseInt(value(args, ++i, arg));
+                case "--jobs" -> jobs = Integer.parseInt(value(args, ++i, arg));
+                case "--tile-mp" -> tileMegapixels = Double.parseDouble(value(args, ++i, arg));
+                case "--resume" -> resume = true;
+                case "--no-cache" -> cache = false;
+                case "--incremental" -> {
+                    incremental = Integer.parseInt(value(args, ++i, arg));
+                    if (incremental < 0 || incremental > 255) {
+                        throw new IllegalArgumentException("--incremental tolerance must be between 0 and 255");
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (inputs.isEmpty() || output == null || pipeline == null) {
+            throw new IllegalArgumentException("--input, --output and --filter/--pipeline are required");
+        }
+        for (Path input : inputs) {
+            if (!Files.isDirectory(input)) throw new IllegalArgumentException("Not a directory: " + input);
+        }
+        if (jobs < 1) throw new IllegalArgumentException("--jobs must be at least 1");
+        if (incremental >= 0) {
+            switch (processor) {
+                case SEQUENTIAL, FORKJOIN, SIMD, EXECUTOR -> { }
+                default -> throw new IllegalArgumentException("--incremental is not supported with --processor " + processor);
+            }
+        }
+        return new Options(inputs, output, pipeline, processor, threads, blockSize, jobs, tileMegapixels, resume, cache, incremental);
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+        return args[i];
+    }
+
+    private static void printUsage() {
+        System.err.println("""
+                Usage: BatchProcessor --input DIR [--input DIR ...] --output DIR --filter NAME|--pipeline "A>B"
+                                      [--processor SEQUENTIAL|FORKJOIN|EXECUTOR|SIMD|VIRTUAL|YUV] [--threads N] [--block N]
+                                      [--jobs N] [--tile-mp MEGAPIXELS] [--resume] [--no-cache] [--incremental TOLERANCE]
+                  --threads/--block  tile parallelism inside large images (0 = autotuned)
+                  --jobs             images filtered concurrently, and frame workers per video
+                  --tile-mp          images at least this large are also split into tiles (default 4)
+                  --resume           skip files whose output is already complete
+                  --no-cache         always filter, and do not store results in the result cache
+                  --incremental      videos only re-filter tiles that changed by more than TOLERANCE (0-255, 0 = exact)""");
+    }
+}
@@ -0,0 +1,267 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gaussian blur of any radius, with standard deviation radius / 2. Radius 1 is the classic 3x3
+ * kernel of {@link Filters#gaussianBlur}. Up to {@link #SEPARABLE_MAX_RADIUS} the Gaussian is
+ * sampled over [-radius, radius] and applied as a horizontal and a vertical pass, 2r + 1 taps
+ * each. Larger radii use a cascade of three box filters with the same variance, each a running
+ * sum, so the cost per pixel does not grow with the radius.
+ *
+ * Channels are kept with {@link #PRECISION} fraction bits between passes and rounded once at
+ * the end. Every pass clamps its neighbours to the rectangle it reads, and that rectangle only
+ * ends short of the halo at the image border, so the result does not depend on the tiling.
+ */
+public final class Blur {
+
+    // Largest radius applied as sampled separable passes; the box cascade is cheaper above it
+    static final int SEPARABLE_MAX_RADIUS = 3;
+    private static final int BOXES = 3;
+    private static final int PRECISION = 6;
+    private static final int WEIGHT_BITS = 16;
+    private static final int BOX_BITS = 16;
+    private static final int BOX_ROUND = 1 << (BOX_BITS - 1);
+
+    // The passes of one radius: the Gaussian's weights for a single sampled pass, or null for boxes
+    private record Plan(int[] passes, int[] weights, int halo) {
+    }
+
+    // Built once per radius, so applying a tile does not recompute the weights
+    private static final Map<Integer, Plan> PLANS = new ConcurrentHashMap<>();
+
+    private Blur() {
+    }
+
+    public static double sigma(int radius) {
+        return radius / 2.0;
+    }
+
+    // How many pixels beyond a block the blur reads
+    public static int halo(int radius) {
+        return plan(radius).halo();
+    }
+
+    private static Plan plan(int radius) {
+        if (radius < 1) throw new IllegalArgumentException("Blur radius must be at least 1: " + radius);
+        return PLANS.computeIfAbsent(radius, r -> {
+            if (r <= SEPARABLE_MAX_RADIUS) return new Plan(new int[] {r}, kernel(r), r);
+            int[] passes = boxes(r);
+            return new Plan(passes, null, Arrays.stream(passes).sum());
+        });
+    }
+
+    /**
+     * Blurs src, which covers the image rectangle (srcX, srcY, srcW, srcH), into dst, which
+     * covers (dstX, dstY, dstW, dstH) and must lie inside it; the same contract as
+     * {@link Filters#gaussianBlur}, with a halo of {@link #halo}(radius).
+     */
+    public static void apply(int radius, int[] src, int srcX, int srcY, int srcW, int srcH,
+                             int[] dst, int dstX, int dstY, int dstW, int dstH) {
+        if (radius == 1) {
+            Filters.gaussianBlur(src, srcX, srcY, srcW, srcH, dst, dstX, dstY, dstW, dstH);
+            return;
+        }
+        Plan plan = plan(radius);
+        int[] passes = plan.passes();
+        int[] weights = plan.weights();
+        int halo = plan.halo();
+
+        // Only the rows the vertical passes will read are blurred horizontally
+        int y0 = Math.max(srcY, dstY - halo);
+        int y1 = Math.min(srcY + srcH, dstY + dstH + halo);
+        int rows = y1 - y0;
+        int plane = dstW * rows;
+        int[] scratch = TileScratch.get(TileScratch.BLUR, 6 * srcW + 6 * plane);
+        int rowA = 0, rowB = 3 * srcW, planeA = 6 * srcW, planeB = planeA + 3 * plane;
+
+        for (int y = y0; y < y1; y++) {
+            int s = (y - srcY) * srcW;
+            for (int i = 0; i < srcW; i++) {
+                int rgb = src[s + i];
+                scratch[rowA + i] = (rgb >> 16 & 0xFF) << PRECISION;
+                scratch[rowA + srcW + i] = (rgb >> 8 & 0xFF) << PRECISION;
+                scratch[rowA + 2 * srcW + i] = (rgb & 0xFF) << PRECISION;
+            }
+            // [lo, hi) is the image range the current row holds
+            int lo = srcX, hi = srcX + srcW, remaining = halo;
+            int in = rowA, out = rowB;
+            for (int pass : passes) {
+                remaining -= pass;
+                int outLo = Math.max(lo, dstX - remaining);
+                int outHi = Math.min(hi, dstX + dstW + remaining);
+                for (int c = 0; c < 3; c++) {
+                    int from = in + c * srcW - lo;
+                    int to = out + c * srcW - outLo;
+                    if (weights != null) {
+                        kernelRow(scratch, from, lo, hi, scratch, to, outLo, outHi, weights, pass);
+                    } else {
+                        boxRow(scratch, from, lo, hi, scratch, to, outLo, outHi, pass);
+                    }
+                }
+                lo = outLo;
+                hi = outHi;
+                int swap = in;
+                in = out;
+                out = swap;
+            }
+            for (int c = 0; c < 3; c++) {
+                System.arraycopy(scratch, in + c * srcW, scratch, planeA + c * plane + (y - y0) * dstW, dstW);
+            }
+        }
+
+        int lo = y0, hi = y1, remaining = halo;
+        int in = planeA, out = planeB;
+        for (int pass : passes) {
+            remaining -= pass;
+            int outLo = Math.max(lo, dstY - remaining);
+            int outHi = Math.min(hi, dstY + dstH + remaining);
+            for (int c = 0; c < 3; c++) {
+                int from = in + c * plane - lo * dstW;
+                int to = out + c * plane - outLo * dstW;
+                if (weights != null) {
+                    kernelColumns(scratch, from, lo, hi, scratch, to, outLo, outHi, dstW, weights, pass);
+                } else {
+                    boxColumns(scratch, from, lo, hi, scratch, to, outLo, outHi, dstW, pass);
+                }
+            }
+            lo = outLo;
+            hi = outHi;
+            int swap = in;
+            in = out;
+            out = swap;
+        }
+
+        int round = 1 << (PRECISION - 1);
+        for (int i = 0; i < dstW * dstH; i++) {
+            int r = Math.min(255, (scratch[in + i] + round) >> PRECISION);
+            int g = Math.min(255, (scratch[in + plane + i] + round) >> PRECISION);
+            int b = Math.min(255, (scratch[in + 2 * plane + i] + round) >> PRECISION);
+            dst[i] = 0xFF000000 | r << 16 | g << 8 | b;
+        }
+    }
+
+    // Radii of three boxes whose cascade has the Gaussian's variance (widths 2r + 1 differing by
+    // at most 2, as in W. Wells, "Efficient synthesis of Gaussian filters by cascaded uniform filters")
+    static int[] boxes(int radius) {
+        double variance = sigma(radius) * sigma(radius);
+        int lower = (int) Math.floor(Math.sqrt(12 * variance / BOXES + 1));
+        if (lower % 2 == 0) lower--;
+        int upper = lower + 2;
+        // How many boxes take the lower width, so the widths' variances add up to the Gaussian's
+        int m = (int) Math.round((12 * variance - BOXES * lower * lower - 4.0 * BOXES * lower - 3 * BOXES) / (-4.0 * lower - 4));
+        int[] radii = new int[BOXES];
+        for (int i = 0; i < BOXES; i++) {
+            radii[i] = ((i < m ? lower : upper) - 1) / 2;
+        }
+        return radii;
+    }
+
+    // The sampled Gaussian as 2r + 1 integer weights summing to 2^WEIGHT_BITS
+    private static int[] kernel(int radius) {
+        double sigma = sigma(radius);
+        double[] g = new double[2 * radius + 1];
+        double total = 0;
+        for (int k = -radius; k <= radius; k++) {
+            g[k + radius] = Math.exp(-k * k / (2 * sigma * sigma));
+            total += g[k + radius];
+        }
+        int[] weights = new int[g.length];
+        int sum = 0;
+        for (int k = 0; k < g.length; k++) {
+            weights[k] = (int) Math.round(g[k] / total * (1 << WEIGHT_BITS));
+            sum += weights[k];
+        }
+        weights[radius] += (1 << WEIGHT_BITS) - sum;
+        return weights;
+    }
+
+    // One channel of a row: in[base + x] holds image column x for x in [lo, hi)
+    private static void boxRow(int[] in, int inBase, int lo, int hi, int[] out, int outBase, int outLo, int outHi, int radius) {
+        int scale = boxScale(radius);
+        int last = hi - 1;
+        int sum = 0;
+        for (int k = -radius; k <= radius; k++) {
+            sum += in[inBase + Math.max(lo, Math.min(last, outLo + k))];
+        }
+        // Clamping is only needed where the window reaches past either end of the row
+        int from = Math.min(outHi, Math.max(outLo, lo + radius));
+        int to = Math.max(from, Math.min(outHi, last - radius));
+        int x = outLo;
+        for (; x < from; x++) {
+            out[outBase + x] = (sum * scale + BOX_ROUND) >>> BOX_BITS;
+            sum += in[inBase + Math.min(last, x + radius + 1)] - in[inBase + Math.max(lo, x - radius)];
+        }
+        int add = inBase + radius + 1;
+        int drop = inBase - radius;
+        for (; x < to; x++) {
+            out[outBase + x] = (sum * scale + BOX_ROUND) >>> BOX_BITS;
+            sum += in[add + x] - in[drop + x];
+        }
+        for (; x < outHi; x++) {
+            out[outBase + x] = (sum * scale + BOX_ROUND) >>> BOX_BITS;
+            sum += in[inBase + Math.min(last, x + radius + 1)] - in[inBase + Math.max(lo, x - radius)];
+        }
+    }
+
+    // 2^BOX_BITS / (2r + 1): a box sum of channels with PRECISION fraction bits times this fits
+    // an int, and its rounding is far below the last fraction bit
+    private static int boxScale(int radius) {
+        return ((1 << BOX_BITS) + radius) / (2 * radius + 1);
+    }
+
+    private static void kernelRow(int[] in, int inBase, int lo, int hi, int[] out, int outBase, int outLo, int outHi,
+                                  int[] weights, int radius) {
+        int last = hi - 1;
+        for (int x = outLo; x < outHi; x++) {
+            int acc = 1 << (WEIGHT_BITS - 1);
+            if (x - radius >= lo && x + radius <= last) {
+                int from = inBase + x - radius;
+                for (int k = 0; k < weights.length; k++) acc += weights[k] * in[from + k];
+            } else {
+                for (int k = -radius; k <= radius; k++) {
+                    acc += weights[k + radius] * in[inBase + Math.max(lo, Math.min(last, x + k))];
+                }
+            }
+            out[outBase + x] = acc >> WEIGHT_BITS;
+        }
+    }
+
+    // One channel of a plane of rows width wide: row y starts at in[base + y * width], y in [lo, hi)
+    private static void boxColumns(int[] in, int inBase, int lo, int hi, int[] out, int outBase, int outLo, int outHi,
+                                   int width, int radius) {
+        int scale = boxScale(radius);
+        int last = hi - 1;
+        int[] sums = TileScratch.get(TileScratch.GRAY, width);
+        Arrays.fill(sums, 0, width, 0);
+        for (int k = -radius; k <= radius; k++) {
+            int row = inBase + Math.max(lo, Math.min(last, outLo + k)) * width;
+            for (int i = 0; i < width; i++) sums[i] += in[row + i];
+        }
+        for (int y = outLo; y < outHi; y++) {
+            int to = outBase + y * width;
+            int add = inBase + Math.min(last, y + radius + 1) * width;
+            int drop = inBase + Math.max(lo, y - radius) * width;
+            for (int i = 0; i < width; i++) {
+                int sum = sums[i];
+                out[to + i] = (sum * scale + BOX_ROUND) >>> BOX_BITS;
+                sums[i] = sum + in[add + i] - in[drop + i];
+            }
+        }
+    }
+
+    private static void kernelColumns(int[] in, int inBase, int lo, int hi, int[] out, int outBase, int outLo, int outHi,
+                                      int width, int[] weights, int radius) {
+        int last = hi - 1;
+        for (int y = outLo; y < outHi; y++) {
+            int to = outBase + y * width;
+            for (int i = 0; i < width; i++) out[to + i] = 1 << (WEIGHT_BITS - 1);
+            for (int k = -radius; k <= radius; k++) {
+                int row = inBase + Math.max(lo, Math.min(last, y + k)) * width;
+                int w = weights[k + radius];
+                for (int i = 0; i < width; i++) out[to + i] += w * in[row + i];
+            }
+            for (int i = 0; i < width; i++) out[to + i] >>= WEIGHT_BITS;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.OptionalInt;
+import java.util.Set;
+
+/**
+ * A {@link FilterType} as a {@link PixelFilter}, with the radius only GAUSSIAN_BLUR takes (1 is
+ * the 3x3 kernel; written "GAUSSIAN_BLUR(8)" in a spec, or just the name at radius 1). This is
+ * the one place the built-in filters are dispatched to their kernels.
+ */
+public record BuiltinFilter(FilterType type, int radius) implements PixelFilter {
+
+    public BuiltinFilter {
+        if (radius < 1 || radius > 1 && !type.hasRadius()) {
+            throw new IllegalArgumentException("Invalid radius " + radius + " for " + type);
+        }
+    }
+
+    public BuiltinFilter(FilterType type) {
+        this(type, 1);
+    }
+
+    @Override
+    public String spec() {
+        return radius == 1 ? type.name() : type.name() + "(" + radius + ")";
+    }
+
+    @Override
+    public Footprint footprint() {
+        return type.footprint(radius);
+    }
+
+    @Override
+    public PointProgram.Op pointOp() {
+        return type.needsNeighbours() ? null : PointProgram.of(type);
+    }
+
+    @Override
+    public void apply(PixelKernels kernels, int[] src, int[] dst, int off, int len) {
+        if (dst != src) System.arraycopy(src, off, dst, off, len);
+        switch (type) {
+            case GRAYSCALE -> kernels.grayscale(dst, off, len);
+            case INVERT -> kernels.invert(dst, off, len);
+            case SEPIA -> kernels.sepia(dst, off, len);
+            default -> PixelFilter.super.apply(kernels, src, dst, off, len);
+        }
+    }
+
+    @Override
+    public void apply(PixelKernels kernels, int[] src, int sx, int sy, int sw, int sh,
+                      int[] dst, int dx, int dy, int dw, int dh, int imgW, int imgH) {
+        switch (type) {
+            case GAUSSIAN_BLUR -> {
+                if (radius == 1) {
+                    kernels.gaussianBlur(src, sx, sy, sw, sh, dst, dx, dy, dw, dh);
+                } else {
+                    Blur.apply(radius, src, sx, sy, sw, sh, dst, dx, dy, dw, dh);
+                }
+            }
+            case EDGE_DETECTION -> {
+                // Sobel leaves the one-pixel image border as it was
+                int ix = Math.max(dx, 1);
+                int iy = Math.max(dy, 1);
+                int iw = Math.min(dx + dw, imgW - 1) - ix;
+                int ih = Math.min(dy + dh, imgH - 1) - iy;
+                if (ix == dx && iy == dy && iw == dw && ih == dh) {
+                    kernels.edgeDetection(src, sx, sy, sw, sh, dst, dx, dy, dw, dh);
+                    return;
+                }
+                for (int row = 0; row < dh; row++) {
+                    System.arraycopy(src, (dy - sy + row) * sw + dx - sx, dst, row * dw, dw);
+                }
+                if (iw <= 0 || ih <= 0) return;
+                int[] interior = TileScratch.get(TileScratch.INTERIOR, iw * ih);
+                kernels.edgeDetection(src, sx, sy, sw, sh, interior, ix, iy, iw, ih);
+                for (int row = 0; row < ih; row++) {
+                    System.arraycopy(interior, row * iw, dst, (iy - dy + row) * dw + ix - dx, iw);
+                }
+            }
+            default -> PixelFilter.super.apply(kernels, src, sx, sy, sw, sh, dst, dx, dy, dw, dh, imgW, imgH);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec();
+    }
+
+    // Registered first by FilterRegistry, so these names always mean the built-in filters
+    static final class Provider implements FilterProvider {
+
+        private static final Set<String> NAMES = new LinkedHashSet<>();
+
+        static {
+            for (FilterType type : FilterType.values()) NAMES.add(type.name());
+        }
+
+        @Override
+        public Set<String> names() {
+            return Collections.unmodifiableSet(NAMES);
+        }
+
+        @Override
+        public PixelFilter create(String name, OptionalInt argument) {
+            return new BuiltinFilter(FilterType.valueOf(name), argument.orElse(1));
+        }
+    }
+}
@@ -1,44 +1,72 @@
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 
 public class ExecutorServiceProcessing {
 
 
     public static void applyFilter(FilterType filter, BufferedImage image, int numThreads, int blockSize) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        int BLOCK_SIZE = blockSize;
-
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-
-        // Submit tasks for non-overlapping blocks
-        for (int y = 0; y < height; y += BLOCK_SIZE) {
-            for (int x = 0; x < width; x += BLOCK_SIZE) {
-                final int blockX = x;
-                final int blockY = y;
-                final int blockWidth = Math.min(BLOCK_SIZE, width - blockX);
-                final int blockHeight = Math.min(BLOCK_SIZE, height - blockY);
-
-                executor.execute(() -> {
-                    switch (filter) {
-                        case GRAYSCALE -> Filters.applyGrayscale(image, blockX, blockY, blockWidth, blockHeight);
-                        case GAUSSIAN_BLUR -> Filters.applyGaussianBlur(image, blockX, blockY, blockWidth, blockHeight);
-                        case INVERT -> Filters.applyInvert(image, blockX, blockY, blockWidth, blockHeight);
-                        case SEPIA -> Filters.applySepia(image, blockX, blockY, blockWidth, blockHeight);
-                        case EDGE_DETECTION -> Filters.applyEdgeDetection(image, blockX, blockY, blockWidth, blockHeight);
-                    }
-                });
+        applyFilter(FilterPipeline.of(filter), image, numThreads, blockSize);
+    }
+
+    public static void applyFilter(FilterPipeline pipeline, BufferedImage image, int numThreads, int blockSize) {
+        applyFilter(pipeline, PixelSurface.of(image), numThreads, blockSize);
+    }
+
+    // numThreads or blockSize <= 0 lets the autotuner choose
+    public static void applyFilter(FilterPipeline pipeline, PixelSurface image, int numThreads, int blockSize) {
+        applyFilter(pipeline, image, numThreads, blockSize, TilingStrategy.defaultFor(ImageProcessor.EXECUTOR));
+    }
+
+    public static void applyFilter(FilterPipeline pipeline, BufferedImage image, int numThreads, int blockSize, TilingStrategy tiling) {
+        applyFilter(pipeline, PixelSurface.of(image), numThreads, blockSize, tiling);
+    }
+
+    public static void applyFilter(FilterPipeline pipeline, PixelSurface image, int numThreads, int blockSize, TilingStrategy tiling) {
+        AutoTuner.Profile profile = AutoTuner.resolve(ImageProcessor.EXECUTOR, pipeline, image.width(), image.height(), numThreads, blockSize);
+        List<TilingStrategy.Tile> tiles = tiling.tiles(image.width(), image.height(), profile.blockSize());
+        // Stencil blocks read their halo from an unmodified copy, never from a neighbour's output
+        int[] source = pipeline.snapshotIfNeeded(image);
+        try {
+            applyTiles(pipeline, source, image, tiles, profile.threads());
+        } finally {
+            FrameBufferPool.release(source);
+        }
+    }
+
+    // Filters just the given tiles, reading halos from source (see FilterPipeline#apply)
+    static void applyTiles(FilterPipeline pipeline, int[] source, PixelSurface image, List<TilingStrategy.Tile> tiles, int numThreads) {
+        if (numThreads == 1) {
+            // Filtered on the calling thread, as in ForkJoinProcessing
+            for (TilingStrategy.Tile tile : tiles) {
+                pipeline.apply(Filters.SCALAR, source, image, tile.x(), tile.y(), tile.width(), tile.height());
             }
+            return;
         }
+        // Each task takes a contiguous run of tiles (about four runs per thread), so neighbours
+        // in the strategy's order are filtered by the same worker
+        int runLength = Math.max(1, (tiles.size() + numThreads * 4 - 1) / (numThreads * 4));
+
+        ExecutorService executor = ProcessingRuntime.executor(numThreads);
+        List<Future<?>> blocks = new ArrayList<>();
 
-        executor.shutdown();
         try {
-            if (!executor.awaitTermination(10, TimeUnit.MINUTES)) {
-                System.err.println("❌ ExecutorService: Filter application timed out");
+            // Submit tasks for non-overlapping blocks
+            for (int start = 0; start < tiles.size(); start += runLength) {
+                final List<TilingStrategy.Tile> run = tiles.subList(start, Math.min(tiles.size(), start + runLength));
+                long queued = Instrumentation.start();
+                blocks.add(executor.submit(() -> {
+                    Instrumentation.record(Instrumentation.QUEUE_WAIT, queued);
+                    for (TilingStrategy.Tile tile : run) {
+                        pipeline.apply(Filters.SCALAR, source, image, tile.x(), tile.y(), tile.width(), tile.height());
+                    }
+                }));
             }
-        } catch (InterruptedException e) {
+        } finally {
+            // Every submitted block has finished (or failed) once this returns or throws
+            ProcessingRuntime.awaitAll(blocks);
         }
     }
 }
@@ -0,0 +1,255 @@
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * An ordered chain of filters applied in one pass over the image. Consecutive point filters
+ * that can run in place are fused into a single per-pixel stage, and the image is walked in
+ * cache-sized tiles: each tile is loaded once with enough halo for every neighbourhood stage,
+ * run through all stages in ping-pong scratch buffers, and written back once. The result is
+ * identical to applying the filters one after another to the whole image.
+ *
+ * Filters are {@link PixelFilter}s, named in specs through {@link FilterRegistry}; everything
+ * the pipeline decides (fusion, halo, whether a second buffer is needed, tile and minimum
+ * block size) comes from their declared footprints.
+ */
+public final class FilterPipeline {
+
+    // Tiles of this size (plus halo) keep both scratch buffers in L2
+    public static final int CACHE_TILE = 128;
+    // Smallest useful task, in GRAYSCALE pixels (cost 1.0): about 35 us of work, far above the
+    // cost of scheduling it
+    private static final double MIN_TASK_COST = 8192;
+
+    // Either a run of fused in-place point filters, compiled to lookup tables for the scalar
+    // kernels when every filter of the run is a PointProgram operation, or a single filter
+    // that needs a second buffer; probe names it for Instrumentation, e.g. "kernel GRAYSCALE+SEPIA"
+    private record Stage(PixelFilter[] filters, PointProgram program, boolean point, boolean inPlace, String probe) {
+
+        static Stage points(List<PixelFilter> run) {
+            PixelFilter[] filters = run.toArray(new PixelFilter[0]);
+            List<PointProgram.Op> ops = run.stream().map(PixelFilter::pointOp).toList();
+            PointProgram program = ops.contains(null) ? null : PointProgram.compile(ops);
+            return new Stage(filters, program, true, true,
+                    "kernel " + run.stream().map(PixelFilter::spec).collect(Collectors.joining("+")));
+        }
+
+        static Stage single(PixelFilter filter) {
+            return new Stage(new PixelFilter[] {filter}, null, filter.footprint().isPoint(), false, "kernel " + filter.spec());
+        }
+    }
+
+    private static final Pattern STEP = Pattern.compile("(\\w+)\\s*(?:\\(\\s*(-?\\d+)\\s*\\))?");
+
+    private final List<PixelFilter> steps;
+    private final Stage[] stages;
+    private final int haloRadius;
+    private final double cost;
+    // Whether any stage writes to a second buffer; a chain of fused point filters never touches it
+    private final boolean needsTarget;
+    // Tiles grow with the halo, so a wide blur does not spend most of its time on halo pixels
+    private final int tileSide;
+
+    private FilterPipeline(List<? extends PixelFilter> steps) {
+        if (steps.isEmpty()) {
+            throw new IllegalArgumentException("A pipeline needs at least one filter");
+        }
+        this.steps = List.copyOf(steps);
+        List<Stage> compiled = new ArrayList<>();
+        List<PixelFilter> run = new ArrayList<>();
+        int halo = 0;
+        double total = 0;
+        for (PixelFilter step : steps) {
+            PixelFilter.Footprint footprint = step.footprint();
+            total += footprint.cost();
+            if (footprint.isPoint() && footprint.inPlace()) {
+                run.add(step);
+                continue;
+            }
+            if (!run.isEmpty()) {
+                compiled.add(Stage.points(run));
+                run.clear();
+            }
+            compiled.add(Stage.single(step));
+            halo += footprint.haloRadius();
+        }
+        if (!run.isEmpty()) {
+            compiled.add(Stage.points(run));
+        }
+        this.stages = compiled.toArray(new Stage[0]);
+        this.haloRadius = halo;
+        this.cost = total;
+        this.needsTarget = compiled.stream().anyMatch(stage -> !stage.inPlace());
+        this.tileSide = Math.max(CACHE_TILE, 4 * halo);
+    }
+
+    public static FilterPipeline of(FilterType... filters) {
+        return of(Arrays.asList(filters));
+    }
+
+    public static FilterPipeline of(List<FilterType> filters) {
+        return new FilterPipeline(filters.stream().map(BuiltinFilter::new).toList());
+    }
+
+    public static FilterPipeline of(PixelFilter... filters) {
+        return new FilterPipeline(Arrays.asList(filters));
+    }
+
+    // Parses a comma- or '>'-separated list of filter specs, e.g. "GRAYSCALE, GAUSSIAN_BLUR(12)";
+    // names are looked up in FilterRegistry, so filters from plugins work the same way
+    public static FilterPipeline parse(String spec) {
+        List<PixelFilter> steps = new ArrayList<>();
+        for (String name : spec.split("[,>]")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) continue;
+            Matcher m = STEP.matcher(trimmed);
+            if (!m.matches()) {
+                throw new IllegalArgumentException("Invalid filter: " + trimmed);
+            }
+            steps.add(FilterRegistry.create(m.group(1),
+                    m.group(2) == null ? OptionalInt.empty() : OptionalInt.of(Integer.parseInt(m.group(2)))));
+        }
+        return new FilterPipeline(steps);
+    }
+
+    public List<PixelFilter> steps() {
+        return steps;
+    }
+
+    // Total number of pixels around a tile that the chain reads
+    public int haloRadius() {
+        return haloRadius;
+    }
+
+    public boolean needsNeighbours() {
+        return haloRadius > 0;
+    }
+
+    // Time per pixel of the whole chain, relative to GRAYSCALE
+    public double cost() {
+        return cost;
+    }
+
+    // Whether every filter of the chain can run on frames of this layout
+    public boolean supports(PixelFilter.Layout layout) {
+        return steps.stream().allMatch(step -> step.footprint().layouts().contains(layout));
+    }
+
+    // Blocks narrower than this spend more time re-reading halo pixels, or being scheduled,
+    // than filtering their own
+    public int minBlockSize() {
+        return Math.max(4 * haloRadius, (int) Math.ceil(Math.sqrt(MIN_TASK_COST / cost)));
+    }
+
+    // Packed copy of img to read halos from, or null when every stage is a point filter
+    public int[] snapshotIfNeeded(BufferedImage img) {
+        return snapshotIfNeeded(PixelSurface.of(img));
+    }
+
+    public int[] snapshotIfNeeded(PixelSurface surface) {
+        return needsNeighbours() ? Filters.snapshot(surface) : null;
+    }
+
+    /**
+     * Runs the pipeline over one block of img, tile by tile. source must be an unmodified
+     * packed copy of img (see {@link Filters#snapshot}) whenever the pipeline has a
+     * neighbourhood stage, and may be null otherwise.
+     */
+    public void apply(PixelKernels kernels, int[] source, BufferedImage img, int startX, int startY, int width, int height) {
+        apply(kernels, source, PixelSurface.of(img), startX, startY, width, height);
+    }
+
+    // Same as above on any pixel surface, e.g. a video frame filtered in its own buffer
+    public void apply(PixelKernels kernels, int[] source, PixelSurface img, int startX, int startY, int width, int height) {
+        if (source == null && needsNeighbours()) {
+            throw new IllegalArgumentException("Pipeline " + this + " needs a source snapshot");
+        }
+        long t = Instrumentation.start();
+        for (int ty = startY; ty < startY + height; ty += tileSide) {
+            for (int tx = startX; tx < startX + width; tx += tileSide) {
+                int tw = Math.min(tileSide, startX + width - tx);
+                int th = Math.min(tileSide, startY + height - ty);
+                applyTile(kernels, source, img, tx, ty, tw, th);
+            }
+        }
+        Instrumentation.record(Instrumentation.TILE, t);
+    }
+
+    private void applyTile(PixelKernels kernels, int[] source, PixelSurface img, int tx, int ty, int tw, int th) {
+        int imgW = img.width();
+        int imgH = img.height();
+        int remaining = haloRadius;
+
+        // Current region: the tile grown by the halo still needed, clipped to the image
+        int cx = Math.max(0, tx - remaining);
+        int cy = Math.max(0, ty - remaining);
+        int cw = Math.min(imgW, tx + tw + remaining) - cx;
+        int ch = Math.min(imgH, ty + th + remaining) - cy;
+
+        int[] a = TileScratch.get(TileScratch.SOURCE, cw * ch);
+        int[] b = needsTarget ? TileScratch.get(TileScratch.TARGET, cw * ch) : null;
+        if (source != null) {
+            for (int row = 0; row < ch; row++) {
+                System.arraycopy(source, (cy + row) * imgW + cx, a, row * cw, cw);
+            }
+        } else {
+            img.read(cx, cy, cw, ch, a, 0, cw);
+        }
+
+        for (Stage stage : stages) {
+            long t = Instrumentation.start();
+            PixelFilter filter = stage.filters()[0];
+            if (stage.inPlace()) {
+                applyPoints(kernels, stage, a, cw * ch);
+                Instrumentation.record(stage.probe(), t);
+                continue;
+            }
+            if (stage.point()) {
+                filter.apply(kernels, a, b, 0, cw * ch);
+            } else {
+                // Each neighbourhood stage consumes its radius of halo; clamping inside the kernel
+                // only ever happens on sides where the region ends at the image border
+                remaining -= filter.footprint().haloRadius();
+                int nx = Math.max(0, tx - remaining);
+                int ny = Math.max(0, ty - remaining);
+                int nw = Math.min(imgW, tx + tw + remaining) - nx;
+                int nh = Math.min(imgH, ty + th + remaining) - ny;
+                filter.apply(kernels, a, cx, cy, cw, ch, b, nx, ny, nw, nh, imgW, imgH);
+                cx = nx;
+                cy = ny;
+                cw = nw;
+                ch = nh;
+            }
+            Instrumentation.record(stage.probe(), t);
+            int[] swap = a;
+            a = b;
+            b = swap;
+        }
+        img.write(tx, ty, tw, th, a, 0, tw);
+    }
+
+    private static void applyPoints(PixelKernels kernels, Stage stage, int[] px, int len) {
+        if (kernels == Filters.SCALAR && stage.program() != null) {
+            // The whole run as one table-driven pass, bit-exact with the Filters kernels
+            stage.program().apply(px, 0, len);
+            return;
+        }
+        // Otherwise one filter at a time over L1-sized chunks
+        for (int off = 0; off < len; off += 1024) {
+            int n = Math.min(1024, len - off);
+            for (PixelFilter point : stage.filters()) {
+                point.apply(kernels, px, px, off, n);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return steps.stream().map(PixelFilter::spec).collect(Collectors.joining(" > "));
+    }
+}
@@ -0,0 +1,19 @@
+import java.util.OptionalInt;
+import java.util.Set;
+
+/**
+ * Service-provider interface for filters. Implementations are found with
+ * {@link java.util.ServiceLoader}: list the class in
+ * META-INF/services/FilterProvider of a jar on the class path. See {@link FilterRegistry}.
+ */
+public interface FilterProvider {
+
+    // Upper-case names this provider creates, e.g. "BRIGHTNESS"
+    Set<String> names();
+
+    /**
+     * The filter for name, with the integer written in parentheses after it in a spec
+     * ("BRIGHTNESS(20)"), if any. Throws IllegalArgumentException for a bad argument.
+     */
+    PixelFilter create(String name, OptionalInt argument);
+}
@@ -0,0 +1,56 @@
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * Filter names known to pipeline specs: the built-in {@link FilterType} values first, then
+ * every {@link FilterProvider} on the class path. When two providers claim a name the first
+ * one keeps it, so a plugin cannot replace a built-in filter.
+ */
+public final class FilterRegistry {
+
+    private static final Map<String, FilterProvider> PROVIDERS = load();
+
+    private FilterRegistry() {
+    }
+
+    public static Set<String> names() {
+        return Collections.unmodifiableSet(PROVIDERS.keySet());
+    }
+
+    public static PixelFilter create(String name, OptionalInt argument) {
+        String key = name.toUpperCase(Locale.ROOT);
+        FilterProvider provider = PROVIDERS.get(key);
+        if (provider == null) {
+            throw new IllegalArgumentException("Unknown filter: " + name + " (known: " + String.join(", ", PROVIDERS.keySet()) + ")");
+        }
+        return provider.create(key, argument);
+    }
+
+    private static Map<String, FilterProvider> load() {
+        Map<String, FilterProvider> providers = new LinkedHashMap<>();
+        register(providers, new BuiltinFilter.Provider());
+        var loader = ServiceLoader.load(FilterProvider.class).iterator();
+        while (true) {
+            try {
+                if (!loader.hasNext()) break;
+                register(providers, loader.next());
+            } catch (ServiceConfigurationError e) {
+                // A broken plugin should not take the built-in filters down with it
+                System.err.println("❌ Skipping filter provider: " + e.getMessage());
+            }
+        }
+        return providers;
+    }
+
+    private static void register(Map<String, FilterProvider> providers, FilterProvider provider) {
+        for (String name : provider.names()) {
+            providers.putIfAbsent(name.toUpperCase(Locale.ROOT), provider);
+        }
+    }
+}
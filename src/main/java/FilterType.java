@@ -1,7 +1,52 @@
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum FilterType {
-    GRAYSCALE,
-    GAUSSIAN_BLUR,
-    INVERT,
-    SEPIA,
-    EDGE_DETECTION
-}
\ No newline at end of file
+    // Costs are per pixel relative to GRAYSCALE, measured single-threaded on 1080p-class images
+    GRAYSCALE(0, 1.0),
+    GAUSSIAN_BLUR(1, 12.0),
+    INVERT(0, 0.8),
+    SEPIA(0, 1.8),
+    EDGE_DETECTION(1, 4.5);
+
+    // Radii above 1 are separable passes or a box cascade, both cheaper per pixel than the 3x3 kernel
+    private static final double WIDE_BLUR_COST = 7.0;
+
+    // How many pixels beyond a block the filter reads (0 for point filters)
+    private final int haloRadius;
+    private final double cost;
+
+    FilterType(int haloRadius, double cost) {
+        this.haloRadius = haloRadius;
+        this.cost = cost;
+    }
+
+    public int haloRadius() {
+        return haloRadius;
+    }
+
+    // Whether the filter takes a radius, as in GAUSSIAN_BLUR(8); radius 1 is the default
+    public boolean hasRadius() {
+        return this == GAUSSIAN_BLUR;
+    }
+
+    // How many pixels beyond a block the filter reads at the given radius
+    public int haloRadius(int radius) {
+        return hasRadius() ? Blur.halo(radius) : haloRadius;
+    }
+
+    public boolean needsNeighbours() {
+        return haloRadius > 0;
+    }
+
+    // Every built-in filter runs on both layouts, except that YuvProcessing only has the 3x3 blur
+    public PixelFilter.Footprint footprint(int radius) {
+        Set<PixelFilter.Layout> layouts = radius == 1 ? EnumSet.allOf(PixelFilter.Layout.class)
+                : EnumSet.of(PixelFilter.Layout.PACKED_RGB);
+        if (!needsNeighbours()) {
+            return new PixelFilter.Footprint(PixelFilter.Kind.POINT, 0, true, cost, layouts);
+        }
+        return new PixelFilter.Footprint(PixelFilter.Kind.NEIGHBOURHOOD, haloRadius(radius), false,
+                radius == 1 ? cost : WIDE_BLUR_COST, layouts);
+    }
+}
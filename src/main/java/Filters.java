@@ -1,139 +1,325 @@
-import java.awt.Color;
 import java.awt.image.BufferedImage;
 
 public class Filters {
 
+    private static final float[][] GAUSSIAN_KERNEL = {
+            { 1f / 16, 2f / 16, 1f / 16 },
+            { 2f / 16, 4f / 16, 2f / 16 },
+            { 1f / 16, 2f / 16, 1f / 16 }
+    };
+
+    private static final int[][] SOBEL_X = {
+            { -1, 0, 1 },
+            { -2, 0, 2 },
+            { -1, 0, 1 }
+    };
+
+    private static final int[][] SOBEL_Y = {
+            { -1, -2, -1 },
+            { 0, 0, 0 },
+            { 1, 2, 1 }
+    };
+
+    // Scalar implementation of the kernels below
+    public static final PixelKernels SCALAR = new PixelKernels() {
+        @Override
+        public void grayscale(int[] px, int off, int len) {
+            Filters.grayscale(px, off, len);
+        }
+
+        @Override
+        public void invert(int[] px, int off, int len) {
+            Filters.invert(px, off, len);
+        }
+
+        @Override
+        public void sepia(int[] px, int off, int len) {
+            Filters.sepia(px, off, len);
+        }
+
+        @Override
+        public void gaussianBlur(int[] src, int srcX, int srcY, int srcW, int srcH,
+                                 int[] dst, int dstX, int dstY, int dstW, int dstH) {
+            Filters.gaussianBlur(src, srcX, srcY, srcW, srcH, dst, dstX, dstY, dstW, dstH);
+        }
+
+        @Override
+        public void edgeDetection(int[] src, int srcX, int srcY, int srcW, int srcH,
+                                  int[] dst, int dstX, int dstY, int dstW, int dstH) {
+            Filters.edgeDetection(src, srcX, srcY, srcW, srcH, dst, dstX, dstY, dstW, dstH);
+        }
+    };
+
+    // Apply the chosen filter to one block of the image
+    public static void apply(FilterType filter, BufferedImage img, int startX, int startY, int width, int height) {
+        apply(SCALAR, filter, img, startX, startY, width, height);
+    }
+
+    /**
+     * Filters one block in place, reading any neighbours from the image itself. Only safe when
+     * no other block of the same image is being filtered; tiled backends take a
+     * {@link #snapshot} and use the overload below instead.
+     */
+    public static void apply(PixelKernels kernels, FilterType filter, BufferedImage img, int startX, int startY, int width, int height) {
+        if (width <= 0 || height <= 0) return;
+        if (!filter.needsNeighbours()) {
+            applyPoint(kernels, filter, img, startX, startY, width, height);
+            return;
+        }
+        // Read the block plus its halo (clipped to the image) before anything is written back
+        int halo = filter.haloRadius();
+        int srcX = Math.max(0, startX - halo);
+        int srcY = Math.max(0, startY - halo);
+        int srcW = Math.min(img.getWidth(), startX + width + halo) - srcX;
+        int srcH = Math.min(img.getHeight(), startY + height + halo) - srcY;
+        int[] src = TileScratch.get(TileScratch.SOURCE, srcW * srcH);
+        RasterAccess.read(img, srcX, srcY, srcW, srcH, src, 0, srcW);
+        applyStencil(kernels, filter, src, srcX, srcY, srcW, srcH, img, startX, startY, width, height);
+    }
+
+    /**
+     * Filters one block of img, reading neighbours from source, an unmodified packed copy of the
+     * whole image (see {@link #snapshot}). Blocks never see each other's output, so any tiling
+     * gives the same result as filtering the whole image at once. source may be null for point
+     * filters.
+     */
+    public static void apply(PixelKernels kernels, FilterType filter, int[] source, BufferedImage img, int startX, int startY, int width, int height) {
+        if (width <= 0 || height <= 0) return;
+        if (!filter.needsNeighbours()) {
+            applyPoint(kernels, filter, img, startX, startY, width, height);
+            return;
+        }
+        applyStencil(kernels, filter, source, 0, 0, img.getWidth(), img.getHeight(), img, startX, startY, width, height);
+    }
+
+    // Packed copy of the whole image in a pooled buffer; hand it back with FrameBufferPool.release
+    public static int[] snapshot(BufferedImage img) {
+        return snapshot(PixelSurface.of(img));
+    }
+
+    public static int[] snapshot(PixelSurface surface) {
+        int width = surface.width();
+        int height = surface.height();
+        int[] frame = FrameBufferPool.acquire(width * height);
+        surface.read(0, 0, width, height, frame, 0, width);
+        return frame;
+    }
+
     // 1. Grayscale Filter
     public static void applyGrayscale(BufferedImage img, int startX, int startY, int width, int height) {
-        for (int y = startY; y < startY + height; y++) {
-            for (int x = startX; x < startX + width; x++) {
-                Color c = new Color(img.getRGB(x, y));
-                int gray = (int) (0.3 * c.getRed() + 0.59 * c.getGreen() + 0.11 * c.getBlue());
-                Color newColor = new Color(gray, gray, gray);
-                img.setRGB(x, y, newColor.getRGB());
-            }
-        }
+        apply(SCALAR, FilterType.GRAYSCALE, img, startX, startY, width, height);
     }
 
     // 2. Gaussian Blur Filter (3x3 kernel)
     public static void applyGaussianBlur(BufferedImage img, int startX, int startY, int width, int height) {
-        float[][] kernel = {
-                { 1f / 16, 2f / 16, 1f / 16 },
-                { 2f / 16, 4f / 16, 2f / 16 },
-                { 1f / 16, 2f / 16, 1f / 16 }
-        };
+        apply(SCALAR, FilterType.GAUSSIAN_BLUR, img, startX, startY, width, height);
+    }
 
-        BufferedImage copy = new BufferedImage(img.getWidth(), img.getHeight(), img.getType());
+    // 3. Invert Filter
+    public static void applyInvert(BufferedImage img, int startX, int startY, int width, int height) {
+        apply(SCALAR, FilterType.INVERT, img, startX, startY, width, height);
+    }
 
-        for (int y = startY; y < startY + height; y++) {
-            for (int x = startX; x < startX + width; x++) {
-                float r = 0, g = 0, b = 0;
-
-                for (int ky = -1; ky <= 1; ky++) {
-                    for (int kx = -1; kx <= 1; kx++) {
-                        int px = clamp(x + kx, 0, img.getWidth() - 1);
-                        int py = clamp(y + ky, 0, img.getHeight() - 1);
-                        Color color = new Color(img.getRGB(px, py));
-                        float weight = kernel[ky + 1][kx + 1];
-
-                        r += color.getRed() * weight;
-                        g += color.getGreen() * weight;
-                        b += color.getBlue() * weight;
-                    }
-                }
-
-                Color blurred = new Color(clamp((int) r, 0, 255), clamp((int) g, 0, 255), clamp((int) b, 0, 255));
-                copy.setRGB(x, y, blurred.getRGB());
-            }
-        }
+    // 4. Sepia Filter
+    public static void applySepia(BufferedImage img, int startX, int startY, int width, int height) {
+        apply(SCALAR, FilterType.SEPIA, img, startX, startY, width, height);
+    }
 
-        // Copy blurred result back to original image region
-        for (int y = startY; y < startY + height; y++) {
-            for (int x = startX; x < startX + width; x++) {
-                img.setRGB(x, y, copy.getRGB(x, y));
-            }
+    // 5. Sobel Edge Detection (the one-pixel image border is left untouched)
+    public static void applyEdgeDetection(BufferedImage img, int startX, int startY, int width, int height) {
+        apply(SCALAR, FilterType.EDGE_DETECTION, img, startX, startY, width, height);
+    }
+
+    // src covers the image rectangle (srcX, srcY, srcW, srcH), which includes the block's halo
+    private static void applyStencil(PixelKernels kernels, FilterType filter, int[] src, int srcX, int srcY, int srcW, int srcH,
+                                     BufferedImage img, int startX, int startY, int width, int height) {
+        int x0 = startX, y0 = startY, x1 = startX + width, y1 = startY + height;
+        if (filter == FilterType.EDGE_DETECTION) {
+            // Sobel has no value on the image border, which keeps its original pixels
+            x0 = Math.max(x0, 1);
+            y0 = Math.max(y0, 1);
+            x1 = Math.min(x1, img.getWidth() - 1);
+            y1 = Math.min(y1, img.getHeight() - 1);
+            if (x1 <= x0 || y1 <= y0) return;
+        }
+        int w = x1 - x0;
+        int h = y1 - y0;
+        int[] dst = TileScratch.get(TileScratch.TARGET, w * h);
+        switch (filter) {
+            case GAUSSIAN_BLUR -> kernels.gaussianBlur(src, srcX, srcY, srcW, srcH, dst, x0, y0, w, h);
+            case EDGE_DETECTION -> kernels.edgeDetection(src, srcX, srcY, srcW, srcH, dst, x0, y0, w, h);
+            default -> throw new IllegalArgumentException("Not a neighbourhood filter: " + filter);
         }
+        RasterAccess.write(img, x0, y0, w, h, dst, 0, w);
     }
 
-    // 3. Invert Filter
-    public static void applyInvert(BufferedImage img, int startX, int startY, int width, int height) {
+    // Point filters only need one row of scratch at a time
+    private static void applyPoint(PixelKernels kernels, FilterType filter, BufferedImage img, int startX, int startY, int width, int height) {
+        int[] row = TileScratch.get(TileScratch.TARGET, width);
         for (int y = startY; y < startY + height; y++) {
-            for (int x = startX; x < startX + width; x++) {
-                Color c = new Color(img.getRGB(x, y));
-                Color inverted = new Color(255 - c.getRed(), 255 - c.getGreen(), 255 - c.getBlue());
-                img.setRGB(x, y, inverted.getRGB());
+            RasterAccess.read(img, startX, y, width, 1, row, 0, width);
+            switch (filter) {
+                case GRAYSCALE -> kernels.grayscale(row, 0, width);
+                case INVERT -> kernels.invert(row, 0, width);
+                case SEPIA -> kernels.sepia(row, 0, width);
+                default -> throw new IllegalArgumentException("Not a point filter: " + filter);
             }
+            RasterAccess.write(img, startX, y, width, 1, row, 0, width);
         }
     }
 
-    // 4. Sepia Filter
-    public static void applySepia(BufferedImage img, int startX, int startY, int width, int height) {
-        for (int y = startY; y < startY + height; y++) {
-            for (int x = startX; x < startX + width; x++) {
-                Color c = new Color(img.getRGB(x, y));
+    // ---- Packed-pixel kernels (0xAARRGGBB in, opaque 0xFFRRGGBB out) ----
 
-                int tr = (int) (0.393 * c.getRed() + 0.769 * c.getGreen() + 0.189 * c.getBlue());
-                int tg = (int) (0.349 * c.getRed() + 0.686 * c.getGreen() + 0.168 * c.getBlue());
-                int tb = (int) (0.272 * c.getRed() + 0.534 * c.getGreen() + 0.131 * c.getBlue());
+    public static void grayscale(int[] px, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            px[i] = grayscalePixel(px[i]);
+        }
+    }
 
-                Color sepia = new Color(clamp(tr, 0, 255), clamp(tg, 0, 255), clamp(tb, 0, 255));
-                img.setRGB(x, y, sepia.getRGB());
-            }
+    public static void invert(int[] px, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            px[i] = invertPixel(px[i]);
         }
     }
 
-    public static void applyEdgeDetection(BufferedImage img, int startX, int startY, int width, int height) {
-        int[][] sobelX = {
-                { -1, 0, 1 },
-                { -2, 0, 2 },
-                { -1, 0, 1 }
-        };
+    public static void sepia(int[] px, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            px[i] = sepiaPixel(px[i]);
+        }
+    }
 
-        int[][] sobelY = {
-                { -1, -2, -1 },
-                { 0, 0, 0 },
-                { 1, 2, 1 }
+    // Single-pixel form of the point filters, used where several of them are fused
+    public static int pointPixel(FilterType filter, int rgb) {
+        return switch (filter) {
+            case GRAYSCALE -> grayscalePixel(rgb);
+            case INVERT -> invertPixel(rgb);
+            case SEPIA -> sepiaPixel(rgb);
+            default -> throw new IllegalArgumentException("Not a point filter: " + filter);
         };
+    }
+
+    static int grayscalePixel(int rgb) {
+        int gray = getGray(rgb);
+        return 0xFF000000 | gray << 16 | gray << 8 | gray;
+    }
+
+    static int invertPixel(int rgb) {
+        return 0xFF000000 | ~rgb & 0x00FFFFFF;
+    }
 
-        BufferedImage copy = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
+    static int sepiaPixel(int rgb) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
 
-        for (int y = startY + 1; y < startY + height - 1 && y < img.getHeight() - 1; y++) {
-            for (int x = startX + 1; x < startX + width - 1 && x < img.getWidth() - 1; x++) {
-                int gx = 0, gy = 0;
+        int tr = (int) (0.393 * r + 0.769 * g + 0.189 * b);
+        int tg = (int) (0.349 * r + 0.686 * g + 0.168 * b);
+        int tb = (int) (0.272 * r + 0.534 * g + 0.131 * b);
 
-                for (int ky = -1; ky <= 1; ky++) {
-                    for (int kx = -1; kx <= 1; kx++) {
-                        int px = clamp(x + kx, 0, img.getWidth() - 1);
-                        int py = clamp(y + ky, 0, img.getHeight() - 1);
-                        int gray = getGray(img.getRGB(px, py));
+        return 0xFF000000 | clamp(tr, 0, 255) << 16 | clamp(tg, 0, 255) << 8 | clamp(tb, 0, 255);
+    }
+
+    /**
+     * 3x3 Gaussian blur. src covers the image rectangle (srcX, srcY, srcW, srcH) and dst the
+     * rectangle (dstX, dstY, dstW, dstH), which must lie inside it. Neighbours are clamped to
+     * the src rectangle, so src must either carry a halo or end at the image border.
+     */
+    public static void gaussianBlur(int[] src, int srcX, int srcY, int srcW, int srcH,
+                                    int[] dst, int dstX, int dstY, int dstW, int dstH) {
+        for (int j = 0; j < dstH; j++) {
+            int sy = dstY + j - srcY;
+            int up = Math.max(sy - 1, 0) * srcW;
+            int mid = sy * srcW;
+            int down = Math.min(sy + 1, srcH - 1) * srcW;
+            int d = j * dstW;
+            for (int i = 0; i < dstW; i++) {
+                int sx = dstX + i - srcX;
+                int l = Math.max(sx - 1, 0);
+                int r = Math.min(sx + 1, srcW - 1);
+
+                dst[d + i] = blurPixel(src, up, mid, down, l, sx, r);
+            }
+        }
+    }
 
-                        gx += sobelX[ky + 1][kx + 1] * gray;
-                        gy += sobelY[ky + 1][kx + 1] * gray;
-                    }
-                }
+    /**
+     * Sobel edge magnitude on the luma channel. Same rectangle contract as
+     * {@link #gaussianBlur}; callers decide which pixels (e.g. the image border) are left alone.
+     */
+    public static void edgeDetection(int[] src, int srcX, int srcY, int srcW, int srcH,
+                                     int[] dst, int dstX, int dstY, int dstW, int dstH) {
+        // Each source pixel is sampled by up to nine neighbours, so convert the window
+        // around dst (clipped to src) to gray once
+        int winX = Math.max(dstX - 1, srcX);
+        int winY = Math.max(dstY - 1, srcY);
+        int winW = Math.min(dstX + dstW + 1, srcX + srcW) - winX;
+        int winH = Math.min(dstY + dstH + 1, srcY + srcH) - winY;
+        int[] gray = TileScratch.get(TileScratch.GRAY, winW * winH);
+        for (int j = 0; j < winH; j++) {
+            int s = (winY - srcY + j) * srcW + winX - srcX;
+            for (int i = 0; i < winW; i++) {
+                gray[j * winW + i] = getGray(src[s + i]);
+            }
+        }
+        for (int j = 0; j < dstH; j++) {
+            int sy = dstY + j - winY;
+            int up = Math.max(sy - 1, 0) * winW;
+            int mid = sy * winW;
+            int down = Math.min(sy + 1, winH - 1) * winW;
+            int d = j * dstW;
+            for (int i = 0; i < dstW; i++) {
+                int sx = dstX + i - winX;
+                int l = Math.max(sx - 1, 0);
+                int r = Math.min(sx + 1, winW - 1);
 
-                int magnitude = clamp((int) Math.sqrt(gx * gx + gy * gy), 0, 255);
-                Color edgeColor = new Color(magnitude, magnitude, magnitude);
-                copy.setRGB(x, y, edgeColor.getRGB());
+                dst[d + i] = sobelPixel(gray, up, mid, down, l, sx, r);
             }
         }
+    }
 
-        // Copy edge-detected result back to original image region
-        for (int y = startY + 1; y < startY + height - 1 && y < img.getHeight() - 1; y++) {
-            for (int x = startX + 1; x < startX + width - 1 && x < img.getWidth() - 1; x++) {
-                img.setRGB(x, y, copy.getRGB(x, y));
+    // One blurred pixel from the source rows starting at up/mid/down and columns l/c/r
+    static int blurPixel(int[] src, int up, int mid, int down, int l, int c, int r) {
+        float red = 0, green = 0, blue = 0;
+        // Same accumulation order as the row-major 3x3 loop, so float rounding is unchanged
+        for (int ky = 0; ky < 3; ky++) {
+            int row = ky == 0 ? up : ky == 1 ? mid : down;
+            for (int kx = 0; kx < 3; kx++) {
+                int rgb = src[row + (kx == 0 ? l : kx == 1 ? c : r)];
+                float weight = GAUSSIAN_KERNEL[ky][kx];
+
+                red += ((rgb >> 16) & 0xFF) * weight;
+                green += ((rgb >> 8) & 0xFF) * weight;
+                blue += (rgb & 0xFF) * weight;
             }
         }
+        return 0xFF000000
+                | clamp((int) red, 0, 255) << 16
+                | clamp((int) green, 0, 255) << 8
+                | clamp((int) blue, 0, 255);
+    }
+
+    // Sobel magnitude for one pixel of a precomputed gray plane
+    static int sobelPixel(int[] gray, int up, int mid, int down, int l, int c, int r) {
+        int gx = SOBEL_X[0][0] * gray[up + l] + SOBEL_X[0][2] * gray[up + r]
+                + SOBEL_X[1][0] * gray[mid + l] + SOBEL_X[1][2] * gray[mid + r]
+                + SOBEL_X[2][0] * gray[down + l] + SOBEL_X[2][2] * gray[down + r];
+        int gy = SOBEL_Y[0][0] * gray[up + l] + SOBEL_Y[0][1] * gray[up + c] + SOBEL_Y[0][2] * gray[up + r]
+                + SOBEL_Y[2][0] * gray[down + l] + SOBEL_Y[2][1] * gray[down + c] + SOBEL_Y[2][2] * gray[down + r];
+
+        int magnitude = clamp((int) Math.sqrt(gx * gx + gy * gy), 0, 255);
+        return 0xFF000000 | magnitude << 16 | magnitude << 8 | magnitude;
     }
 
     // Helper to get grayscale value from RGB int
-    private static int getGray(int rgb) {
-        Color c = new Color(rgb);
-        return (int)(0.3 * c.getRed() + 0.59 * c.getGreen() + 0.11 * c.getBlue());
+    static int getGray(int rgb) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        return (int) (0.3 * r + 0.59 * g + 0.11 * b);
     }
 
     // Helper to clamp values to the 0-255 range
-    private static int clamp(int value, int min, int max) {
+    static int clamp(int value, int min, int max) {
         return Math.max(min, Math.min(max, value));
     }
 }
@@ -1,64 +1,96 @@
 import java.awt.image.BufferedImage;
-import java.util.concurrent.ForkJoinPool;
+import java.util.List;
 import java.util.concurrent.RecursiveAction;
 
 public class ForkJoinProcessing {
 
+    // Block size comes from the autotuner
     public static void applyFilter(FilterType filter, BufferedImage image, int numThreads) {
-        int imageArea = image.getWidth() * image.getHeight();
-        int blockArea = imageArea / numThreads;
-        int blockSize = (int) Math.ceil(Math.sqrt(blockArea));
-
-        try (ForkJoinPool pool = new ForkJoinPool(numThreads)) {
-            pool.invoke(new FilterTask(filter, image, 0, 0, image.getWidth(), image.getHeight(), blockSize));
-        }
+        applyFilter(filter, image, numThreads, 0);
     }
 
     public static void applyFilter(FilterType filter, BufferedImage image, int numThreads, int blockSize) {
-        int BLOCK_SIZE = blockSize;
+        applyFilter(FilterPipeline.of(filter), image, numThreads, blockSize);
+    }
+
+    public static void applyFilter(FilterPipeline pipeline, BufferedImage image, int numThreads, int blockSize) {
+        applyFilter(pipeline, PixelSurface.of(image), numThreads, blockSize);
+    }
+
+    // numThreads or blockSize <= 0 lets the autotuner choose
+    public static void applyFilter(FilterPipeline pipeline, PixelSurface image, int numThreads, int blockSize) {
+        applyFilter(pipeline, image, numThreads, blockSize, TilingStrategy.defaultFor(ImageProcessor.FORKJOIN));
+    }
 
-        try (ForkJoinPool pool = new ForkJoinPool(numThreads)) {
-            pool.invoke(new FilterTask(filter, image, 0, 0, image.getWidth(), image.getHeight(), BLOCK_SIZE));
+    public static void applyFilter(FilterPipeline pipeline, BufferedImage image, int numThreads, int blockSize, TilingStrategy tiling) {
+        applyFilter(pipeline, PixelSurface.of(image), numThreads, blockSize, tiling);
+    }
+
+    public static void applyFilter(FilterPipeline pipeline, PixelSurface image, int numThreads, int blockSize, TilingStrategy tiling) {
+        AutoTuner.Profile profile = AutoTuner.resolve(ImageProcessor.FORKJOIN, pipeline, image.width(), image.height(), numThreads, blockSize);
+        applyFilter(Filters.SCALAR, pipeline, image, profile.threads(), profile.blockSize(), tiling);
+    }
+
+    // Tile the image with the given strategy, running the given kernels (scalar or SIMD) on every tile
+    static void applyFilter(PixelKernels kernels, FilterPipeline pipeline, PixelSurface image, int numThreads, int blockSize, TilingStrategy tiling) {
+        List<TilingStrategy.Tile> tiles = tiling.tiles(image.width(), image.height(), blockSize);
+        if (tiles.isEmpty()) return;
+        // Stencil blocks read their halo from an unmodified copy, never from a neighbour's output
+        int[] source = pipeline.snapshotIfNeeded(image);
+
+        // invoke rethrows any exception raised by a block. Sibling blocks may still be running
+        // at that point, so the snapshot only goes back to the pool on success
+        applyTiles(kernels, pipeline, source, image, tiles, numThreads);
+        FrameBufferPool.release(source);
+    }
+
+    // Filters just the given tiles, reading halos from source (see FilterPipeline#apply)
+    static void applyTiles(PixelKernels kernels, FilterPipeline pipeline, int[] source, PixelSurface image, List<TilingStrategy.Tile> tiles, int numThreads) {
+        if (tiles.isEmpty()) return;
+        if (numThreads == 1) {
+            // One thread is the caller's own; a shared one-worker pool would queue it behind
+            // every other single-threaded caller
+            for (TilingStrategy.Tile tile : tiles) {
+                pipeline.apply(kernels, source, image, tile.x(), tile.y(), tile.width(), tile.height());
+            }
+            return;
         }
+        ProcessingRuntime.forkJoinPool(numThreads).invoke(new FilterTask(kernels, pipeline, source, image, tiles, 0, tiles.size()));
     }
 
+    // Halves the tile range until one tile is left, so a worker keeps neighbouring tiles of
+    // the strategy's order unless they are stolen
     private static class FilterTask extends RecursiveAction  {
 
-        private final int BLOCK_SIZE;
-        private final FilterType filter;
-        private final BufferedImage image;
-        private final int x, y, width, height;
+        private final PixelKernels kernels;
+        private final FilterPipeline pipeline;
+        private final int[] source;
+        private final PixelSurface image;
+        private final List<TilingStrategy.Tile> tiles;
+        private final int from, to;
 
-        public FilterTask(FilterType filter, BufferedImage image, int x, int y, int width, int height, int blockSize) {
-            this.filter = filter;
+        public FilterTask(PixelKernels kernels, FilterPipeline pipeline, int[] source, PixelSurface image, List<TilingStrategy.Tile> tiles, int from, int to) {
+            this.kernels = kernels;
+            this.pipeline = pipeline;
+            this.source = source;
             this.image = image;
-            this.x = x;
-            this.y = y;
-            this.width = width;
-            this.height = height;
-            this.BLOCK_SIZE = blockSize;
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
         }
 
         @Override
         protected void compute() {
-            if (width <= BLOCK_SIZE && height <= BLOCK_SIZE) {
+            if (to - from == 1) {
                 // Directly apply filter to this block
-                switch (filter) {
-                    case GAUSSIAN_BLUR -> Filters.applyGaussianBlur(image, x, y, width, height);
-                    case GRAYSCALE -> Filters.applyGrayscale(image, x, y, width, height);
-                    case INVERT -> Filters.applyInvert(image, x, y, width, height);
-                    case SEPIA -> Filters.applySepia(image, x, y, width, height);
-                    case EDGE_DETECTION -> Filters.applyEdgeDetection(image, x, y, width, height);
-                }
+                TilingStrategy.Tile tile = tiles.get(from);
+                pipeline.apply(kernels, source, image, tile.x(), tile.y(), tile.width(), tile.height());
             } else {
-                int wMid = width / 2;
-                int hMid = height / 2;
+                int mid = (from + to) >>> 1;
 
                 invokeAll(
-                    new FilterTask(filter, image, x, y, wMid, hMid, BLOCK_SIZE),
-                    new FilterTask(filter, image, x + wMid, y, width - wMid, hMid, BLOCK_SIZE),
-                    new FilterTask(filter, image, x, y + hMid, wMid, height - hMid, BLOCK_SIZE),
-                    new FilterTask(filter, image, x + wMid, y + hMid, width - wMid, height - hMid, BLOCK_SIZE)
+                    new FilterTask(kernels, pipeline, source, image, tiles, from, mid),
+                    new FilterTask(kernels, pipeline, source, image, tiles, mid, to)
                 );
             }
         }
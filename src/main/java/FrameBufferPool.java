@@ -0,0 +1,32 @@
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Small pool of packed-pixel frame buffers. Stencil filters snapshot the frame they read from,
+ * and video processing does this once per frame, so the same few buffers get reused instead of
+ * allocating a new full frame every time.
+ */
+public class FrameBufferPool {
+
+    private static final int MAX_POOLED = 4;
+    private static final ConcurrentLinkedDeque<int[]> POOL = new ConcurrentLinkedDeque<>();
+
+    // A buffer of exactly size ints; contents are unspecified
+    public static int[] acquire(int size) {
+        for (Iterator<int[]> it = POOL.iterator(); it.hasNext(); ) {
+            int[] buffer = it.next();
+            if (buffer.length == size && POOL.removeFirstOccurrence(buffer)) {
+                return buffer;
+            }
+        }
+        return new int[size];
+    }
+
+    public static void release(int[] buffer) {
+        if (buffer == null) return;
+        if (POOL.size() >= MAX_POOLED) {
+            POOL.pollLast();
+        }
+        POOL.offerFirst(buffer);
+    }
+}
@@ -0,0 +1,54 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Reusable 8-bit BGR frames of one size. Decoded frames are copied into pooled frames (the
+ * grabber overwrites its own buffer on the next grab), filtered in place, handed to the
+ * recorder and then returned, so a long clip cycles through the same few native buffers.
+ */
+public class FramePool implements AutoCloseable {
+
+    private final int width;
+    private final int height;
+    private final ConcurrentLinkedQueue<Frame> free = new ConcurrentLinkedQueue<>();
+
+    public FramePool(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public Frame acquire() {
+        Frame frame = free.poll();
+        return frame != null ? frame : new Frame(width, height, Frame.DEPTH_UBYTE, 3);
+    }
+
+    // A pooled frame holding a copy of the pixels in src
+    public Frame copyOf(Frame src) {
+        Frame dst = acquire();
+        ByteBuffer from = (ByteBuffer) src.image[0];
+        ByteBuffer to = (ByteBuffer) dst.image[0];
+        int rowBytes = width * 3;
+        for (int y = 0; y < height; y++) {
+            to.put(y * dst.imageStride, from, y * src.imageStride, rowBytes);
+        }
+        dst.keyFrame = src.keyFrame;
+        dst.timestamp = src.timestamp;
+        return dst;
+    }
+
+    public void release(Frame frame) {
+        if (frame != null) {
+            free.offer(frame);
+        }
+    }
+
+    @Override
+    public void close() {
+        Frame frame;
+        while ((frame = free.poll()) != null) {
+            frame.close();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Decoded video frames in one memory-mapped file, for clips that do not fit in the heap. The
+ * file is a 64-byte header followed by fixed-size slots, one per frame, each holding packed
+ * 8-bit BGR rows with no padding:
+ *
+ *   magic "FRMS", version, width, height, channels, frame count, frame rate (double)
+ *
+ * {@link #frame(int)} returns a JavaCV Frame whose buffer is the mapped slot itself, so the
+ * filters (through {@link FrameSurface}) and the recorder read and write the file directly;
+ * nothing is copied or compressed between stages. The file is mapped in chunks of whole slots
+ * (a single mapping is limited to 2 GB) and grows one chunk at a time while appending; opening
+ * an existing store only maps the slots it already holds.
+ *
+ * The header's frame count, not the file size, says how many slots are in use, so the file may
+ * end in an unused, zero-filled tail of its last chunk. The file is never truncated: a mapping
+ * is only released when the garbage collector frees its buffer, and Windows refuses to truncate
+ * or delete a file with a mapped section. Delete stores with {@link #delete}, after closing.
+ */
+public class FrameStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x46524D53; // "FRMS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int CHANNELS = 3;
+    // Largest mapping we ask for; a chunk is as many whole slots as fit in it
+    private static final long CHUNK_LIMIT = 1L << 30;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final double frameRate;
+    private final int slotBytes;
+    private final int slotsPerChunk;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final boolean writable;
+    private int frameCount;
+
+    private FrameStore(Path file, FileChannel channel, int width, int height, double frameRate, int frameCount, boolean writable) {
+        if ((long) width * height * CHANNELS > CHUNK_LIMIT) {
+            throw new IllegalArgumentException("Frame too large for the frame store: " + width + "x" + height);
+        }
+        this.file = file;
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.frameRate = frameRate;
+        this.slotBytes = width * height * CHANNELS;
+        this.slotsPerChunk = (int) Math.max(1, CHUNK_LIMIT / slotBytes);
+        this.frameCount = frameCount;
+        this.writable = writable;
+    }
+
+    // A new, empty store (replacing any existing file) for frames of this size
+    public static FrameStore create(Path file, int width, int height, double frameRate) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FrameStore store = new FrameStore(file, channel, width, height, frameRate, 0, true);
+        store.writeHeader();
+        return store;
+    }
+
+    // An existing store; writable means frames can be filtered in place
+    public static FrameStore open(Path file, boolean writable) throws IOException {
+        FileChannel channel = writable
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("Not a frame store: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) throw new IOException("Unsupported frame store version " + version + ": " + file);
+            int width = header.getInt();
+            int height = header.getInt();
+            int channels = header.getInt();
+            int frameCount = header.getInt();
+            double frameRate = header.getDouble();
+            if (channels != CHANNELS || width <= 0 || height <= 0) {
+                throw new IOException("Unsupported frame layout " + width + "x" + height + "x" + channels + ": " + file);
+            }
+            if (channel.size() < HEADER_BYTES + (long) frameCount * width * height * channels) {
+                throw new IOException("Frame store is truncated: " + file);
+            }
+            return new FrameStore(file, channel, width, height, frameRate, frameCount, writable);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public double frameRate() {
+        return frameRate;
+    }
+
+    public synchronized int frameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Frame index as a JavaCV BGR frame backed by the mapped slot. Writes to it (for example by
+     * filtering a {@link FrameSurface} over it) go straight to the file. Views of different
+     * frames can be used from different threads at the same time.
+     */
+    public Frame frame(int index) throws IOException {
+        if (index < 0 || index >= frameCount()) {
+            throw new IndexOutOfBoundsException("Frame " + index + " of " + frameCount());
+        }
+        return view(slot(index));
+    }
+
+    public FrameSurface surface(int index) throws IOException {
+        return new FrameSurface(frame(index));
+    }
+
+    // Reads frame index into memory now, so a later access does not wait for the disk
+    public void prefetch(int index) throws IOException {
+        if (index >= 0 && index < frameCount()) {
+            slot(index).load();
+        }
+    }
+
+    // Appends a copy of a decoded BGR frame (any stride) and returns the stored frame
+    public Frame append(Frame src) throws IOException {
+        if (src.imageWidth != width || src.imageHeight != height || src.imageChannels != CHANNELS
+                || src.imageDepth != Frame.DEPTH_UBYTE || !(src.image[0] instanceof ByteBuffer from)) {
+            throw new IllegalArgumentException("Expected an 8-bit BGR frame of " + width + "x" + height);
+        }
+        ByteBuffer to = appendSlot();
+        int rowBytes = width * CHANNELS;
+        for (int y = 0; y < height; y++) {
+            to.put(y * rowBytes, from, y * src.imageStride, rowBytes);
+        }
+        return view(to);
+    }
+
+    /**
+     * Deletes a closed store's file. Where the file cannot be deleted while the closed store's
+     * mappings are still reachable (Windows), it is deleted when the JVM exits instead, so a
+     * caller's own result or exception is never replaced by a failed clean-up.
+     */
+    public static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    // Flushes the frames and makes the frame count durable in the header
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (writable) {
+                for (MappedByteBuffer chunk : chunks) {
+                    if (chunk != null) chunk.force();
+                }
+                writeHeader();
+            }
+        } finally {
+            chunks.clear();
+            channel.close();
+        }
+    }
+
+    private synchronized MappedByteBuffer appendSlot() throws IOException {
+        if (!writable) throw new IllegalStateException("Frame store opened read-only: " + file);
+        MappedByteBuffer slot = slot(frameCount, true);
+        frameCount++;
+        return slot;
+    }
+
+    private synchronized MappedByteBuffer slot(int index) throws IOException {
+        return slot(index, false);
+    }
+
+    // The bytes of one slot, mapping its chunk as far as the file reaches, or when grow is set
+    // the whole chunk, which extends the file; a chunk mapped short is mapped again when needed
+    private MappedByteBuffer slot(int index, boolean grow) throws IOException {
+        int chunk = index / slotsPerChunk;
+        int end = (index % slotsPerChunk + 1) * slotBytes;
+        while (chunks.size() <= chunk) {
+            chunks.add(null);
+        }
+        MappedByteBuffer mapped = chunks.get(chunk);
+        if (mapped == null || mapped.capacity() < end) {
+            long offset = HEADER_BYTES + (long) chunk * slotsPerChunk * slotBytes;
+            long size = (long) slotsPerChunk * slotBytes;
+            if (!grow) size = Math.min(size, channel.size() - offset);
+            mapped = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, offset, size);
+            chunks.set(chunk, mapped);
+        }
+        return mapped.slice(end - slotBytes, slotBytes);
+    }
+
+    private Frame view(ByteBuffer slot) {
+        Frame frame = new Frame();
+        frame.imageWidth = width;
+        frame.imageHeight = height;
+        frame.imageDepth = Frame.DEPTH_UBYTE;
+        frame.imageChannels = CHANNELS;
+        frame.imageStride = width * CHANNELS;
+        frame.image = new Buffer[] {slot};
+        return frame;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(CHANNELS)
+                .putInt(frameCount).putDouble(frameRate);
+        header.clear();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import java.nio.ByteBuffer;
+
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Filters a JavaCV Frame in place. Works on packed 8-bit BGR frames, which is what
+ * FFmpegFrameGrabber produces with AV_PIX_FMT_BGR24 and what FFmpegFrameRecorder accepts
+ * back, so a frame can go from the grabber through the filters to the recorder without
+ * ever becoming a BufferedImage.
+ */
+public record FrameSurface(Frame frame) implements PixelSurface {
+
+    // One row of bytes per worker thread
+    private static final ThreadLocal<byte[][]> ROW = ThreadLocal.withInitial(() -> new byte[1][0]);
+
+    public FrameSurface {
+        if (frame.imageDepth != Frame.DEPTH_UBYTE || frame.imageChannels != 3 || !(frame.image[0] instanceof ByteBuffer)) {
+            throw new IllegalArgumentException("Unsupported frame layout: depth " + frame.imageDepth
+                    + ", " + frame.imageChannels + " channels (expected 8-bit BGR)");
+        }
+    }
+
+    @Override
+    public int width() {
+        return frame.imageWidth;
+    }
+
+    @Override
+    public int height() {
+        return frame.imageHeight;
+    }
+
+    @Override
+    public void read(int x, int y, int w, int h, int[] dst, int off, int scan) {
+        ByteBuffer buffer = (ByteBuffer) frame.image[0];
+        byte[] row = row(w * 3);
+        for (int j = 0; j < h; j++) {
+            buffer.get((y + j) * frame.imageStride + x * 3, row, 0, w * 3);
+            int d = off + j * scan;
+            for (int i = 0, s = 0; i < w; i++, s += 3) {
+                dst[d + i] = 0xFF000000 | (row[s + 2] & 0xFF) << 16 | (row[s + 1] & 0xFF) << 8 | (row[s] & 0xFF);
+            }
+        }
+    }
+
+    @Override
+    public void write(int x, int y, int w, int h, int[] src, int off, int scan) {
+        ByteBuffer buffer = (ByteBuffer) frame.image[0];
+        byte[] row = row(w * 3);
+        for (int j = 0; j < h; j++) {
+            int s = off + j * scan;
+            for (int i = 0, d = 0; i < w; i++, d += 3) {
+                int rgb = src[s + i];
+                row[d] = (byte) rgb;
+                row[d + 1] = (byte) (rgb >> 8);
+                row[d + 2] = (byte) (rgb >> 16);
+            }
+            buffer.put((y + j) * frame.imageStride + x * 3, row, 0, w * 3);
+        }
+    }
+
+    private static byte[] row(int size) {
+        byte[][] holder = ROW.get();
+        if (holder[0].length < size) {
+            holder[0] = new byte[size];
+        }
+        return holder[0];
+    }
+}
@@ -2,5 +2,9 @@ public enum ImageProcessor {
     SEQUENTIAL,
     FORKJOIN,
     EXECUTOR,
-    SIMD;
+    SIMD,
+    // Virtual thread per tile run, with filtering capped at one thread per core
+    VIRTUAL,
+    // Video only: filters the decoded YUV planes without converting frames to RGB
+    YUV;
 }
@@ -0,0 +1,183 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Filters the frames of one clip, re-filtering only the tiles whose input changed since they
+ * were last filtered. For screen recordings, surveillance footage and other mostly static
+ * video, most tiles of a frame are then copied from the previous output instead of filtered.
+ *
+ * Every frame is cut into a grid of {@link FilterPipeline#CACHE_TILE} squares. A tile counts
+ * as changed when any channel of any pixel differs from the input its current output was
+ * computed from by more than the tolerance (0 means bit-exact). Because a stencil stage reads
+ * up to the pipeline's halo radius around a tile, a tile is re-filtered when it or any tile
+ * within that radius changed. With tolerance 0 the output is identical to filtering every
+ * frame in full; a small tolerance absorbs encoder noise at the cost of keeping differences
+ * up to that size.
+ */
+public class IncrementalFilter {
+
+    private static final int TILE = FilterPipeline.CACHE_TILE;
+
+    public record Stats(long frames, long tiles, long reusedTiles) {
+
+        public double reuseRatio() {
+            return tiles == 0 ? 0 : reusedTiles / (double) tiles;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d frames, %.1f%% of %d tiles reused", frames, reuseRatio() * 100, tiles);
+        }
+    }
+
+    private final FilterPipeline pipeline;
+    private final ImageProcessor processorType;
+    private final int numThreads;
+    private final int tolerance;
+
+    private int width;
+    private int height;
+    private int columns;
+    private int rows;
+    private int threads;
+    private int[] input;
+    // Per pixel: the input the current output was filtered from, and that output
+    private int[] reference;
+    private int[] output;
+    private boolean[] changed;
+    private boolean primed;
+    private long frames;
+    private long tiles;
+    private long reusedTiles;
+
+    // processorType is SEQUENTIAL, FORKJOIN, SIMD or EXECUTOR; numThreads <= 0 lets the autotuner choose
+    public IncrementalFilter(FilterPipeline pipeline, ImageProcessor processorType, int numThreads, int tolerance) {
+        switch (processorType) {
+            case SEQUENTIAL, FORKJOIN, SIMD, EXECUTOR -> { }
+            default -> throw new IllegalArgumentException("Incremental filtering is not supported for " + processorType);
+        }
+        if (tolerance < 0 || tolerance > 255) {
+            throw new IllegalArgumentException("Tolerance must be between 0 and 255: " + tolerance);
+        }
+        this.pipeline = pipeline;
+        this.processorType = processorType;
+        this.numThreads = numThreads;
+        this.tolerance = tolerance;
+    }
+
+    // Filters one frame in place
+    public void filter(PixelSurface frame) {
+        if (input == null || frame.width() != width || frame.height() != height) {
+            resize(frame.width(), frame.height());
+        }
+        frame.read(0, 0, width, height, input, 0, width);
+
+        for (int ty = 0; ty < rows; ty++) {
+            for (int tx = 0; tx < columns; tx++) {
+                changed[ty * columns + tx] = !primed || tileChanged(tx, ty);
+            }
+        }
+
+        // A tile's output depends on its neighbours' input up to the halo radius
+        int reach = (pipeline.haloRadius() + TILE - 1) / TILE;
+        List<TilingStrategy.Tile> dirty = new ArrayList<>();
+        List<TilingStrategy.Tile> clean = new ArrayList<>();
+        for (int ty = 0; ty < rows; ty++) {
+            for (int tx = 0; tx < columns; tx++) {
+                TilingStrategy.Tile tile = tile(tx, ty);
+                if (anyChanged(tx - reach, ty - reach, tx + reach, ty + reach)) {
+                    dirty.add(tile);
+                } else {
+                    clean.add(tile);
+                }
+            }
+        }
+
+        // Clean tiles get their previous output back; the frame still holds the new input elsewhere
+        for (TilingStrategy.Tile tile : clean) {
+            frame.write(tile.x(), tile.y(), tile.width(), tile.height(), output, tile.y() * width + tile.x(), width);
+        }
+        if (!dirty.isEmpty()) {
+            // input is an unmodified copy of the frame, so it doubles as the stencil snapshot
+            int[] source = pipeline.needsNeighbours() ? input : null;
+            switch (processorType) {
+                case FORKJOIN -> ForkJoinProcessing.applyTiles(Filters.SCALAR, pipeline, source, frame, dirty, threads);
+                case SIMD -> ForkJoinProcessing.applyTiles(SimdFilters.KERNELS, pipeline, source, frame, dirty, threads);
+                case EXECUTOR -> ExecutorServiceProcessing.applyTiles(pipeline, source, frame, dirty, threads);
+                default -> {
+                    for (TilingStrategy.Tile tile : dirty) {
+                        pipeline.apply(Filters.SCALAR, source, frame, tile.x(), tile.y(), tile.width(), tile.height());
+                    }
+                }
+            }
+            for (TilingStrategy.Tile tile : dirty) {
+                int offset = tile.y() * width + tile.x();
+                frame.read(tile.x(), tile.y(), tile.width(), tile.height(), output, offset, width);
+                for (int y = 0; y < tile.height(); y++) {
+                    System.arraycopy(input, offset + y * width, reference, offset + y * width, tile.width());
+                }
+            }
+        }
+
+        primed = true;
+        frames++;
+        tiles += dirty.size() + clean.size();
+        reusedTiles += clean.size();
+    }
+
+    public Stats stats() {
+        return new Stats(frames, tiles, reusedTiles);
+    }
+
+    private void resize(int newWidth, int newHeight) {
+        width = newWidth;
+        height = newHeight;
+        columns = (width + TILE - 1) / TILE;
+        rows = (height + TILE - 1) / TILE;
+        threads = numThreads > 0 ? numThreads : AutoTuner.resolve(processorType, pipeline, width, height, 0, 0).threads();
+        input = new int[width * height];
+        reference = new int[width * height];
+        output = new int[width * height];
+        changed = new boolean[columns * rows];
+        // Nothing to reuse until a frame of the new size has been filtered
+        primed = false;
+    }
+
+    private boolean tileChanged(int tx, int ty) {
+        int x0 = tx * TILE;
+        int w = Math.min(TILE, width - x0);
+        for (int y = ty * TILE; y < Math.min(height, (ty + 1) * TILE); y++) {
+            int from = y * width + x0;
+            if (tolerance == 0) {
+                if (Arrays.mismatch(input, from, from + w, reference, from, from + w) >= 0) return true;
+                continue;
+            }
+            for (int i = from; i < from + w; i++) {
+                int a = input[i];
+                int b = reference[i];
+                if (Math.abs((a >> 16 & 0xFF) - (b >> 16 & 0xFF)) > tolerance
+                        || Math.abs((a >> 8 & 0xFF) - (b >> 8 & 0xFF)) > tolerance
+                        || Math.abs((a & 0xFF) - (b & 0xFF)) > tolerance) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean anyChanged(int tx0, int ty0, int tx1, int ty1) {
+        for (int ty = Math.max(0, ty0); ty <= Math.min(rows - 1, ty1); ty++) {
+            for (int tx = Math.max(0, tx0); tx <= Math.min(columns - 1, tx1); tx++) {
+                if (changed[ty * columns + tx]) return true;
+            }
+        }
+        return false;
+    }
+
+    private TilingStrategy.Tile tile(int tx, int ty) {
+        int x = tx * TILE;
+        int y = ty * TILE;
+        return new TilingStrategy.Tile(x, y, Math.min(TILE, width - x), Math.min(TILE, height - y));
+    }
+}
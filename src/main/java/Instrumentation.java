@@ -0,0 +1,400 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Latency histograms for the hot paths (decode, RGB conversion, every filter kernel, encode,
+ * tiles, queue waits), published as JFR events and through the MXBean
+ * imageproc:type=Instrumentation. Off by default; -Dinstrumentation.enabled=true turns it on.
+ * When off, {@link #start()} returns 0 and {@link #record} returns immediately, so the probes
+ * cost one constant branch.
+ *
+ * Callers time a section with
+ *
+ *   long t = Instrumentation.start();
+ *   ...
+ *   Instrumentation.record(Instrumentation.ENCODE, t);
+ *
+ * and wrap a whole job in {@link #beginRun}, which prints a summary (histograms, pool
+ * statistics, allocation rate, CPU load and GC time) when the outermost run ends.
+ */
+public final class Instrumentation {
+
+    public static final String DECODE = "decode";
+    public static final String CONVERT = "convert";
+    public static final String FILTER = "filter";
+    public static final String ENCODE = "encode";
+    public static final String FRAME = "frame";
+    public static final String TILE = "tile";
+    public static final String QUEUE_WAIT = "queue wait";
+
+    private static final boolean ENABLED = Boolean.getBoolean("instrumentation.enabled");
+
+    /**
+     * What the MXBean exposes. Latencies are in milliseconds and keyed by probe name, e.g.
+     * "decode" or "kernel GAUSSIAN_BLUR"; the run figures cover the current (or last) run.
+     */
+    public interface StatsMXBean {
+        Map<String, Long> getCounts();
+
+        Map<String, Double> getMeanMillis();
+
+        Map<String, Double> getP50Millis();
+
+        Map<String, Double> getP99Millis();
+
+        Map<String, Double> getMaxMillis();
+
+        long getForkJoinSteals();
+
+        long getQueuedTasks();
+
+        double getAllocationRateMBPerSecond();
+
+        double getProcessCpuLoad();
+
+        long getGcMillis();
+
+        String getSummary();
+
+        void reset();
+    }
+
+    @Name("imageproc.Stage")
+    @Label("Processing Stage")
+    @Description("One timed section of the image/video hot path")
+    @Category({"Image Processing"})
+    @StackTrace(false)
+    static final class StageEvent extends Event {
+        @Label("Probe")
+        String probe;
+
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    @Name("imageproc.Run")
+    @Label("Processing Run")
+    @Category({"Image Processing"})
+    @StackTrace(false)
+    static final class RunEvent extends Event {
+        @Label("Name")
+        String name;
+
+        @Label("Allocated MB")
+        double allocatedMB;
+
+        @Label("GC Time")
+        @Timespan(Timespan.MILLISECONDS)
+        long gcMillis;
+    }
+
+    /**
+     * Log-linear latency histogram: four buckets per power of two, so percentiles are
+     * within 25% of the true value. Lock-free; recording is a few adds.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BUCKETS = 4;
+        private final LongAdder[] buckets = new LongAdder[64 * SUB_BUCKETS];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        LatencyHistogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            long value = Math.max(1, nanos);
+            buckets[bucket(value)].increment();
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double meanNanos() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        long maxNanos() {
+            return max.get();
+        }
+
+        // Upper bound of the bucket holding the given fraction of samples
+        long percentileNanos(double fraction) {
+            long total = count.sum();
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(fraction * total);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        private static int bucket(long value) {
+            int msb = 63 - Long.numberOfLeadingZeros(value);
+            if (msb < 2) return (int) value;
+            return msb * SUB_BUCKETS + (int) ((value >>> (msb - 2)) & (SUB_BUCKETS - 1));
+        }
+
+        private static long upperBound(int bucket) {
+            int msb = bucket / SUB_BUCKETS;
+            if (msb < 2) return bucket;
+            long sub = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1) << (msb - 2)) - 1;
+        }
+    }
+
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    // Outermost run in progress, and what the JVM counters were when it began
+    private static int activeRuns;
+    private static String runName = "";
+    private static long runStartNanos;
+    private static long runStartAllocated;
+    private static long runStartGcMillis;
+    private static long runStartCpuNanos;
+    private static long runStartSteals;
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Stats(),
+                        new ObjectName("imageproc:type=Instrumentation"));
+            } catch (Exception e) {
+                System.err.println("❌ Could not register instrumentation MXBean: " + e.getMessage());
+            }
+            markRunStart();
+        }
+    }
+
+    private Instrumentation() {
+    }
+
+    public static boolean enabled() {
+        return ENABLED;
+    }
+
+    // Start time for a probe, or 0 when instrumentation is off
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public static void record(String probe, long startNanos) {
+        if (!ENABLED || startNanos == 0) return;
+        long nanos = System.nanoTime() - startNanos;
+        HISTOGRAMS.computeIfAbsent(probe, p -> new LatencyHistogram()).record(nanos);
+        StageEvent event = new StageEvent();
+        if (event.shouldCommit()) {
+            event.probe = probe;
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+
+    // Closing the returned run prints the summary if it was the outermost one
+    public interface Run extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Run NO_RUN = () -> { };
+
+    /**
+     * Starts a run. Histograms are reset when no other run is active, so nested runs (a cached
+     * call wrapping a video pass, or a batch) report together when the outermost one ends.
+     */
+    public static Run beginRun(String name) {
+        if (!ENABLED) return NO_RUN;
+        synchronized (Instrumentation.class) {
+            if (activeRuns++ == 0) {
+                runName = name;
+                HISTOGRAMS.clear();
+                markRunStart();
+            }
+        }
+        return Instrumentation::endRun;
+    }
+
+    private static void endRun() {
+        String summary;
+        synchronized (Instrumentation.class) {
+            if (--activeRuns > 0) return;
+            summary = summary();
+            RunEvent event = new RunEvent();
+            if (event.shouldCommit()) {
+                event.name = runName;
+                event.allocatedMB = (allocatedBytes() - runStartAllocated) / 1e6;
+                event.gcMillis = gcMillisSinceRunStart();
+                event.commit();
+            }
+        }
+        System.out.println(summary);
+    }
+
+    public static synchronized String summary() {
+        double seconds = runSeconds();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("instrumentation: %s, %.2f s%n", runName.isEmpty() ? "run" : runName, seconds));
+        sb.append(String.format("%-28s %9s %10s %10s %10s %10s %11s%n", "probe", "count", "mean ms", "p50 ms", "p99 ms", "max ms", "total ms"));
+        new TreeMap<>(HISTOGRAMS).forEach((probe, h) -> sb.append(String.format("%-28s %9d %10.3f %10.3f %10.3f %10.3f %11.1f%n",
+                probe, h.count(), h.meanNanos() / 1e6, h.percentileNanos(0.5) / 1e6, h.percentileNanos(0.99) / 1e6,
+                h.maxNanos() / 1e6, h.meanNanos() * h.count() / 1e6)));
+        ProcessingRuntime.PoolStats pools = ProcessingRuntime.poolStats();
+        sb.append(String.format("pools: %d steals, %d queued, %d active threads%n",
+                pools.steals() - runStartSteals, pools.queuedTasks(), pools.activeThreads()));
+        sb.append(String.format("allocation: %.1f MB/s, CPU load: %.0f%%, GC: %d ms",
+                allocationRate(seconds), cpuLoad(seconds) * 100, gcMillisSinceRunStart()));
+        return sb.toString();
+    }
+
+    private static synchronized void markRunStart() {
+        runStartNanos = System.nanoTime();
+        runStartAllocated = allocatedBytes();
+        runStartGcMillis = gcMillis();
+        runStartCpuNanos = cpuNanos();
+        runStartSteals = ProcessingRuntime.poolStats().steals();
+    }
+
+    private static synchronized double allocationRate(double seconds) {
+        return (allocatedBytes() - runStartAllocated) / 1e6 / seconds;
+    }
+
+    // Share of all cores used by this process since the run started
+    private static synchronized double cpuLoad(double seconds) {
+        long cpu = cpuNanos();
+        if (cpu < 0) return -1;
+        return (cpu - runStartCpuNanos) / 1e9 / seconds / Runtime.getRuntime().availableProcessors();
+    }
+
+    private static synchronized long gcMillisSinceRunStart() {
+        return gcMillis() - runStartGcMillis;
+    }
+
+    private static synchronized double runSeconds() {
+        return Math.max(1e-9, (System.nanoTime() - runStartNanos) / 1e9);
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads.getTotalThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    private static long cpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static final class Stats implements StatsMXBean {
+
+        @Override
+        public Map<String, Long> getCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            HISTOGRAMS.forEach((probe, h) -> counts.put(probe, h.count()));
+            return counts;
+        }
+
+        @Override
+        public Map<String, Double> getMeanMillis() {
+            Map<String, Double> values = new TreeMap<>();
+            HISTOGRAMS.forEach((probe, h) -> values.put(probe, h.meanNanos() / 1e6));
+            return values;
+        }
+
+        @Override
+        public Map<String, Double> getP50Millis() {
+            return percentiles(0.5);
+        }
+
+        @Override
+        public Map<String, Double> getP99Millis() {
+            return percentiles(0.99);
+        }
+
+        @Override
+        public Map<String, Double> getMaxMillis() {
+            Map<String, Double> values = new TreeMap<>();
+            HISTOGRAMS.forEach((probe, h) -> values.put(probe, h.maxNanos() / 1e6));
+            return values;
+        }
+
+        @Override
+        public long getForkJoinSteals() {
+            return ProcessingRuntime.poolStats().steals();
+        }
+
+        @Override
+        public long getQueuedTasks() {
+            return ProcessingRuntime.poolStats().queuedTasks();
+        }
+
+        @Override
+        public double getAllocationRateMBPerSecond() {
+            return allocationRate(runSeconds());
+        }
+
+        @Override
+        public double getProcessCpuLoad() {
+            return cpuLoad(runSeconds());
+        }
+
+        @Override
+        public long getGcMillis() {
+            return gcMillisSinceRunStart();
+        }
+
+        @Override
+        public String getSummary() {
+            return summary();
+        }
+
+        @Override
+        public void reset() {
+            HISTOGRAMS.clear();
+            markRunStart();
+        }
+
+        private static Map<String, Double> percentiles(double fraction) {
+            Map<String, Double> values = new TreeMap<>();
+            HISTOGRAMS.forEach((probe, h) -> values.put(probe, h.percentileNanos(fraction) / 1e6));
+            return values;
+        }
+    }
+}
@@ -3,25 +3,39 @@ import java.awt.Desktop;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
+import java.util.OptionalDouble;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.imageio.ImageIO;
 
-import org.bytedeco.javacv.FFmpegFrameGrabber;
-
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Hyperlink;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextField;
+import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.media.MediaView;
@@ -39,24 +53,58 @@ public class MainGUI extends Application {
     private final DecimalFormat df = new DecimalFormat("#.##");
     private final Hyperlink inputVideoLink = new Hyperlink();
     private final Hyperlink outputVideoLink = new Hyperlink();
+    private final ProgressBar progressBar = new ProgressBar(0);
+    private final Label progressLabel = new Label();
+    // The run in progress, if any; only touched on the UI thread
+    private ProcessingJob currentJob;
+
+    private static final String IMAGE_OUTPUT = "gui_output.jpg";
+    private static final String VIDEO_OUTPUT = "gui_output.mp4";
+    private static final String STREAMED_OUTPUT = "gui_output.tif";
+    private static final int BLOCK_SIZE = 0;
+    // Decoded image, two working copies and a stencil snapshot; bigger inputs are streamed
+    private static final long IN_MEMORY_BYTES_PER_PIXEL = 16;
+    private static final int PREVIEW_WIDTH = 350;
+    private static final int PREVIEW_KEYFRAMES = 4;
+    // Bumped for every proxy preview and full run, so only the latest one updates the output view
+    private long previewGeneration;
 
     @Override
     public void start(Stage primaryStage) {
         primaryStage.setTitle("4K Image/Video Processor");
 
-        ComboBox<FilterType> filterCombo = new ComboBox<>();
-        filterCombo.getItems().addAll(FilterType.values());
-        filterCombo.setValue(FilterType.EDGE_DETECTION);
+        // Built-in filters and any found through FilterProvider plugins
+        ComboBox<String> filterCombo = new ComboBox<>();
+        filterCombo.getItems().addAll(FilterRegistry.names());
+        filterCombo.setValue(FilterType.EDGE_DETECTION.name());
 
         ComboBox<ImageProcessor> methodCombo = new ComboBox<>();
-        methodCombo.getItems().addAll(ImageProcessor.FORKJOIN, ImageProcessor.EXECUTOR);
+        methodCombo.getItems().addAll(ImageProcessor.FORKJOIN, ImageProcessor.EXECUTOR, ImageProcessor.SIMD, ImageProcessor.VIRTUAL, ImageProcessor.YUV);
         methodCombo.setValue(ImageProcessor.FORKJOIN);
 
-        TextField threadInput = new TextField("8");
+        outputPreview.setFitWidth(PREVIEW_WIDTH);
+        outputPreview.setPreserveRatio(true);
+        outputPreview.setSmooth(true);
+        outputPreview.setStyle("-fx-effect: dropshadow(three-pass-box, rgba(0,0,0,0.6), 10, 0, 0, 0);");
+        progressBar.setPrefWidth(PREVIEW_WIDTH);
+
+        TextField threadInput = new TextField();
+        threadInput.setPromptText("auto");
+
+        TextField pipelineInput = new TextField();
+        pipelineInput.setPromptText("Optional chain, e.g. GRAYSCALE, GAUSSIAN_BLUR(8), EDGE_DETECTION");
 
         Button fileButton = new Button("Choose File");
         Label fileLabel = new Label("No file selected");
 
+        // Filter changes are previewed on a cached low-resolution proxy; Export runs at full resolution
+        CheckBox livePreview = new CheckBox("Live preview");
+        livePreview.setSelected(true);
+        Runnable refreshPreview = () -> refreshProxyPreview(livePreview.isSelected(), filterCombo.getValue(), pipelineInput.getText());
+        filterCombo.valueProperty().addListener((_, _, _) -> refreshPreview.run());
+        pipelineInput.textProperty().addListener((_, _, _) -> refreshPreview.run());
+        livePreview.selectedProperty().addListener((_, _, _) -> refreshPreview.run());
+
         fileButton.setOnAction(_ -> {
             FileChooser chooser = new FileChooser();
             File file = chooser.showOpenDialog(primaryStage);
@@ -78,128 +126,117 @@ public class MainGUI extends Application {
                     inputVideoLink.setVisible(true);
                 } else {
                     inputVideoLink.setVisible(false);
+                    inputPreview.setImage(null);
                     inputPreview.setVisible(true);
-                    try {
-                        BufferedImage img = ImageIO.read(file);
+                    inputPreview.setFitWidth(PREVIEW_WIDTH);
+                    inputPreview.setPreserveRatio(true);
+                    inputPreview.setSmooth(true);
+                    inputPreview.setStyle("-fx-effect: dropshadow(three-pass-box, rgba(0,0,0,0.6), 10, 0, 0, 0);");
+                    // The preview-sized proxy, so even images too large for the heap can be shown;
+                    // decoding a large file takes seconds, so it happens off the UI thread
+                    CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return ProxyPreview.render(ProxyPreview.forImage(file.toPath(), PREVIEW_WIDTH), null);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, ProcessingRuntime.virtualThreads()).whenComplete((img, failure) -> Platform.runLater(() -> {
+                        if (selectedFile != file) return;
+                        if (failure != null) {
+                            progressLabel.setText("❌ Preview failed: " + message(failure));
+                            return;
+                        }
                         inputPreview.setImage(SwingFXUtils.toFXImage(img, null));
-                        inputPreview.setFitWidth(350);
-                        inputPreview.setPreserveRatio(true);
-                        inputPreview.setSmooth(true);
-                        inputPreview.setStyle("-fx-effect: dropshadow(three-pass-box, rgba(0,0,0,0.6), 10, 0, 0, 0);");
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+                    }));
                 }
+                refreshPreview.run();
             }
         });
 
-        Button runButton = new Button("Run");
-        runButton.setOnAction(_ -> {
-            int threads = Integer.parseInt(threadInput.getText());
-            FilterType filter = filterCombo.getValue();
-            ImageProcessor method = methodCombo.getValue();
+        CheckBox baselineToggle = new CheckBox("Compare with sequential");
+        Button runButton = new Button("Export");
+        Button cancelButton = new Button("Cancel");
+        cancelButton.setDisable(true);
 
+        runButton.setOnAction(_ -> {
             if (selectedFile == null) {
                 resultLabel.setText("❌ No file selected.");
                 return;
             }
-
+            int threads;
+            FilterPipeline pipeline;
             try {
-                if (selectedFile.getName().endsWith(".mp4")) {
-                    String outputPath = "gui_output.mp4";
-                    // --- Dynamic block size calculation for video ---
-                    int width, height;
-                    try (FFmpegFrameGrabber grabber = new org.bytedeco.javacv.FFmpegFrameGrabber(selectedFile.getAbsolutePath())) {
-                        grabber.start();
-                        width = grabber.getImageWidth();
-                        height = grabber.getImageHeight();
-                        grabber.stop();
-                    }
-                    int numBlocks = threads * 2;
-                    int imageArea = width * height;
-                    int blockArea = Math.max(1, imageArea / numBlocks);
-                    int blockSize = (int) Math.ceil(Math.sqrt(blockArea));
-
-                    long startSeq = System.currentTimeMillis();
-                    VideoProcessor.processVideoInMemory(selectedFile.getAbsolutePath(), outputPath, filter, ImageProcessor.SEQUENTIAL, threads, blockSize);
-                    long endSeq = System.currentTimeMillis() - startSeq;
-
-                    long startPar = System.currentTimeMillis();
-                    VideoProcessor.processVideoInMemory(selectedFile.getAbsolutePath(), outputPath, filter, method, threads, blockSize);
-                    long endPar = System.currentTimeMillis() - startPar;
-
-                    double speedup = (endSeq / 1000.0) / (endPar / 1000.0);
-
-                    resultLabel.setText(
-                        "Video done\n" +
-                        "Speedup: " + df.format(speedup) + "x\n"
-                    );
-                    // Show output video link
-                    outputPreview.setImage(null);
-                    outputPreview.setVisible(false);
-                    outputVideoLink.setText("Open output video: " + outputPath);
-                    outputVideoLink.setOnAction(e -> {
-                        try { Desktop.getDesktop().open(new File(outputPath)); } catch (Exception ex) { ex.printStackTrace(); }
-                    });
-                    outputVideoLink.setVisible(true);
-                } else {
-                    outputVideoLink.setVisible(false);
-                    outputPreview.setVisible(true);
-                    BufferedImage original = ImageIO.read(selectedFile);
-                    int width = original.getWidth();
-                    int height = original.getHeight();
-                    int numBlocks = threads * 2;
-                    int imageArea = width * height;
-                    int blockArea = Math.max(1, imageArea / numBlocks);
-                    int blockSize = (int) Math.ceil(Math.sqrt(blockArea));
-                    BufferedImage copy1 = deepCopy(original);
-                    BufferedImage copy2 = deepCopy(original);
-
-                    long t1s = System.nanoTime();
-                    SequentialProcessing.applyFilter(filter, copy1);
-                    long t1e = System.nanoTime();
-
-                    long t2s;
-                    long t2e;
-                    if (method == ImageProcessor.FORKJOIN){
-                        t2s = System.nanoTime();
-                        ForkJoinProcessing.applyFilter(filter, copy2, threads, blockSize);
-                        t2e = System.nanoTime();
-                    }
-                    else{
-                        t2s = System.nanoTime();
-                        ExecutorServiceProcessing.applyFilter(filter, copy2, threads, blockSize);
-                        t2e = System.nanoTime();
-                    }
-
-                    double seqMs = (t1e - t1s) / 1e6;
-                    double parMs = (t2e - t2s) / 1e6;
-                    double speedup = seqMs / parMs;
-
-                    outputPreview.setImage(SwingFXUtils.toFXImage(copy1, null));
-                    outputPreview.setFitWidth(350);
-                    outputPreview.setPreserveRatio(true);
-                    outputPreview.setSmooth(true);
-                    outputPreview.setStyle("-fx-effect: dropshadow(three-pass-box, rgba(0,0,0,0.6), 10, 0, 0, 0);");
-                    ImageIO.write(copy1, "jpg", new File("gui_output.jpg"));
-
-                    resultLabel.setText(
-                        "Image done\n" +
-                        "Speedup: " + df.format(speedup) + "x    "+
-                        "Sequential Time: " +df.format(seqMs) +"ms    "+
-                        "Parallel Time: " +df.format(parMs) +"ms    "
-                    );
-                }
+                // Blank means the autotuner picks the thread count (and always the block size)
+                threads = threadInput.getText().isBlank() ? 0 : Integer.parseInt(threadInput.getText().trim());
+                // A non-empty chain overrides the single filter from the combo box
+                pipeline = pipelineInput.getText().isBlank()
+                        ? FilterPipeline.parse(filterCombo.getValue())
+                        : FilterPipeline.parse(pipelineInput.getText());
             } catch (Exception ex) {
                 resultLabel.setText("❌ Error: " + ex.getMessage());
+                return;
             }
+            ImageProcessor method = methodCombo.getValue();
+            boolean compare = baselineToggle.isSelected();
+            File file = selectedFile;
+            boolean video = file.getName().endsWith(".mp4");
+
+            LivePreview preview = new LivePreview(video);
+            currentJob = preview.job;
+            previewGeneration++;
+            runButton.setDisable(true);
+            cancelButton.setDisable(false);
+            resultLabel.setText("Processing...");
+            outputPreview.setImage(null);
+            outputPreview.setVisible(true);
+            outputVideoLink.setVisible(false);
+            preview.start();
+
+            // The UI thread only starts the run; decoding, filtering and encoding happen on the shared runtime
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    return video
+                            ? processVideo(file, pipeline, method, threads, compare, preview)
+                            : processImage(file, pipeline, method, threads, compare, preview);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, ProcessingRuntime.virtualThreads()).whenComplete((summary, failure) -> Platform.runLater(() -> {
+                preview.stop();
+                preview.refresh();
+                currentJob = null;
+                runButton.setDisable(false);
+                cancelButton.setDisable(true);
+                if (failure == null) {
+                    resultLabel.setText(summary);
+                    if (video) {
+                        outputVideoLink.setText("Open output video: " + VIDEO_OUTPUT);
+                        outputVideoLink.setOnAction(e -> {
+                            try { Desktop.getDesktop().open(new File(VIDEO_OUTPUT)); } catch (Exception ex) { ex.printStackTrace(); }
+                        });
+                        outputVideoLink.setVisible(true);
+                    }
+                } else if (preview.job.isCancelled()) {
+                    resultLabel.setText("Cancelled.");
+                } else {
+                    resultLabel.setText("❌ Error: " + message(failure));
+                }
+            }));
+        });
+
+        // Tile and frame tasks see the cancellation at their next tile, so this takes effect within one tile
+        cancelButton.setOnAction(_ -> {
+            if (currentJob != null) currentJob.cancel();
         });
 
         VBox controls = new VBox(10,
                 new Label("Filter Type:"), filterCombo,
+                new Label("Filter Chain:"), pipelineInput,
                 new Label("Processor Method:"), methodCombo,
                 new Label("Threads:"), threadInput,
-                fileButton, fileLabel, runButton, resultLabel);
+                fileButton, fileLabel, livePreview, baselineToggle,
+                new HBox(10, runButton, cancelButton),
+                progressBar, progressLabel, resultLabel);
         controls.setPadding(new Insets(10));
         controls.setAlignment(Pos.TOP_LEFT);
 
@@ -221,6 +258,273 @@ public class MainGUI extends Application {
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        // Closing the window abandons the current run
+        ProcessingJob job = currentJob;
+        if (job != null) job.cancel();
+    }
+
+    // Filters the selected file's proxy off the UI thread and shows it unless something newer took over
+    private void refreshProxyPreview(boolean enabled, String filter, String chain) {
+        if (!enabled || selectedFile == null || currentJob != null) return;
+        FilterPipeline pipeline;
+        try {
+            pipeline = FilterPipeline.parse(chain.isBlank() ? filter : chain);
+        } catch (IllegalArgumentException e) {
+            // Probably a chain that is still being typed; keep the last preview
+            return;
+        }
+        File file = selectedFile;
+        long generation = ++previewGeneration;
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                // Only the first preview of a file decodes it; later ones filter the cached proxy
+                ProxyPreview.Proxy proxy = file.getName().endsWith(".mp4")
+                        ? ProxyPreview.forVideo(file.toPath(), PREVIEW_WIDTH, PREVIEW_KEYFRAMES)
+                        : ProxyPreview.forImage(file.toPath(), PREVIEW_WIDTH);
+                return ProxyPreview.render(proxy, pipeline);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, ProcessingRuntime.virtualThreads()).whenComplete((image, failure) -> Platform.runLater(() -> {
+            if (generation != previewGeneration || currentJob != null) return;
+            if (failure != null) {
+                progressLabel.setText("❌ Preview failed: " + message(failure));
+                return;
+            }
+            outputPreview.setImage(SwingFXUtils.toFXImage(image, null));
+            outputPreview.setVisible(true);
+            progressLabel.setText("Preview of " + pipeline + " (reduced size); Export for full resolution");
+        }));
+    }
+
+    // The message of the underlying failure, without the async wrappers
+    private static String message(Throwable failure) {
+        Throwable cause = failure;
+        while (cause.getCause() != null && (cause instanceof CompletionException || cause instanceof UncheckedIOException)) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+
+    // Runs on a worker; returns the text for the result label
+    private String processImage(File file, FilterPipeline pipeline, ImageProcessor method, int threads, boolean compare, LivePreview preview) throws IOException {
+        if (method == ImageProcessor.YUV) {
+            throw new IllegalArgumentException("YUV mode is for videos only");
+        }
+        StreamingProcessor.Dimensions size = StreamingProcessor.dimensions(file.toPath());
+        if (size.pixels() * IN_MEMORY_BYTES_PER_PIXEL > Runtime.getRuntime().maxMemory()) {
+            return streamImage(file, size, pipeline, threads, preview);
+        }
+        ResultCache.Key key = ResultCache.key(file.toPath(), pipeline);
+        BufferedImage cached = ResultCache.getImage(key);
+        if (cached != null) {
+            preview.showResult(cached);
+            ImageIO.write(cached, "jpg", new File(IMAGE_OUTPUT));
+            return "Image done (cached result)\n" + ResultCache.stats();
+        }
+
+        BufferedImage original = ImageIO.read(file);
+        if (original == null) {
+            throw new IOException("Unsupported image format: " + file.getName());
+        }
+        ProcessingJob job = preview.job;
+
+        // The sequential time only depends on the input and the chain, so it is measured at most once
+        OptionalDouble cachedSeq = ResultCache.baselineMillis(key);
+        OptionalDouble seqMs = cachedSeq;
+        if (compare && cachedSeq.isEmpty()) {
+            preview.phase("Sequential baseline");
+            BufferedImage copy1 = deepCopy(original);
+            long t1s = System.nanoTime();
+            SequentialProcessing.applyFilter(pipeline, job.guard(PixelSurface.of(copy1)));
+            seqMs = OptionalDouble.of((System.nanoTime() - t1s) / 1e6);
+            ResultCache.recordBaseline(key, seqMs.getAsDouble());
+        }
+
+        BufferedImage copy2 = deepCopy(original);
+        preview.showTarget(copy2);
+        preview.phase("Filtering");
+        PixelSurface target = job.track(PixelSurface.of(copy2));
+        long t2s = System.nanoTime();
+        try (var _ = Instrumentation.beginRun("image " + method)) {
+            switch (method) {
+                case FORKJOIN -> ForkJoinProcessing.applyFilter(pipeline, target, threads, BLOCK_SIZE);
+                case SIMD -> SimdProcessing.applyFilter(pipeline, target, threads, BLOCK_SIZE);
+                case VIRTUAL -> VirtualThreadProcessing.applyFilter(pipeline, target, threads, BLOCK_SIZE);
+                default -> ExecutorServiceProcessing.applyFilter(pipeline, target, threads, BLOCK_SIZE);
+            }
+        }
+        double parMs = (System.nanoTime() - t2s) / 1e6;
+
+        // Every backend produces the same pixels as the sequential one
+        ResultCache.putImage(key, copy2);
+        ImageIO.write(copy2, "jpg", new File(IMAGE_OUTPUT));
+
+        String timing = seqMs.isPresent()
+                ? "Speedup: " + df.format(seqMs.getAsDouble() / parMs) + "x    " +
+                  "Sequential Time: " + df.format(seqMs.getAsDouble()) + "ms" + (cachedSeq.isPresent() ? " (cached)    " : "    ")
+                : "";
+        return "Image done\n" +
+                timing + "Parallel Time: " + df.format(parMs) + "ms    \n" +
+                resourceUsage() + "\n" +
+                ResultCache.stats();
+    }
+
+    // Images too large to hold in memory are filtered band by band into a tiled TIFF
+    private String streamImage(File file, StreamingProcessor.Dimensions size, FilterPipeline pipeline, int threads, LivePreview preview) throws IOException {
+        preview.expectPixels(size.pixels());
+        preview.phase("Streaming");
+        StreamingProcessor.Report report = StreamingProcessor.process(file.toPath(), Path.of(STREAMED_OUTPUT), pipeline, threads, preview.job);
+        preview.showResult(ProxyPreview.render(ProxyPreview.forImage(Path.of(STREAMED_OUTPUT), PREVIEW_WIDTH), null));
+        return "Image streamed to " + STREAMED_OUTPUT + "\n" +
+                "Sustained: " + df.format(report.megapixelsPerSecond()) + " MP/s    " +
+                "Time: " + df.format(report.seconds()) + "s    " +
+                report.bands() + " bands on " + report.threads() + " threads\n" +
+                resourceUsage();
+    }
+
+    // Runs on a worker; returns the text for the result label
+    private String processVideo(File file, FilterPipeline pipeline, ImageProcessor method, int threads, boolean compare, LivePreview preview) throws IOException {
+        Path input = file.toPath();
+        ResultCache.Key key = ResultCache.key(input, pipeline, method);
+        if (ResultCache.copyEncoded(key, Path.of(VIDEO_OUTPUT))) {
+            return "Video done (cached result)\n" + ResultCache.stats() + "\n";
+        }
+        ProcessingJob job = preview.job;
+
+        // The sequential time only depends on the input and the chain, so it is measured at most once
+        ResultCache.Key baselineKey = ResultCache.key(input, pipeline);
+        OptionalDouble cachedSeq = ResultCache.baselineMillis(baselineKey);
+        OptionalDouble seqMs = cachedSeq;
+        if (compare && cachedSeq.isEmpty()) {
+            preview.phase("Sequential baseline");
+            long startSeq = System.nanoTime();
+            VideoProcessor.processVideoInMemory(input.toString(), VIDEO_OUTPUT, pipeline, ImageProcessor.SEQUENTIAL, threads, BLOCK_SIZE, job);
+            seqMs = OptionalDouble.of((System.nanoTime() - startSeq) / 1e6);
+            ResultCache.recordBaseline(baselineKey, seqMs.getAsDouble());
+        }
+
+        preview.phase("Filtering");
+        long startPar = System.nanoTime();
+        VideoProcessor.processVideoInMemory(input.toString(), VIDEO_OUTPUT, pipeline, method, threads, BLOCK_SIZE, job);
+        double parMs = (System.nanoTime() - startPar) / 1e6;
+        ResultCache.putEncoded(key, Path.of(VIDEO_OUTPUT));
+
+        return "Video done\n" +
+                (seqMs.isPresent()
+                        ? "Speedup: " + df.format(seqMs.getAsDouble() / parMs) + "x" + (cachedSeq.isPresent() ? " (cached sequential time)" : "") + "\n"
+                        : "") +
+                "Frames: " + job.framesDone() + " at " + df.format(job.framesDone() * 1000 / parMs) + " fps\n" +
+                resourceUsage() + "\n" +
+                ResultCache.stats() + "\n";
+    }
+
+    /**
+     * Carries progress from the workers to the UI. Workers only queue finished tiles and hand
+     * over a frame when the previous one has been shown; the timer applies them at most once
+     * per pulse, so the preview never updates faster than the display refreshes and a fast
+     * backend is not slowed down by the UI.
+     */
+    private final class LivePreview extends AnimationTimer implements ProcessingJob.Listener {
+
+        final ProcessingJob job = new ProcessingJob(this);
+        private final boolean video;
+        private final Queue<int[]> tiles = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean wantFrame = new AtomicBoolean(true);
+        private final AtomicReference<Image> frame = new AtomicReference<>();
+        private volatile BufferedImage target;
+        private volatile BufferedImage result;
+        private volatile long expectedPixels;
+        private volatile String phase = "Starting";
+        private volatile long phaseStart = System.nanoTime();
+        private WritableImage canvas;
+
+        LivePreview(boolean video) {
+            this.video = video;
+        }
+
+        void phase(String name) {
+            phaseStart = System.nanoTime();
+            phase = name;
+        }
+
+        // The image about to be filtered in place; tiles are copied from it as they finish
+        void showTarget(BufferedImage image) {
+            target = image;
+        }
+
+        // Pixels to be reported by a run that has no target image (a streamed one)
+        void expectPixels(long pixels) {
+            expectedPixels = pixels;
+        }
+
+        // A finished image to show as a whole
+        void showResult(BufferedImage image) {
+            result = image;
+        }
+
+        @Override
+        public void tileDone(int x, int y, int width, int height) {
+            tiles.add(new int[] {x, y, width, height});
+        }
+
+        @Override
+        public void frameDone(long framesDone, BufferedImage img) {
+            // The decoder reuses img for the next frame, so copy it only when the UI is ready for one
+            if (img != null && wantFrame.compareAndSet(true, false)) {
+                frame.set(SwingFXUtils.toFXImage(img, null));
+            }
+        }
+
+        @Override
+        public void handle(long now) {
+            refresh();
+        }
+
+        void refresh() {
+            BufferedImage finished = result;
+            if (finished != null) {
+                result = null;
+                outputPreview.setImage(SwingFXUtils.toFXImage(finished, null));
+            }
+            BufferedImage image = target;
+            if (image != null && canvas == null) {
+                // Starts from the unfiltered pixels and fills in tile by tile
+                canvas = SwingFXUtils.toFXImage(image, null);
+                outputPreview.setImage(canvas);
+            }
+            int[] tile;
+            while (canvas != null && (tile = tiles.poll()) != null) {
+                int[] pixels = image.getRGB(tile[0], tile[1], tile[2], tile[3], null, 0, tile[2]);
+                canvas.getPixelWriter().setPixels(tile[0], tile[1], tile[2], tile[3], PixelFormat.getIntArgbInstance(), pixels, 0, tile[2]);
+            }
+            Image latest = frame.getAndSet(null);
+            if (latest != null) {
+                outputPreview.setImage(latest);
+                wantFrame.set(true);
+            }
+
+            if (video) {
+                long frames = job.framesDone();
+                long total = job.totalFrames();
+                double seconds = (System.nanoTime() - phaseStart) / 1e9;
+                progressBar.setProgress(total > 0 ? Math.min(1.0, frames / (double) total) : ProgressBar.INDETERMINATE_PROGRESS);
+                progressLabel.setText(phase + ": frame " + frames + (total > 0 ? " of " + total : "")
+                        + "    " + df.format(seconds > 0 ? frames / seconds : 0) + " fps");
+            } else if (image != null || expectedPixels > 0) {
+                double total = image != null ? (double) image.getWidth() * image.getHeight() : expectedPixels;
+                double done = job.pixelsDone() / total;
+                progressBar.setProgress(Math.min(1.0, done));
+                progressLabel.setText(phase + ": " + df.format(done * 100) + "%");
+            } else {
+                progressBar.setProgress(finished != null ? 1.0 : ProgressBar.INDETERMINATE_PROGRESS);
+                progressLabel.setText(finished != null ? "" : phase + "...");
+            }
+        }
+    }
+
     private static BufferedImage deepCopy(BufferedImage bi) {
         BufferedImage copy = new BufferedImage(bi.getWidth(), bi.getHeight(), bi.getType());
         for (int x = 0; x < bi.getWidth(); x++)
@@ -229,6 +533,13 @@ public class MainGUI extends Application {
         return copy;
     }
 
+    // CPU load and heap in use right after a run
+    private String resourceUsage() {
+        double cpu = getProcessCpuLoad();
+        return "CPU Load: " + (cpu < 0 ? "n/a" : df.format(cpu * 100) + "%") + "    "
+                + "Used Memory: " + getUsedMemory() / (1024 * 1024) + " MB";
+    }
+
     private static double getProcessCpuLoad() {
         OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
         if (osBean instanceof com.sun.management.OperatingSystemMXBean sysBean) {
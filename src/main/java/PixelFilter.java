@@ -0,0 +1,89 @@
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * One filter of a {@link FilterPipeline}, as created by a {@link FilterProvider}. Besides the
+ * pixel work a filter declares its {@link Footprint}, which is all the pipeline and the
+ * schedulers know about it: whether runs of it can be fused, how much halo a tile needs, whether
+ * a second scratch buffer is needed, how big a task should be, and which pixel layouts it can
+ * be run on.
+ *
+ * Pixels are packed 0xAARRGGBB ints. Point filters work on a flat range, neighbourhood filters
+ * on rectangles of the image with the same contract as {@link Filters#gaussianBlur}: src covers
+ * (srcX, srcY, srcW, srcH), dst covers (dstX, dstY, dstW, dstH) inside it, and src reaches at
+ * least haloRadius past dst except where it ends at the image border.
+ */
+public interface PixelFilter {
+
+    enum Kind {
+        // Each output pixel depends only on the same input pixel
+        POINT,
+        // Each output pixel reads the input up to haloRadius pixels away
+        NEIGHBOURHOOD
+    }
+
+    enum Layout {
+        // Packed ints read through a PixelSurface: images, tiles and BGR video frames
+        PACKED_RGB,
+        // Planar luma and half-resolution chroma, filtered by YuvProcessing
+        YUV420P
+    }
+
+    /**
+     * What the scheduler needs to know about a filter. cost is the time per pixel relative to
+     * GRAYSCALE (1.0); inPlace means a point filter may write over its input, so a run of such
+     * filters shares one buffer and can be fused.
+     */
+    record Footprint(Kind kind, int haloRadius, boolean inPlace, double cost, Set<Layout> layouts) {
+
+        public Footprint {
+            if (kind == Kind.POINT ? haloRadius != 0 : haloRadius < 1) {
+                throw new IllegalArgumentException("Invalid halo " + haloRadius + " for a " + kind + " filter");
+            }
+            if (kind == Kind.NEIGHBOURHOOD && inPlace) {
+                throw new IllegalArgumentException("A neighbourhood filter cannot run in place");
+            }
+            if (!(cost > 0)) {
+                throw new IllegalArgumentException("Filter cost must be positive: " + cost);
+            }
+            if (!layouts.contains(Layout.PACKED_RGB)) {
+                throw new IllegalArgumentException("Every filter must support " + Layout.PACKED_RGB);
+            }
+            layouts = Set.copyOf(layouts);
+        }
+
+        public static Footprint point(double cost) {
+            return new Footprint(Kind.POINT, 0, true, cost, EnumSet.of(Layout.PACKED_RGB));
+        }
+
+        public static Footprint neighbourhood(int haloRadius, double cost) {
+            return new Footprint(Kind.NEIGHBOURHOOD, haloRadius, false, cost, EnumSet.of(Layout.PACKED_RGB));
+        }
+
+        public boolean isPoint() {
+            return kind == Kind.POINT;
+        }
+    }
+
+    // How the filter is written in a pipeline spec, e.g. "SEPIA" or "GAUSSIAN_BLUR(8)"
+    String spec();
+
+    Footprint footprint();
+
+    // Point filters: src[off, off+len) into dst[off, off+len); dst == src when footprint().inPlace()
+    default void apply(PixelKernels kernels, int[] src, int[] dst, int off, int len) {
+        throw new UnsupportedOperationException(spec() + " is not a point filter");
+    }
+
+    // Neighbourhood filters, with the rectangles described above on an image imageW x imageH
+    default void apply(PixelKernels kernels, int[] src, int srcX, int srcY, int srcW, int srcH,
+                       int[] dst, int dstX, int dstY, int dstW, int dstH, int imageW, int imageH) {
+        throw new UnsupportedOperationException(spec() + " is not a neighbourhood filter");
+    }
+
+    // A point filter that is also a PointProgram operation, so a run of them compiles to one
+    // table pass; null otherwise
+    default PointProgram.Op pointOp() {
+        return null;
+    }
+}
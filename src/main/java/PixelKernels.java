@@ -0,0 +1,19 @@
+/**
+ * The five filter kernels on packed 0xAARRGGBB pixel arrays. Point kernels work in place on
+ * px[off, off+len); stencil kernels read the image rectangle covered by src and write the
+ * rectangle covered by dst (see {@link Filters#gaussianBlur}).
+ */
+public interface PixelKernels {
+
+    void grayscale(int[] px, int off, int len);
+
+    void invert(int[] px, int off, int len);
+
+    void sepia(int[] px, int off, int len);
+
+    void gaussianBlur(int[] src, int srcX, int srcY, int srcW, int srcH,
+                      int[] dst, int dstX, int dstY, int dstW, int dstH);
+
+    void edgeDetection(int[] src, int srcX, int srcY, int srcW, int srcH,
+                       int[] dst, int dstX, int dstY, int dstW, int dstH);
+}
@@ -0,0 +1,45 @@
+import java.awt.image.BufferedImage;
+
+/**
+ * Something the filters can read and write as packed 0xAARRGGBB pixels: a BufferedImage, or a
+ * decoded video frame filtered directly in its native buffer (see {@link FrameSurface}).
+ */
+public interface PixelSurface {
+
+    int width();
+
+    int height();
+
+    // Copy the region [x, x+w) x [y, y+h) into dst
+    void read(int x, int y, int w, int h, int[] dst, int off, int scan);
+
+    // Store packed pixels into the region [x, x+w) x [y, y+h)
+    void write(int x, int y, int w, int h, int[] src, int off, int scan);
+
+    static PixelSurface of(BufferedImage image) {
+        return new ImageSurface(image);
+    }
+
+    record ImageSurface(BufferedImage image) implements PixelSurface {
+
+        @Override
+        public int width() {
+            return image.getWidth();
+        }
+
+        @Override
+        public int height() {
+            return image.getHeight();
+        }
+
+        @Override
+        public void read(int x, int y, int w, int h, int[] dst, int off, int scan) {
+            RasterAccess.read(image, x, y, w, h, dst, off, scan);
+        }
+
+        @Override
+        public void write(int x, int y, int w, int h, int[] src, int off, int scan) {
+            RasterAccess.write(image, x, y, w, h, src, off, scan);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A chain of point operations compiled into lookup tables. Every operation is one of two kinds:
+ *
+ *   ChannelMap: each output channel is a 256-entry table applied to one input channel
+ *     (invert, brightness, contrast, gamma, channel swaps).
+ *   Matrix: each output channel is (int) (c0 * r + c1 * g + c2 * b), clamped to 0..255, with
+ *     the products summed in double in that order (grayscale, sepia).
+ *
+ * Consecutive channel maps are composed into one, and a channel map next to a matrix is folded
+ * into that matrix's tables, so such operations cost nothing per pixel. A matrix row becomes
+ * three 256-entry tables of fixed-point products (20 fraction bits), and the integer part of
+ * their sum indexes a table that already holds the clamped, post-mapped output. When a sum
+ * lands so close to an integer that rounding in the tables could matter, which happens for
+ * about one pixel in a thousand, that pixel is recomputed with the double formula, so the
+ * result is bit-exact with {@link Filters} for the built-in filters. A grayscale stage has one
+ * distinct row and only 256 possible outputs, so everything after it is evaluated up front and
+ * folded into its output tables.
+ */
+public final class PointProgram {
+
+    private static final int R = 0, G = 1, B = 2;
+    private static final int[] IDENTITY_SOURCE = {R, G, B};
+    private static final int[] IDENTITY_TABLE = new int[256];
+    private static final double[] GRAY_WEIGHTS = {0.3, 0.59, 0.11};
+    private static final double[][] SEPIA_WEIGHTS = {
+            {0.393, 0.769, 0.189},
+            {0.349, 0.686, 0.168},
+            {0.272, 0.534, 0.131}
+    };
+
+    static {
+        for (int i = 0; i < 256; i++) IDENTITY_TABLE[i] = i;
+    }
+
+    /** One point operation of a chain; see {@link PointProgram} for the two kinds. */
+    public sealed interface Op permits ChannelMap, Matrix {
+    }
+
+    // out[c] = tables[c][in[source[c]]]
+    public record ChannelMap(int[][] tables, int[] source) implements Op {
+    }
+
+    // out[c] = clamp((int) (weights[c][0] * r + weights[c][1] * g + weights[c][2] * b))
+    public record Matrix(double[][] weights) implements Op {
+    }
+
+    public static Op of(FilterType filter) {
+        return switch (filter) {
+            case GRAYSCALE -> new Matrix(new double[][] {GRAY_WEIGHTS, GRAY_WEIGHTS, GRAY_WEIGHTS});
+            case SEPIA -> new Matrix(SEPIA_WEIGHTS);
+            case INVERT -> perChannel(x -> 255 - x);
+            default -> throw new IllegalArgumentException("Not a point filter: " + filter);
+        };
+    }
+
+    public static Op brightness(int delta) {
+        return perChannel(x -> x + delta);
+    }
+
+    // Stretches (factor > 1) or flattens (factor < 1) values around mid-gray
+    public static Op contrast(double factor) {
+        return perChannel(x -> (int) Math.round((x - 128) * factor + 128));
+    }
+
+    public static Op gamma(double gamma) {
+        if (gamma <= 0) throw new IllegalArgumentException("Gamma must be positive: " + gamma);
+        return perChannel(x -> (int) Math.round(255 * Math.pow(x / 255.0, 1 / gamma)));
+    }
+
+    // order names where each output channel comes from, e.g. "BGR" swaps red and blue
+    public static Op swapChannels(String order) {
+        if (order.length() != 3) throw new IllegalArgumentException("Expected three channels, e.g. BGR: " + order);
+        int[] source = new int[3];
+        for (int c = 0; c < 3; c++) {
+            source[c] = "RGB".indexOf(Character.toUpperCase(order.charAt(c)));
+            if (source[c] < 0) throw new IllegalArgumentException("Unknown channel in " + order);
+        }
+        return new ChannelMap(new int[][] {IDENTITY_TABLE, IDENTITY_TABLE, IDENTITY_TABLE}, source);
+    }
+
+    private static ChannelMap perChannel(IntUnaryOperator f) {
+        int[] table = new int[256];
+        for (int x = 0; x < 256; x++) table[x] = Filters.clamp(f.applyAsInt(x), 0, 255);
+        return new ChannelMap(new int[][] {table, table, table}, IDENTITY_SOURCE);
+    }
+
+    private final Stage[] stages;
+
+    private PointProgram(Stage[] stages) {
+        this.stages = stages;
+    }
+
+    public static PointProgram compile(FilterType... filters) {
+        List<Op> ops = new ArrayList<>();
+        for (FilterType filter : filters) ops.add(of(filter));
+        return compile(ops);
+    }
+
+    public static PointProgram compile(List<Op> ops) {
+        if (ops.isEmpty()) throw new IllegalArgumentException("A point program needs at least one operation");
+        List<Stage> stages = new ArrayList<>();
+        ChannelMap pending = null;
+        MatrixStage last = null;
+        for (Op op : ops) {
+            if (op instanceof ChannelMap map) {
+                pending = pending == null ? map : compose(pending, map);
+            } else if (op instanceof Matrix matrix) {
+                // A map after the previous matrix goes into its output tables; one before
+                // the first matrix goes into this matrix's input tables
+                if (pending != null && last != null) {
+                    last = last.then(pending);
+                    stages.set(stages.size() - 1, last);
+                    pending = null;
+                }
+                last = new MatrixStage(pending, matrix);
+                stages.add(last);
+                pending = null;
+            }
+        }
+        if (pending != null) {
+            if (last != null) {
+                stages.set(stages.size() - 1, last.then(pending));
+            } else {
+                stages.add(new MapStage(pending));
+            }
+        }
+        // Everything after a grayscale-like stage only ever sees 256 distinct pixels
+        for (int i = 0; i < stages.size() - 1; i++) {
+            if (stages.get(i) instanceof MatrixStage matrix && matrix.sharedRow()) {
+                List<Stage> rest = stages.subList(i + 1, stages.size());
+                MatrixStage folded = matrix.then(rest.toArray(new Stage[0]));
+                rest.clear();
+                stages.set(i, folded);
+                break;
+            }
+        }
+        return new PointProgram(stages.toArray(new Stage[0]));
+    }
+
+    // Applies the program to packed 0xAARRGGBB pixels in place; the output is opaque
+    public void apply(int[] px, int off, int len) {
+        if (stages.length == 1) {
+            stages[0].apply(px, off, len);
+            return;
+        }
+        for (int i = off; i < off + len; i++) {
+            px[i] = applyPixel(px[i]);
+        }
+    }
+
+    public int applyPixel(int rgb) {
+        for (Stage stage : stages) {
+            rgb = stage.applyPixel(rgb);
+        }
+        return rgb;
+    }
+
+    // first, then second
+    private static ChannelMap compose(ChannelMap first, ChannelMap second) {
+        int[][] tables = new int[3][];
+        int[] source = new int[3];
+        for (int c = 0; c < 3; c++) {
+            int mid = second.source()[c];
+            int[] outer = second.tables()[c];
+            int[] inner = first.tables()[mid];
+            int[] table = new int[256];
+            for (int x = 0; x < 256; x++) table[x] = outer[inner[x]];
+            tables[c] = table;
+            source[c] = first.source()[mid];
+        }
+        return new ChannelMap(tables, source);
+    }
+
+    private abstract static sealed class Stage permits MapStage, MatrixStage {
+
+        abstract int applyPixel(int rgb);
+
+        // Each stage has its own loop, so the JIT sees a single applyPixel in it
+        abstract void apply(int[] px, int off, int len);
+    }
+
+    private static final class MapStage extends Stage {
+
+        private final int[] red, green, blue;
+        private final int redShift, greenShift, blueShift;
+
+        MapStage(ChannelMap map) {
+            red = map.tables()[R];
+            green = map.tables()[G];
+            blue = map.tables()[B];
+            redShift = shift(map.source()[R]);
+            greenShift = shift(map.source()[G]);
+            blueShift = shift(map.source()[B]);
+        }
+
+        @Override
+        int applyPixel(int rgb) {
+            return 0xFF000000
+                    | red[rgb >> redShift & 0xFF] << 16
+                    | green[rgb >> greenShift & 0xFF] << 8
+                    | blue[rgb >> blueShift & 0xFF];
+        }
+
+        @Override
+        void apply(int[] px, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                px[i] = applyPixel(px[i]);
+            }
+        }
+    }
+
+    private static final class MatrixStage extends Stage {
+
+        private static final int FRACTION_BITS = 20;
+        private static final int ONE = 1 << FRACTION_BITS;
+        private static final int[][] IDENTITY = {IDENTITY_TABLE, IDENTITY_TABLE, IDENTITY_TABLE};
+
+        // Input side: the channel map folded in front of the matrix
+        private final int[][] preTables;
+        private final int[] preSource;
+        private final int redShift, greenShift, blueShift;
+        // The matrix rows, and the map folded in after them
+        private final double[][] weights;
+        private final int[][] post;
+        // All three rows are the same (grayscale), so one row is evaluated per pixel
+        private final boolean sharedRow;
+
+        // Per row, 768 fixed-point products (r, g and b back to back). Every sum is biased to be
+        // non-negative, so its integer part indexes the output tables directly
+        private final int[] products;
+        // Per row, the distance from an integer below which a sum is recomputed exactly
+        private final int[] margin;
+        private final int[] bias;
+        // Per output channel, indexed by the integer part of its row's sum: the clamped and
+        // post-mapped value, already shifted into place
+        private final int[] outRed, outGreen, outBlue;
+
+        MatrixStage(ChannelMap pre, Matrix matrix) {
+            this(pre == null ? IDENTITY : pre.tables(), pre == null ? IDENTITY_SOURCE : pre.source(),
+                    matrix.weights(), IDENTITY);
+        }
+
+        private MatrixStage(int[][] preTables, int[] preSource, double[][] weights, int[][] post) {
+            this.preTables = preTables;
+            this.preSource = preSource;
+            this.redShift = shift(preSource[R]);
+            this.greenShift = shift(preSource[G]);
+            this.blueShift = shift(preSource[B]);
+            this.weights = weights;
+            this.post = post;
+            this.sharedRow = Arrays.equals(weights[R], weights[G]) && Arrays.equals(weights[R], weights[B]);
+            int rows = sharedRow ? 1 : 3;
+            this.products = new int[rows * 768];
+            this.margin = new int[rows];
+            this.bias = new int[rows];
+            int[][] out = new int[3][];
+            for (int c = 0; c < rows; c++) {
+                double error = 0;
+                long low = 0;
+                long high = 0;
+                long[] w = new long[3];
+                for (int i = 0; i < 3; i++) {
+                    w[i] = Math.round(weights[c][i] * ONE);
+                    error += Math.abs(w[i] - weights[c][i] * ONE) * 255;
+                    int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+                    for (int x = 0; x < 256; x++) {
+                        min = Math.min(min, preTables[i][x]);
+                        max = Math.max(max, preTables[i][x]);
+                    }
+                    low += Math.min(w[i] * min, w[i] * max);
+                    high += Math.max(w[i] * min, w[i] * max);
+                }
+                // The integer part of a sum can be off by one near an integer; those go the exact way
+                long first = Math.floorDiv(low, ONE) - 1;
+                long last = Math.floorDiv(high, ONE) + 1;
+                if ((last - first + 1) * ONE > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Matrix row too large for fixed point: " + Arrays.toString(weights[c]));
+                }
+                bias[c] = (int) first;
+                for (int i = 0; i < 3; i++) {
+                    for (int x = 0; x < 256; x++) {
+                        long product = w[i] * preTables[i][x] - (i == 0 ? first * ONE : 0);
+                        products[c * 768 + i * 256 + x] = (int) product;
+                    }
+                }
+                // Table rounding, plus a unit for the double formula's own rounding
+                margin[c] = (int) Math.ceil(error) + 2;
+                int[] values = new int[(int) (last - first + 1)];
+                for (int k = 0; k < values.length; k++) {
+                    values[k] = (int) Math.max(0, Math.min(255, first + k));
+                }
+                for (int channel = 0; channel < 3; channel++) {
+                    if (sharedRow || channel == c) {
+                        out[channel] = new int[values.length];
+                        for (int k = 0; k < values.length; k++) {
+                            out[channel][k] = post[channel][values[k]] << shift(channel);
+                        }
+                    }
+                }
+            }
+            this.outRed = out[R];
+            this.outGreen = out[G];
+            this.outBlue = out[B];
+        }
+
+        // This stage followed by a channel map
+        MatrixStage then(ChannelMap map) {
+            double[][] rows = new double[3][];
+            int[][] tables = new int[3][256];
+            for (int c = 0; c < 3; c++) {
+                int from = map.source()[c];
+                rows[c] = weights[from];
+                for (int x = 0; x < 256; x++) tables[c][x] = map.tables()[c][post[from][x]];
+            }
+            return new MatrixStage(preTables, preSource, rows, tables);
+        }
+
+        // A shared-row stage followed by the rest of a program. Its output pixel is a function of
+        // one row value, so the rest is evaluated for each of the 256 values up front
+        MatrixStage then(Stage[] rest) {
+            int[][] tables = new int[3][256];
+            for (int v = 0; v < 256; v++) {
+                int rgb = 0xFF000000 | post[R][v] << 16 | post[G][v] << 8 | post[B][v];
+                for (Stage stage : rest) rgb = stage.applyPixel(rgb);
+                tables[R][v] = rgb >> 16 & 0xFF;
+                tables[G][v] = rgb >> 8 & 0xFF;
+                tables[B][v] = rgb & 0xFF;
+            }
+            return new MatrixStage(preTables, preSource, weights, tables);
+        }
+
+        boolean sharedRow() {
+            return sharedRow;
+        }
+
+        @Override
+        int applyPixel(int rgb) {
+            int r = rgb >> redShift & 0xFF;
+            int g = rgb >> greenShift & 0xFF;
+            int b = rgb >> blueShift & 0xFF;
+            int[] p = products;
+            int s0 = p[r] + p[256 + g] + p[512 + b];
+            if (sharedRow) {
+                if (nearInteger(s0, margin[0])) return exact(r, g, b);
+                int v = s0 >>> FRACTION_BITS;
+                return 0xFF000000 | outRed[v] | outGreen[v] | outBlue[v];
+            }
+            int s1 = p[768 + r] + p[1024 + g] + p[1280 + b];
+            int s2 = p[1536 + r] + p[1792 + g] + p[2048 + b];
+            // One branch for all three rows; it is taken for about one pixel in a thousand
+            if (nearInteger(s0, margin[0]) | nearInteger(s1, margin[1]) | nearInteger(s2, margin[2])) {
+                return exact(r, g, b);
+            }
+            return 0xFF000000 | outRed[s0 >>> FRACTION_BITS] | outGreen[s1 >>> FRACTION_BITS] | outBlue[s2 >>> FRACTION_BITS];
+        }
+
+        @Override
+        void apply(int[] px, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                px[i] = applyPixel(px[i]);
+            }
+        }
+
+        private static boolean nearInteger(int sum, int margin) {
+            return ((sum + margin) & (ONE - 1)) < 2 * margin;
+        }
+
+        // The pixel with every row evaluated by the double formula itself
+        private int exact(int r, int g, int b) {
+            int rgb = 0xFF000000;
+            for (int c = 0; c < 3; c++) {
+                double[] w = weights[sharedRow ? 0 : c];
+                int value = (int) (w[R] * preTables[R][r] + w[G] * preTables[G][g] + w[B] * preTables[B][b]);
+                rgb |= post[c][value < 0 ? 0 : value > 255 ? 255 : value] << shift(c);
+            }
+            return rgb;
+        }
+    }
+
+    // Bit offset of a channel in a packed pixel
+    private static int shift(int channel) {
+        return (2 - channel) * 8;
+    }
+}
@@ -0,0 +1,119 @@
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress and cancellation for one long-running run, such as a GUI job. The backends do not
+ * know about it: {@link #track(PixelSurface)} wraps the surface they filter, so every tile
+ * they read or write checks for cancellation first and every finished tile is reported.
+ * Cancelling therefore stops all in-flight tile tasks at their next tile, whichever backend
+ * (and however many threads) is running, and the run fails with a CancellationException.
+ *
+ * Listener callbacks come from the worker threads and must not block.
+ */
+public class ProcessingJob {
+
+    public interface Listener {
+        // A tile of the tracked surface has its final pixels
+        default void tileDone(int x, int y, int width, int height) {
+        }
+
+        // One more video frame is filtered; frame is null when it has no RGB image (YUV mode)
+        default void frameDone(long framesDone, BufferedImage frame) {
+        }
+    }
+
+    private final Listener listener;
+    private final LongAdder pixelsDone = new LongAdder();
+    private final AtomicLong framesDone = new AtomicLong();
+    private volatile long totalFrames = -1;
+    private volatile boolean cancelled;
+
+    public ProcessingJob() {
+        this(new Listener() { });
+    }
+
+    public ProcessingJob(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void checkCancelled() {
+        if (cancelled) throw new CancellationException("Processing cancelled");
+    }
+
+    // The surface with cancellation checks and per-tile progress
+    public PixelSurface track(PixelSurface surface) {
+        return new TrackedSurface(surface, this, true);
+    }
+
+    // The surface with cancellation checks only, for passes whose tiles should not be reported
+    public PixelSurface guard(PixelSurface surface) {
+        return new TrackedSurface(surface, this, false);
+    }
+
+    public long pixelsDone() {
+        return pixelsDone.sum();
+    }
+
+    public long framesDone() {
+        return framesDone.get();
+    }
+
+    // Frames in the video being processed, or -1 when unknown
+    public long totalFrames() {
+        return totalFrames;
+    }
+
+    // Starts counting frames for a new video pass
+    void startFrames(long total) {
+        framesDone.set(0);
+        totalFrames = total > 0 ? total : -1;
+    }
+
+    // Progress for work that is not filtered through a tracked surface, e.g. a streamed band
+    void regionDone(long pixels) {
+        pixelsDone.add(pixels);
+    }
+
+    void frameDone(BufferedImage frame) {
+        listener.frameDone(framesDone.incrementAndGet(), frame);
+    }
+
+    private record TrackedSurface(PixelSurface target, ProcessingJob job, boolean report) implements PixelSurface {
+
+        @Override
+        public int width() {
+            return target.width();
+        }
+
+        @Override
+        public int height() {
+            return target.height();
+        }
+
+        @Override
+        public void read(int x, int y, int w, int h, int[] dst, int off, int scan) {
+            job.checkCancelled();
+            target.read(x, y, w, h, dst, off, scan);
+        }
+
+        @Override
+        public void write(int x, int y, int w, int h, int[] src, int off, int scan) {
+            job.checkCancelled();
+            target.write(x, y, w, h, src, off, scan);
+            if (report) {
+                job.pixelsDone.add((long) w * h);
+                job.listener.tileDone(x, y, w, h);
+            }
+        }
+    }
+}
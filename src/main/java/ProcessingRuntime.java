@@ -0,0 +1,211 @@
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide worker pools shared by every image and video frame. Pools are created on first
+ * use for each parallelism level and then stay warm, so per-frame calls only submit work.
+ * Idle workers exit after the idle timeout and come back on demand; all threads are daemons.
+ *
+ * A pool belongs to its parallelism, not to a caller: everyone asking for n threads at the same
+ * time shares the same n workers. Callers that filter several images or frames at once should
+ * therefore all ask for the whole thread budget rather than their share of it. A single thread
+ * never needs a pool, and the backends run such calls on the calling thread instead of queueing
+ * them behind every other single-threaded caller on a one-worker pool.
+ *
+ * Work run through {@link #isolated} gets pools of its own instead, for measurements that must
+ * not share workers or queues with anyone else.
+ *
+ * Settings come from the system properties processing.threads, processing.queueDepth and
+ * processing.idleTimeoutSeconds.
+ */
+public final class ProcessingRuntime {
+
+    /**
+     * threads: parallelism used when a caller passes 0 or less.
+     * queueDepth: bounded submission queue of each executor pool; when it is full the
+     * submitting thread runs the block itself, which throttles producers.
+     * idleTimeoutSeconds: how long an idle worker is kept alive.
+     */
+    public record Settings(int threads, int queueDepth, long idleTimeoutSeconds) {
+        public Settings {
+            if (threads < 1 || queueDepth < 1 || idleTimeoutSeconds < 1) {
+                throw new IllegalArgumentException("Invalid runtime settings: " + threads + " threads, queue "
+                        + queueDepth + ", idle " + idleTimeoutSeconds + "s");
+            }
+        }
+    }
+
+    // Work-stealing and queueing across all live shared pools
+    public record PoolStats(long steals, long queuedTasks, int activeThreads) {
+    }
+
+    private static final Settings SETTINGS = new Settings(
+            Integer.getInteger("processing.threads", Runtime.getRuntime().availableProcessors()),
+            Integer.getInteger("processing.queueDepth", 1024),
+            Long.getLong("processing.idleTimeoutSeconds", 60L));
+
+    // One pool of each kind per parallelism
+    private static final class Pools {
+        final Map<Integer, ForkJoinPool> forkJoinPools = new ConcurrentHashMap<>();
+        final Map<Integer, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+
+        void shutdown() {
+            forkJoinPools.values().forEach(ForkJoinPool::shutdown);
+            forkJoinPools.clear();
+            executors.values().forEach(ThreadPoolExecutor::shutdown);
+            executors.clear();
+        }
+    }
+
+    private static final Pools SHARED = new Pools();
+    // Set while the thread runs isolated work
+    private static final ThreadLocal<Pools> ISOLATED = new ThreadLocal<>();
+    private static ExecutorService virtualThreads;
+
+    private ProcessingRuntime() {
+    }
+
+    public static Settings settings() {
+        return SETTINGS;
+    }
+
+    // Warm fork/join pool with the given parallelism (settings().threads() if <= 0)
+    public static ForkJoinPool forkJoinPool(int parallelism) {
+        int threads = parallelism > 0 ? parallelism : SETTINGS.threads();
+        return pools().forkJoinPools.computeIfAbsent(threads, n -> new ForkJoinPool(
+                n, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, false,
+                0, Math.max(n, 256), 1, null, SETTINGS.idleTimeoutSeconds(), TimeUnit.SECONDS));
+    }
+
+    // Warm fixed-size executor with a bounded queue (settings().threads() workers if <= 0)
+    public static ThreadPoolExecutor executor(int numThreads) {
+        int threads = numThreads > 0 ? numThreads : SETTINGS.threads();
+        return pools().executors.computeIfAbsent(threads, n -> {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    n, n, SETTINGS.idleTimeoutSeconds(), TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(SETTINGS.queueDepth()),
+                    daemonThreads("processing-" + n + "-"),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        });
+    }
+
+    // One new virtual thread per task, for work that spends most of its time blocked on files or FFmpeg
+    public static synchronized ExecutorService virtualThreads() {
+        if (virtualThreads == null) {
+            virtualThreads = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("virtual-", 0).factory());
+        }
+        return virtualThreads;
+    }
+
+    /**
+     * The fork/join pool of settings().threads() workers that filters for callers on virtual
+     * threads, so any number of them can wait on I/O while only as many as there are cores
+     * compute, each on a platform thread that keeps its tile scratch.
+     */
+    public static ForkJoinPool cpuPool() {
+        return forkJoinPool(SETTINGS.threads());
+    }
+
+    /**
+     * Runs work on the calling thread with pools of its own: every pool it asks for from this
+     * thread is created for it and shut down when it returns, and none of them is counted by
+     * {@link #poolStats}. The backends look their pool up on the calling thread, so a filter
+     * call inside work is neither slowed by other callers' tasks nor slows them down through a
+     * shared queue. Virtual threads are still shared.
+     */
+    public static <T> T isolated(Supplier<T> work) {
+        if (ISOLATED.get() != null) {
+            return work.get();
+        }
+        Pools own = new Pools();
+        ISOLATED.set(own);
+        try {
+            return work.get();
+        } finally {
+            ISOLATED.remove();
+            own.shutdown();
+        }
+    }
+
+    /**
+     * Waits for every future, then rethrows the first failure. Waiting for all of them first
+     * means no task is still touching shared buffers when the caller cleans up.
+     */
+    public static void awaitAll(List<? extends Future<?>> futures) {
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // Keep waiting so nothing outlives the call, but remember to restore the flag
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) failure = e.getCause();
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure instanceof RuntimeException runtimeException) throw runtimeException;
+        if (failure instanceof Error error) throw error;
+        if (failure != null) throw new IllegalStateException("Processing task failed", failure);
+    }
+
+    public static PoolStats poolStats() {
+        long steals = 0;
+        long queued = 0;
+        int active = 0;
+        for (ForkJoinPool pool : SHARED.forkJoinPools.values()) {
+            steals += pool.getStealCount();
+            queued += pool.getQueuedTaskCount() + pool.getQueuedSubmissionCount();
+            active += pool.getActiveThreadCount();
+        }
+        for (ThreadPoolExecutor executor : SHARED.executors.values()) {
+            queued += executor.getQueue().size();
+            active += executor.getActiveCount();
+        }
+        return new PoolStats(steals, queued, active);
+    }
+
+    // For command-line entry points that are done: work submitted after this is not run
+    public static synchronized void shutdown() {
+        if (virtualThreads != null) {
+            virtualThreads.shutdown();
+            virtualThreads = null;
+        }
+        SHARED.shutdown();
+    }
+
+    private static Pools pools() {
+        Pools own = ISOLATED.get();
+        return own != null ? own : SHARED;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
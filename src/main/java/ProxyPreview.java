@@ -0,0 +1,276 @@
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Low-resolution stand-ins for interactive filter tuning. A proxy is the level of a 2x2 box
+ * mip pyramid that is just wider than the preview (for a video, a few keyframes spread over
+ * the clip), built once per file and kept in a small cache, so trying another filter chain
+ * only filters a few hundred thousand pixels.
+ *
+ * The filters are defined on full-resolution pixels, so {@link #render} corrects the
+ * neighbourhood stages for the proxy scale s (full-resolution pixels per proxy pixel):
+ *
+ *   GAUSSIAN_BLUR: the 3x3 kernel has a variance of 1/2 pixel^2, i.e. 1/(2 s^2) proxy pixels^2,
+ *     so the proxy is blended towards its blur by 1/s^2, which has exactly that variance. A
+ *     wider blur of radius r runs at radius r / s, or as a blend when that is below 2.
+ *   EDGE_DETECTION: gradients measured over proxy pixels are about s times steeper, and a
+ *     one-pixel edge line is averaged over s pixels when the full result is scaled down, so the
+ *     Sobel magnitude is divided by s.
+ *
+ * Filters from other providers run on the proxy pixels uncorrected. At s = 1 (an image no
+ * wider than the preview) the result is exactly the full pipeline's.
+ */
+public class ProxyPreview {
+
+    private static final int CACHE_ENTRIES = 8;
+    // Larger images are decoded subsampled, so building a proxy never needs much more heap than this
+    private static final long DECODE_PIXELS = 16_000_000;
+
+    // One or more downsampled frames of the same size, as packed 0xAARRGGBB pixels
+    public record Proxy(int width, int height, double scale, List<int[]> frames) {
+    }
+
+    // A proxy built or being built; everyone asking for it while it is built waits for that build
+    private record Entry(long size, long modified, CompletableFuture<Proxy> proxy) {
+    }
+
+    private interface Build {
+        Proxy run() throws IOException;
+    }
+
+    private static final Map<String, Entry> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > CACHE_ENTRIES;
+        }
+    };
+
+    // The mip level of an image at least targetWidth wide (or the image itself if it is narrower)
+    public static Proxy forImage(Path file, int targetWidth) throws IOException {
+        return proxy(file.toAbsolutePath() + "@" + targetWidth, file, () -> buildImage(file, targetWidth));
+    }
+
+    // keyframes frames spread evenly over the video, laid out by render in a grid targetWidth wide
+    public static Proxy forVideo(Path file, int targetWidth, int keyframes) throws IOException {
+        return proxy(file.toAbsolutePath() + "@" + targetWidth + "#" + keyframes, file, () -> buildVideo(file, targetWidth, keyframes));
+    }
+
+    private static Proxy buildImage(Path file, int targetWidth) throws IOException {
+        ImageReader reader = StreamingProcessor.openReader(file);
+        try {
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            // Very large images are decoded at every step-th pixel, so the proxy never needs
+            // the whole image in memory; the remaining halvings are still box filtered
+            int step = 1;
+            while ((long) (width / step) * (height / step) > DECODE_PIXELS && width / (step * 2) >= targetWidth) step *= 2;
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(step, step, 0, 0);
+            Level level = downsample(PixelSurface.of(reader.read(0, param)), targetWidth);
+            return new Proxy(level.width, level.height, width / (double) level.width, List.of(level.pixels));
+        } finally {
+            StreamingProcessor.closeReader(reader);
+        }
+    }
+
+    private static Proxy buildVideo(Path file, int targetWidth, int keyframes) throws IOException {
+        int frameWidth = Math.max(1, targetWidth / columns(keyframes));
+        List<int[]> frames = new ArrayList<>();
+        Level level = null;
+        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(file.toString())) {
+            grabber.setPixelFormat(org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_BGR24);
+            grabber.start();
+            long length = grabber.getLengthInTime();
+            for (int i = 0; i < keyframes; i++) {
+                // Sample the middle of each of keyframes equal spans, so a fade-in does not open the sheet
+                if (length > 0) grabber.setTimestamp(length * (2L * i + 1) / (2L * keyframes));
+                Frame frame = grabber.grabImage();
+                if (frame == null) break;
+                level = downsample(new FrameSurface(frame), frameWidth);
+                frames.add(level.pixels);
+            }
+            grabber.stop();
+        } catch (Exception e) {
+            throw new IOException("Could not read keyframes from " + file.getFileName(), e);
+        }
+        if (level == null) {
+            throw new IOException("No frames in " + file.getFileName());
+        }
+        return new Proxy(level.width, level.height, level.scale, List.copyOf(frames));
+    }
+
+    /**
+     * The proxy run through pipeline with the scale corrections above, or as it is when pipeline
+     * is null. Several frames are filtered separately and placed side by side in rows, as a
+     * contact sheet.
+     */
+    public static BufferedImage render(Proxy proxy, FilterPipeline pipeline) {
+        int count = proxy.frames().size();
+        int columns = columns(count);
+        int rows = (count + columns - 1) / columns;
+        BufferedImage sheet = new BufferedImage(proxy.width() * columns, proxy.height() * rows, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < count; i++) {
+            int[] filtered = pipeline == null ? proxy.frames().get(i)
+                    : filter(proxy.frames().get(i), proxy.width(), proxy.height(), pipeline, proxy.scale());
+            sheet.setRGB((i % columns) * proxy.width(), (i / columns) * proxy.height(),
+                    proxy.width(), proxy.height(), filtered, 0, proxy.width());
+        }
+        return sheet;
+    }
+
+    // Applies the pipeline one filter at a time to a whole (small) frame, corrected for scale
+    static int[] filter(int[] pixels, int width, int height, FilterPipeline pipeline, double scale) {
+        int[] a = pixels.clone();
+        int[] b = new int[a.length];
+        for (PixelFilter step : pipeline.steps()) {
+            PixelFilter.Footprint footprint = step.footprint();
+            if (footprint.isPoint()) {
+                step.apply(Filters.SCALAR, a, footprint.inPlace() ? a : b, 0, a.length);
+                if (footprint.inPlace()) continue;
+            } else if (step instanceof BuiltinFilter builtin) {
+                correctedStencil(builtin, a, b, width, height, scale);
+            } else {
+                // Plugin filters declare no scale behaviour, so they run on proxy pixels as they are
+                step.apply(Filters.SCALAR, a, 0, 0, width, height, b, 0, 0, width, height, width, height);
+            }
+            int[] swap = a;
+            a = b;
+            b = swap;
+        }
+        return a;
+    }
+
+    private static void correctedStencil(BuiltinFilter step, int[] a, int[] b, int width, int height, double scale) {
+        if (step.type() == FilterType.GAUSSIAN_BLUR) {
+            int radius = (int) Math.round(step.radius() / scale);
+            if (step.radius() > 1 && radius > 1) {
+                Blur.apply(radius, a, 0, 0, width, height, b, 0, 0, width, height);
+            } else {
+                // Variance in proxy pixels^2, made up from the 3x3 kernel's 1/2
+                double variance = step.radius() == 1 ? 0.5 : Math.pow(Blur.sigma(step.radius()), 2);
+                Filters.gaussianBlur(a, 0, 0, width, height, b, 0, 0, width, height);
+                blend(a, b, variance / (scale * scale) / 0.5);
+            }
+            return;
+        }
+        // EDGE_DETECTION; as in Filters, the one-pixel border keeps its pixels
+        System.arraycopy(a, 0, b, 0, a.length);
+        if (width > 2 && height > 2) {
+            int innerW = width - 2;
+            int[] inner = new int[innerW * (height - 2)];
+            Filters.edgeDetection(a, 0, 0, width, height, inner, 1, 1, innerW, height - 2);
+            for (int y = 1; y < height - 1; y++) {
+                for (int x = 1; x < width - 1; x++) {
+                    int magnitude = (int) Math.round((inner[(y - 1) * innerW + x - 1] & 0xFF) / scale);
+                    b[y * width + x] = 0xFF000000 | magnitude << 16 | magnitude << 8 | magnitude;
+                }
+            }
+        }
+    }
+
+    // blurred = original + (blurred - original) * weight, per channel
+    private static void blend(int[] original, int[] blurred, double weight) {
+        if (weight >= 1) return;
+        for (int i = 0; i < blurred.length; i++) {
+            int o = original[i];
+            int f = blurred[i];
+            int r = (int) Math.round(((o >> 16) & 0xFF) + (((f >> 16) & 0xFF) - ((o >> 16) & 0xFF)) * weight);
+            int g = (int) Math.round(((o >> 8) & 0xFF) + (((f >> 8) & 0xFF) - ((o >> 8) & 0xFF)) * weight);
+            int bl = (int) Math.round((o & 0xFF) + ((f & 0xFF) - (o & 0xFF)) * weight);
+            blurred[i] = 0xFF000000 | r << 16 | g << 8 | bl;
+        }
+    }
+
+    private record Level(int[] pixels, int width, int height, double scale) {
+    }
+
+    // Halves the surface with a 2x2 box filter while the result stays at least targetWidth wide
+    static Level downsample(PixelSurface surface, int targetWidth) {
+        int width = surface.width();
+        int height = surface.height();
+        int[] pixels = new int[width * height];
+        surface.read(0, 0, width, height, pixels, 0, width);
+        while (width / 2 >= targetWidth && height >= 2) {
+            int w = width / 2;
+            int h = height / 2;
+            int[] half = new int[w * h];
+            for (int y = 0; y < h; y++) {
+                int top = 2 * y * width;
+                int bottom = top + width;
+                for (int x = 0; x < w; x++) {
+                    half[y * w + x] = average(pixels[top + 2 * x], pixels[top + 2 * x + 1],
+                            pixels[bottom + 2 * x], pixels[bottom + 2 * x + 1]);
+                }
+            }
+            pixels = half;
+            width = w;
+            height = h;
+        }
+        return new Level(pixels, width, height, surface.width() / (double) width);
+    }
+
+    private static int average(int p, int q, int r, int s) {
+        int red = ((p >> 16 & 0xFF) + (q >> 16 & 0xFF) + (r >> 16 & 0xFF) + (s >> 16 & 0xFF) + 2) >> 2;
+        int green = ((p >> 8 & 0xFF) + (q >> 8 & 0xFF) + (r >> 8 & 0xFF) + (s >> 8 & 0xFF) + 2) >> 2;
+        int blue = ((p & 0xFF) + (q & 0xFF) + (r & 0xFF) + (s & 0xFF) + 2) >> 2;
+        return 0xFF000000 | red << 16 | green << 8 | blue;
+    }
+
+    // Keyframes go two to a row
+    private static int columns(int frames) {
+        return frames > 1 ? 2 : 1;
+    }
+
+    /**
+     * The cached proxy for id, unless the file changed since it was built; otherwise builds it.
+     * Only the lookup is locked, and one build per id runs at a time, so the file selection and
+     * the first preview of a new file share a single decode.
+     */
+    private static Proxy proxy(String id, Path file, Build build) throws IOException {
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        Entry entry;
+        boolean building = false;
+        synchronized (CACHE) {
+            entry = CACHE.get(id);
+            if (entry == null || entry.size() != size || entry.modified() != modified) {
+                entry = new Entry(size, modified, new CompletableFuture<>());
+                CACHE.put(id, entry);
+                building = true;
+            }
+        }
+        if (building) {
+            try {
+                entry.proxy().complete(build.run());
+            } catch (IOException | RuntimeException e) {
+                // Not cached, so the next request tries again
+                synchronized (CACHE) {
+                    CACHE.remove(id, entry);
+                }
+                entry.proxy().completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return entry.proxy().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Reads and writes rectangular regions of a BufferedImage as packed 0xAARRGGBB ints,
+ * going straight to the DataBufferInt/DataBufferByte backing arrays for the image
+ * types produced by ImageIO and Java2DFrameConverter. Other types fall back to the
+ * bulk getRGB/setRGB calls, which still avoid per-pixel allocation.
+ */
+public class RasterAccess {
+
+    public enum Layout {
+        INT_RGB,
+        INT_ARGB,
+        BYTE_BGR,
+        GENERIC
+    }
+
+    public static Layout layoutOf(BufferedImage img) {
+        WritableRaster raster = img.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        switch (img.getType()) {
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB -> {
+                if (buffer instanceof DataBufferInt && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+                    return img.getType() == BufferedImage.TYPE_INT_RGB ? Layout.INT_RGB : Layout.INT_ARGB;
+                }
+            }
+            case BufferedImage.TYPE_3BYTE_BGR -> {
+                if (buffer instanceof DataBufferByte && raster.getSampleModel() instanceof ComponentSampleModel) {
+                    return Layout.BYTE_BGR;
+                }
+            }
+            default -> { }
+        }
+        return Layout.GENERIC;
+    }
+
+    // Copy the region [x, x+w) x [y, y+h) into dst, same values getRGB would return
+    public static void read(BufferedImage img, int x, int y, int w, int h, int[] dst, int off, int scan) {
+        if (w <= 0 || h <= 0) return;
+        WritableRaster raster = img.getRaster();
+        int tx = x - raster.getSampleModelTranslateX();
+        int ty = y - raster.getSampleModelTranslateY();
+        switch (layoutOf(img)) {
+            case INT_RGB -> {
+                SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+                int[] data = db.getData();
+                int stride = sm.getScanlineStride();
+                int base = db.getOffset() + sm.getOffset(tx, ty);
+                for (int row = 0; row < h; row++) {
+                    int s = base + row * stride;
+                    int d = off + row * scan;
+                    for (int i = 0; i < w; i++) {
+                        dst[d + i] = 0xFF000000 | data[s + i];
+                    }
+                }
+            }
+            case INT_ARGB -> {
+                SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+                int[] data = db.getData();
+                int stride = sm.getScanlineStride();
+                int base = db.getOffset() + sm.getOffset(tx, ty);
+                for (int row = 0; row < h; row++) {
+                    System.arraycopy(data, base + row * stride, dst, off + row * scan, w);
+                }
+            }
+            case BYTE_BGR -> {
+                ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+                DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+                byte[] data = db.getData();
+                int stride = sm.getScanlineStride();
+                int pixelStride = sm.getPixelStride();
+                int[] bands = sm.getBandOffsets();
+                int base = db.getOffset() + ty * stride + tx * pixelStride;
+                int ro = bands[0], go = bands[1], bo = bands[2];
+                for (int row = 0; row < h; row++) {
+                    int s = base + row * stride;
+                    int d = off + row * scan;
+                    for (int i = 0; i < w; i++, s += pixelStride) {
+                        dst[d + i] = 0xFF000000
+                                | (data[s + ro] & 0xFF) << 16
+                                | (data[s + go] & 0xFF) << 8
+                                | (data[s + bo] & 0xFF);
+                    }
+                }
+            }
+            case GENERIC -> img.getRGB(x, y, w, h, dst, off, scan);
+        }
+    }
+
+    // Store packed pixels into the region [x, x+w) x [y, y+h), same result as setRGB
+    public static void write(BufferedImage img, int x, int y, int w, int h, int[] src, int off, int scan) {
+        if (w <= 0 || h <= 0) return;
+        WritableRaster raster = img.getRaster();
+        int tx = x - raster.getSampleModelTranslateX();
+        int ty = y - raster.getSampleModelTranslateY();
+        switch (layoutOf(img)) {
+            case INT_RGB -> {
+                SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+                int[] data = db.getData();
+                int stride = sm.getScanlineStride();
+                int base = db.getOffset() + sm.getOffset(tx, ty);
+                for (int row = 0; row < h; row++) {
+                    int d = base + row * stride;
+                    int s = off + row * scan;
+                    for (int i = 0; i < w; i++) {
+                        data[d + i] = src[s + i] & 0x00FFFFFF;
+                    }
+                }
+            }
+            case INT_ARGB -> {
+                SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+                int[] data = db.getData();
+                int stride = sm.getScanlineStride();
+                int base = db.getOffset() + sm.getOffset(tx, ty);
+                for (int row = 0; row < h; row++) {
+                    System.arraycopy(src, off + row * scan, data, base + row * stride, w);
+                }
+            }
+            case BYTE_BGR -> {
+                ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+                DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+                byte[] data = db.getData();
+                int stride = sm.getScanlineStride();
+                int pixelStride = sm.getPixelStride();
+                int[] bands = sm.getBandOffsets();
+                int base = db.getOffset() + ty * stride + tx * pixelStride;
+                int ro = bands[0], go = bands[1], bo = bands[2];
+                for (int row = 0; row < h; row++) {
+                    int d = base + row * stride;
+                    int s = off + row * scan;
+                    for (int i = 0; i < w; i++, d += pixelStride) {
+                        int rgb = src[s + i];
+                        data[d + ro] = (byte) (rgb >> 16);
+                        data[d + go] = (byte) (rgb >> 8);
+                        data[d + bo] = (byte) rgb;
+                    }
+                }
+            }
+            case GENERIC -> img.setRGB(x, y, w, h, src, off, scan);
+        }
+    }
+}
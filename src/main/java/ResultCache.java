@@ -0,0 +1,351 @@
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Filtered results keyed on the content of the input and the filter chain, so running the
+ * same file through the same filters again skips decoding, filtering and encoding. The
+ * processor, thread count and block size are not part of the key, since every RGB backend
+ * produces the same pixels (YUV mode is keyed separately).
+ *
+ * Two tiers, each evicting least recently used entries past its size limit: decoded images
+ * in memory (cache.memoryMB, default 256) and encoded outputs on disk (cache.diskMB, default
+ * 2048, in cache.dir, default ./result-cache). The cache also remembers how long the
+ * sequential baseline took for each key, so speedups can be reported without re-running it.
+ * -Dcache.enabled=false turns every lookup into a miss.
+ */
+public final class ResultCache {
+
+    // Content hash of the input plus the filter chain
+    public record Key(String contentHash, String pipeline) {
+
+        // File name of the disk entry: a SHA-256 of both parts, so neither the length of the
+        // chain nor the characters a plugin uses in its specs matter
+        public String id() {
+            return sha256(contentHash + "\n" + pipeline);
+        }
+
+        // "<sha-256>-GRAYSCALE+GAUSSIAN_BLUR", as written in the index and the baselines
+        public String label() {
+            return contentHash + "-" + pipeline;
+        }
+    }
+
+    public record Stats(long memoryHits, long diskHits, long misses, long memoryBytes, long diskBytes) {
+
+        @Override
+        public String toString() {
+            return String.format("cache: %d memory hits, %d disk hits, %d misses, %.1f MB in memory, %.1f MB on disk",
+                    memoryHits, diskHits, misses, memoryBytes / 1e6, diskBytes / 1e6);
+        }
+    }
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("cache.enabled"));
+    private static final Path DIR = Path.of(System.getProperty("cache.dir", "result-cache"));
+    private static final long MEMORY_LIMIT = Long.getLong("cache.memoryMB", 256L) << 20;
+    private static final long DISK_LIMIT = Long.getLong("cache.diskMB", 2048L) << 20;
+    private static final String BASELINES = "baselines.properties";
+    // Which input and chain each disk entry holds, since the file names are only hashes
+    private static final String INDEX = "index.properties";
+
+    private static final LongAdder MEMORY_HITS = new LongAdder();
+    private static final LongAdder DISK_HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private static final LinkedHashMap<String, BufferedImage> MEMORY = new LinkedHashMap<>(16, 0.75f, true);
+    private static long memoryBytes;
+    private static Map<String, Path> disk;
+    private static Properties index;
+    private static long diskBytes;
+    private static Properties baselines;
+
+    // Hashing a large video takes a while; remember hashes until the file changes
+    private record FileStamp(Path path, long size, FileTime modified) {
+    }
+
+    private static final Map<FileStamp, String> HASHES = new ConcurrentHashMap<>();
+
+    private ResultCache() {
+    }
+
+    public static Key key(Path input, FilterPipeline pipeline) throws IOException {
+        return key(input, pipeline, ImageProcessor.SEQUENTIAL);
+    }
+
+    // Only YUV mode changes the result (it filters in another colour space), so it gets its own key
+    public static Key key(Path input, FilterPipeline pipeline, ImageProcessor processor) throws IOException {
+        Path path = input.toAbsolutePath().normalize();
+        FileStamp stamp = new FileStamp(path, Files.size(path), Files.getLastModifiedTime(path));
+        String hash = HASHES.get(stamp);
+        if (hash == null) {
+            hash = sha256(path);
+            HASHES.put(stamp, hash);
+        }
+        String chain = pipeline.steps().stream().map(PixelFilter::spec).collect(Collectors.joining("+"));
+        return new Key(hash, processor == ImageProcessor.YUV ? chain + "+YUV" : chain);
+    }
+
+    /**
+     * The filtered image for this key, from memory or else decoded from the disk tier, or
+     * null on a miss. The returned image is shared with the cache and must not be modified.
+     */
+    public static BufferedImage getImage(Key key) throws IOException {
+        if (!ENABLED) {
+            MISSES.increment();
+            return null;
+        }
+        synchronized (ResultCache.class) {
+            BufferedImage img = MEMORY.get(key.id());
+            if (img != null) {
+                MEMORY_HITS.increment();
+                return img;
+            }
+        }
+        Path file = diskEntry(key);
+        if (file == null) {
+            MISSES.increment();
+            return null;
+        }
+        BufferedImage img = ImageIO.read(file.toFile());
+        if (img == null) {
+            MISSES.increment();
+            return null;
+        }
+        DISK_HITS.increment();
+        remember(key, img);
+        return img;
+    }
+
+    // Caches a filtered image in memory and on disk, as PNG so a disk hit has the exact pixels
+    public static void putImage(Key key, BufferedImage img) throws IOException {
+        if (!ENABLED) return;
+        remember(key, img);
+        Path partial = Files.createTempFile(directory(), ".partial-", ".png");
+        try {
+            if (!ImageIO.write(img, "png", partial.toFile())) {
+                throw new IOException("No png writer for image type " + img.getType());
+            }
+            store(key, partial, "png");
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * Copies the cached encoded output for this key to target and returns true, or returns
+     * false on a miss. Used for videos, whose outputs are never decoded.
+     */
+    public static boolean copyEncoded(Key key, Path target) throws IOException {
+        Path file = ENABLED ? diskEntry(key) : null;
+        if (file == null) {
+            MISSES.increment();
+            return false;
+        }
+        DISK_HITS.increment();
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    // Adds an encoded output file (left in place) to the disk tier
+    public static void putEncoded(Key key, Path output) throws IOException {
+        if (!ENABLED) return;
+        String name = output.getFileName().toString();
+        String extension = name.substring(name.lastIndexOf('.') + 1);
+        Path partial = Files.createTempFile(directory(), ".partial-", "." + extension);
+        try {
+            Files.copy(output, partial, StandardCopyOption.REPLACE_EXISTING);
+            store(key, partial, extension);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    // How long the sequential backend took for this key, if it was ever measured
+    public static synchronized OptionalDouble baselineMillis(Key key) {
+        if (!ENABLED) return OptionalDouble.empty();
+        String value = baselines().getProperty(key.label());
+        return value == null ? OptionalDouble.empty() : OptionalDouble.of(Double.parseDouble(value));
+    }
+
+    public static synchronized void recordBaseline(Key key, double millis) {
+        if (!ENABLED) return;
+        baselines().setProperty(key.label(), Double.toString(millis));
+        try (Writer writer = Files.newBufferedWriter(directory().resolve(BASELINES))) {
+            baselines.store(writer, "Sequential baseline in ms per input hash and filter chain");
+        } catch (IOException e) {
+            System.err.println("❌ Could not save cached baselines: " + e.getMessage());
+        }
+    }
+
+    public static synchronized Stats stats() {
+        return new Stats(MEMORY_HITS.sum(), DISK_HITS.sum(), MISSES.sum(), memoryBytes, disk == null ? 0 : diskBytes);
+    }
+
+    private static synchronized void remember(Key key, BufferedImage img) {
+        long size = (long) img.getWidth() * img.getHeight() * 4;
+        if (size > MEMORY_LIMIT) return;
+        BufferedImage previous = MEMORY.put(key.id(), img);
+        if (previous != null) memoryBytes -= (long) previous.getWidth() * previous.getHeight() * 4;
+        memoryBytes += size;
+        var eldest = MEMORY.entrySet().iterator();
+        while (memoryBytes > MEMORY_LIMIT && eldest.hasNext()) {
+            BufferedImage evicted = eldest.next().getValue();
+            memoryBytes -= (long) evicted.getWidth() * evicted.getHeight() * 4;
+            eldest.remove();
+        }
+    }
+
+    // The disk entry for this key, touched so that it counts as recently used, or null
+    private static synchronized Path diskEntry(Key key) throws IOException {
+        Path file = disk().get(key.id());
+        if (file == null) return null;
+        if (!Files.exists(file)) {
+            disk.remove(key.id());
+            return null;
+        }
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        return file;
+    }
+
+    private static synchronized void store(Key key, Path partial, String extension) throws IOException {
+        Path target = directory().resolve(key.id() + "." + extension);
+        Path previous = disk().get(key.id());
+        if (previous != null && Files.exists(previous)) {
+            diskBytes -= Files.size(previous);
+            Files.delete(previous);
+        }
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        disk.put(key.id(), target);
+        index.setProperty(key.id(), key.label());
+        diskBytes += Files.size(target);
+        evictDisk();
+        saveIndex();
+    }
+
+    private static void evictDisk() throws IOException {
+        if (diskBytes <= DISK_LIMIT) return;
+        List<Path> files = new ArrayList<>(disk.values());
+        files.sort((a, b) -> lastModified(a).compareTo(lastModified(b)));
+        for (Path file : files) {
+            if (diskBytes <= DISK_LIMIT) break;
+            if (Files.exists(file)) {
+                diskBytes -= Files.size(file);
+                Files.delete(file);
+            }
+            disk.values().remove(file);
+            index.remove(id(file));
+        }
+    }
+
+    private static void saveIndex() {
+        try (Writer writer = Files.newBufferedWriter(DIR.resolve(INDEX))) {
+            index.store(writer, "Input hash and filter chain of each cached file");
+        } catch (IOException e) {
+            System.err.println("❌ Could not save cache index: " + e.getMessage());
+        }
+    }
+
+    // Index of the disk tier, built from the directory listing on first use
+    private static Map<String, Path> disk() throws IOException {
+        if (disk == null) {
+            disk = new ConcurrentHashMap<>();
+            index = load(DIR.resolve(INDEX), "cache index");
+            diskBytes = 0;
+            try (Stream<Path> files = Files.list(directory())) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith(".") || name.equals(BASELINES) || name.equals(INDEX) || name.indexOf('.') < 0) continue;
+                    disk.put(id(file), file);
+                    diskBytes += Files.size(file);
+                }
+            }
+            // Entries whose file is gone
+            index.keySet().retainAll(disk.keySet());
+        }
+        return disk;
+    }
+
+    private static String id(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.lastIndexOf('.'));
+    }
+
+    private static Properties baselines() {
+        if (baselines == null) {
+            baselines = load(DIR.resolve(BASELINES), "cached baselines");
+        }
+        return baselines;
+    }
+
+    private static Properties load(Path file, String what) {
+        Properties properties = new Properties();
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                System.err.println("❌ Ignoring " + what + ": " + e.getMessage());
+            }
+        }
+        return properties;
+    }
+
+    private static Path directory() throws IOException {
+        return Files.createDirectories(DIR);
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[1 << 20];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,492 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avutil.AVRational;
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Segment-parallel video: the other modes decode and encode one stream, so a single H.264
+ * encoder caps throughput however many cores filter. Here the input is split at keyframes into
+ * segments, each segment is decoded, filtered and encoded on its own by a worker, and the
+ * encoded segments are joined into the output by copying their packets, without re-encoding.
+ *
+ * A worker is either a thread with its own grabber and recorder, or a separate local JVM
+ * started on this class (--worker), which talks to the coordinator only through files and its
+ * exit code, so the same protocol could drive workers on other machines. The coordinator hands
+ * out the longest segments first, gives a failed segment to another worker up to
+ * {@link #MAX_ATTEMPTS} times, and stops using a worker that keeps failing.
+ *
+ * Segments start at keyframes, so a worker seeks straight to its first frame, and are written
+ * as MPEG-TS, whose 90 kHz time base is the same for every segment. Each segment starts a fresh
+ * encoder, and so a closed GOP, which is what makes the packet-level join valid.
+ *
+ *   java -cp demo.jar SegmentedVideo in.mp4 out.mp4 --pipeline "GRAYSCALE>GAUSSIAN_BLUR(4)" --workers 4 --processes
+ */
+public final class SegmentedVideo {
+
+    private static final int MAX_ATTEMPTS = 3;
+    // A worker failing this many segments in a row is given no more
+    private static final int MAX_WORKER_FAILURES = 2;
+    // Segments per worker: enough to even out uneven GOPs and keep a retry cheap
+    private static final int SEGMENTS_PER_WORKER = 4;
+    private static final long WORKER_TIMEOUT_SECONDS = Long.getLong("segments.timeoutSeconds", 3600);
+
+    // [startMicros, endMicros) of the input in grabber timestamps; the last one runs to the end
+    public record Segment(int index, long startMicros, long endMicros) {
+
+        boolean last() {
+            return endMicros == Long.MAX_VALUE;
+        }
+    }
+
+    // Everything a worker needs, in a form that can be passed on a command line
+    public record Task(String input, Segment segment, Path output, String pipeline, ImageProcessor processor,
+                       int threads, int blockSize) {
+    }
+
+    // Filters one segment into task.output(); throws if it could not
+    public interface Worker {
+        void process(Task task) throws Exception;
+    }
+
+    public record Report(int segments, int workers, int retries, long scanNanos, long filterNanos, long joinNanos) {
+
+        @Override
+        public String toString() {
+            return String.format("%d segments on %d workers (%d retried): scan %.2f s, filter %.2f s, join %.2f s",
+                    segments, workers, retries, scanNanos / 1e9, filterNanos / 1e9, joinNanos / 1e9);
+        }
+    }
+
+    private record Attempt(Task task, int worker, Exception error) {
+    }
+
+    private SegmentedVideo() {
+    }
+
+    /**
+     * Filters inputVideo into outputVideo with workers segment workers (settings().threads()
+     * if <= 0), each a thread or, with processes, a local JVM. numThreads is the tile
+     * parallelism inside each worker; 0 divides the configured threads among the workers.
+     */
+    public static Report process(String inputVideo, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType,
+                                 int numThreads, int blockSize, int workers, boolean processes) throws IOException {
+        int workerCount = workers > 0 ? workers : ProcessingRuntime.settings().threads();
+        int tileThreads = workerThreads(numThreads, workerCount, processes);
+        Path parts = Files.createTempDirectory("segments-");
+        try (var _ = Instrumentation.beginRun("segmented video " + processorType)) {
+            long start = System.nanoTime();
+            List<Segment> segments = split(inputVideo, workerCount * SEGMENTS_PER_WORKER);
+            long scanned = System.nanoTime();
+
+            List<Task> tasks = new ArrayList<>();
+            for (Segment segment : segments) {
+                Path output = parts.resolve(String.format("segment-%04d.ts", segment.index()));
+                tasks.add(new Task(inputVideo, segment, output, pipeline.toString(), processorType, tileThreads, blockSize));
+            }
+            List<Worker> pool = new ArrayList<>();
+            for (int i = 0; i < Math.min(workerCount, tasks.size()); i++) {
+                pool.add(processes ? new ProcessWorker(parts.resolve("worker-" + i + ".log")) : SegmentedVideo::processSegment);
+            }
+            int retries = runAll(pool, tasks);
+            long filtered = System.nanoTime();
+
+            join(tasks.stream().map(Task::output).toList(), outputVideo);
+            return new Report(tasks.size(), pool.size(), retries, scanned - start, filtered - scanned, System.nanoTime() - filtered);
+        } finally {
+            VideoProcessor.deleteDirectoryRecursively(parts);
+        }
+    }
+
+    /**
+     * numThreads each worker filters its frames with. A worker process has pools of its own and
+     * gets its share of the cores. Worker threads share this JVM's pools, which are shared by
+     * parallelism: with one tile thread each they filter on their own thread, and with more they
+     * all submit to one pool of every worker's threads rather than queue on a pool of one share.
+     */
+    static int workerThreads(int numThreads, int workerCount, boolean processes) {
+        int tileThreads = numThreads > 0 ? numThreads : Math.max(1, ProcessingRuntime.settings().threads() / workerCount);
+        return processes || tileThreads == 1 ? tileThreads : tileThreads * workerCount;
+    }
+
+    // Segments of about equal length, each starting at a keyframe
+    static List<Segment> split(String inputVideo, int count) throws IOException {
+        List<Long> keyframes = new ArrayList<>();
+        long length;
+        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(inputVideo)) {
+            // The decoder drops everything but keyframes, so the scan costs a small part of a full decode
+            grabber.setVideoOption("skip_frame", "nokey");
+            grabber.start();
+            Frame frame;
+            while ((frame = grabber.grabImage()) != null) {
+                if (frame.keyFrame) keyframes.add(frame.timestamp);
+            }
+            length = grabber.getLengthInTime();
+            grabber.stop();
+        } catch (Exception e) {
+            throw new IOException("Could not scan keyframes of " + inputVideo, e);
+        }
+        if (length <= 0 && !keyframes.isEmpty()) length = keyframes.get(keyframes.size() - 1);
+
+        // The first segment starts at the beginning; every other one at the keyframe nearest to
+        // its share of the length
+        List<Long> starts = new ArrayList<>(List.of(0L));
+        for (int i = 1; i < count; i++) {
+            long target = length * i / count;
+            long nearest = 0;
+            for (long keyframe : keyframes) {
+                if (Math.abs(keyframe - target) < Math.abs(nearest - target)) nearest = keyframe;
+            }
+            if (nearest > starts.get(starts.size() - 1)) starts.add(nearest);
+        }
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < starts.size(); i++) {
+            segments.add(new Segment(i, starts.get(i), i + 1 < starts.size() ? starts.get(i + 1) : Long.MAX_VALUE));
+        }
+        return segments;
+    }
+
+    /**
+     * Runs every task on the workers, longest first, each worker one task at a time. A failed
+     * task goes back to the front of the queue, preferably for another worker; returns how
+     * many retries that took, or throws once a task has failed MAX_ATTEMPTS times.
+     */
+    static int runAll(List<Worker> workers, List<Task> tasks) throws IOException {
+        Deque<Task> pending = new ArrayDeque<>(tasks.stream()
+                .sorted(Comparator.comparingLong((Task task) -> length(task.segment())).reversed())
+                .toList());
+        Deque<Integer> idle = new ArrayDeque<>();
+        for (int i = 0; i < workers.size(); i++) idle.add(i);
+        int[] attempts = new int[tasks.size()];
+        int[] failedOn = new int[tasks.size()];
+        int[] failuresInRow = new int[workers.size()];
+        Arrays.fill(failedOn, -1);
+
+        ExecutorService threads = Executors.newFixedThreadPool(workers.size(), runnable -> {
+            Thread thread = new Thread(runnable, "segment-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ExecutorCompletionService<Attempt> completion = new ExecutorCompletionService<>(threads);
+        int running = 0;
+        int done = 0;
+        int retries = 0;
+        try {
+            while (done < tasks.size()) {
+                while (!pending.isEmpty() && !idle.isEmpty()) {
+                    Task task = pending.poll();
+                    int worker = pick(idle, failedOn[task.segment().index()]);
+                    completion.submit(() -> {
+                        try {
+                            workers.get(worker).process(task);
+                            return new Attempt(task, worker, null);
+                        } catch (Exception e) {
+                            return new Attempt(task, worker, e);
+                        }
+                    });
+                    running++;
+                }
+                Attempt attempt = completion.take().get();
+                running--;
+                int index = attempt.task().segment().index();
+                if (attempt.error() == null) {
+                    done++;
+                    failuresInRow[attempt.worker()] = 0;
+                    idle.add(attempt.worker());
+                    continue;
+                }
+                System.err.println("❌ Segment " + index + " failed on worker " + attempt.worker() + ": " + attempt.error().getMessage());
+                if (++attempts[index] >= MAX_ATTEMPTS) {
+                    throw new IOException("Segment " + index + " failed " + MAX_ATTEMPTS + " times", attempt.error());
+                }
+                retries++;
+                failedOn[index] = attempt.worker();
+                pending.addFirst(attempt.task());
+                // Keep at least one worker, even a failing one, so the job can still finish
+                if (++failuresInRow[attempt.worker()] < MAX_WORKER_FAILURES || idle.isEmpty() && running == 0) {
+                    idle.add(attempt.worker());
+                } else {
+                    System.err.println("❌ Worker " + attempt.worker() + " failed " + MAX_WORKER_FAILURES + " segments in a row; not using it again");
+                }
+            }
+            return retries;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for segments", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Segment worker failed", e.getCause());
+        } finally {
+            // Running workers are interrupted, and worker processes are killed with them
+            threads.shutdownNow();
+        }
+    }
+
+    // An idle worker other than the one the task last failed on, if there is one
+    private static int pick(Deque<Integer> idle, int avoid) {
+        for (int worker : idle) {
+            if (worker != avoid) {
+                idle.remove(worker);
+                return worker;
+            }
+        }
+        return idle.poll();
+    }
+
+    // The last segment's end is not known exactly, so it counts as the longest
+    private static long length(Segment segment) {
+        return segment.last() ? Long.MAX_VALUE - segment.startMicros() : segment.endMicros() - segment.startMicros();
+    }
+
+    // Decodes, filters and encodes one segment, as a worker thread or a worker process does
+    static void processSegment(Task task) throws IOException {
+        FilterPipeline pipeline = FilterPipeline.parse(task.pipeline());
+        Segment segment = task.segment();
+        boolean yuv = task.processor() == ImageProcessor.YUV;
+        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(task.input());
+             FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(task.output().toString(), 0, 0)) {
+            grabber.setPixelFormat(yuv ? avutil.AV_PIX_FMT_YUV420P : avutil.AV_PIX_FMT_BGR24);
+            grabber.start();
+            // Lands on the segment's keyframe, so nothing before it is decoded
+            if (segment.startMicros() > 0) grabber.setTimestamp(segment.startMicros());
+            VideoProcessor.startRecorder(recorder, grabber.getImageWidth(), grabber.getImageHeight(), grabber.getFrameRate(), "mpegts");
+            Frame frame;
+            while (true) {
+                long t = Instrumentation.start();
+                if ((frame = grabber.grabImage()) == null || frame.timestamp >= segment.endMicros()) break;
+                Instrumentation.record(Instrumentation.DECODE, t);
+                if (frame.timestamp < segment.startMicros()) continue;
+                long f = Instrumentation.start();
+                filter(frame, pipeline, task);
+                Instrumentation.record(Instrumentation.FILTER, f);
+                long e = Instrumentation.start();
+                if (yuv) {
+                    recorder.record(frame, avutil.AV_PIX_FMT_YUV420P);
+                } else {
+                    recorder.record(frame);
+                }
+                Instrumentation.record(Instrumentation.ENCODE, e);
+                Instrumentation.record(Instrumentation.FRAME, t);
+            }
+            grabber.stop();
+            recorder.stop();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Could not filter segment " + segment.index(), e);
+        }
+    }
+
+    // One decoded frame of a segment, in place
+    static void filter(Frame frame, FilterPipeline pipeline, Task task) {
+        if (task.processor() == ImageProcessor.YUV) {
+            YuvProcessing.applyFilter(pipeline, frame, task.threads(), task.blockSize());
+        } else {
+            VideoProcessor.filterFrame(new FrameSurface(frame), pipeline, task.processor(), task.threads(), task.blockSize());
+        }
+    }
+
+    /**
+     * Joins the segments into one mp4 by copying their packets. Every segment's timestamps
+     * start where the previous one ended: its first packet is a keyframe shown first, so
+     * shifting it to the previous end keeps presentation and decoding order continuous.
+     */
+    static void join(List<Path> segments, String outputVideo) throws IOException {
+        try (FFmpegFrameGrabber head = new FFmpegFrameGrabber(segments.get(0).toString())) {
+            head.start();
+            AVRational timeBase = head.getFormatContext().streams(head.getVideoStream()).time_base();
+            long frameTicks = Math.round(timeBase.den() / (timeBase.num() * (double) VideoProcessor.recordedFrameRate(head.getFrameRate())));
+            try (FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(outputVideo, head.getImageWidth(), head.getImageHeight())) {
+                recorder.setFormat("mp4");
+                recorder.setVideoCodec(head.getVideoCodec());
+                recorder.setFrameRate(VideoProcessor.recordedFrameRate(head.getFrameRate()));
+                // Stream parameters are copied from the first segment; packets are rescaled from its time base
+                recorder.start(head.getFormatContext());
+                long end = copyPackets(head, recorder, 0, frameTicks);
+                for (Path segment : segments.subList(1, segments.size())) {
+                    try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(segment.toString())) {
+                        grabber.start();
+                        AVRational base = grabber.getFormatContext().streams(grabber.getVideoStream()).time_base();
+                        if (base.num() != timeBase.num() || base.den() != timeBase.den()) {
+                            throw new IOException("Segment " + segment.getFileName() + " has another time base");
+                        }
+                        end = copyPackets(grabber, recorder, end, frameTicks);
+                        grabber.stop();
+                    }
+                }
+                recorder.stop();
+            }
+            head.stop();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Could not join segments into " + outputVideo, e);
+        }
+    }
+
+    // Copies a segment's video packets shifted to start at start; returns where it ends
+    private static long copyPackets(FFmpegFrameGrabber grabber, FFmpegFrameRecorder recorder, long start, long frameTicks) throws Exception {
+        long shift = Long.MIN_VALUE;
+        long end = start;
+        AVPacket packet;
+        while ((packet = grabber.grabPacket()) != null) {
+            if (packet.stream_index() != grabber.getVideoStream()) {
+                avcodec.av_packet_unref(packet);
+                continue;
+            }
+            long pts = packet.pts() != avutil.AV_NOPTS_VALUE ? packet.pts() : packet.dts();
+            if (shift == Long.MIN_VALUE) shift = start - pts;
+            packet.pts(pts + shift);
+            if (packet.dts() != avutil.AV_NOPTS_VALUE) packet.dts(packet.dts() + shift);
+            // MPEG-TS keeps no packet durations
+            end = Math.max(end, packet.pts() + (packet.duration() > 0 ? packet.duration() : frameTicks));
+            // Writes and releases the packet
+            recorder.recordPacket(packet);
+        }
+        return end;
+    }
+
+    // A local JVM running this class with --worker; its output goes to log
+    static final class ProcessWorker implements Worker {
+
+        private final Path log;
+
+        ProcessWorker(Path log) {
+            this.log = log;
+        }
+
+        @Override
+        public void process(Task task) throws Exception {
+            Segment segment = task.segment();
+            List<String> command = new ArrayList<>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            // The same modules and heap as this JVM, and a runtime sized for one worker's share
+            for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+                if (arg.startsWith("--add-modules") || arg.startsWith("--enable-preview") || arg.startsWith("-Xmx")) {
+                    command.add(arg);
+                }
+            }
+            command.add("-Dprocessing.threads=" + task.threads());
+            command.add("-Djava.awt.headless=true");
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"), SegmentedVideo.class.getName(), "--worker",
+                    task.input(), task.output().toString(), Long.toString(segment.index()),
+                    Long.toString(segment.startMicros()), Long.toString(segment.endMicros()),
+                    task.pipeline(), task.processor().name(), Integer.toString(task.threads()), Integer.toString(task.blockSize())));
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()))
+                    .start();
+            try {
+                if (!process.waitFor(WORKER_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new IOException("Worker timed out after " + WORKER_TIMEOUT_SECONDS + " s");
+                }
+                if (process.exitValue() != 0) {
+                    throw new IOException("Worker exited with " + process.exitValue() + ", see " + lastLine());
+                }
+            } finally {
+                process.destroyForcibly();
+            }
+            if (!Files.isRegularFile(task.output()) || Files.size(task.output()) == 0) {
+                throw new IOException("Worker wrote no output for segment " + segment.index());
+            }
+        }
+
+        private String lastLine() throws IOException {
+            List<String> lines = Files.readAllLines(log);
+            return lines.isEmpty() ? log.toString() : lines.get(lines.size() - 1);
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length > 0 && args[0].equals("--worker")) {
+            System.exit(worker(args));
+            return;
+        }
+        String input = null;
+        String output = null;
+        FilterPipeline pipeline = null;
+        ImageProcessor processor = ImageProcessor.FORKJOIN;
+        int threads = 0;
+        int blockSize = 0;
+        int workers = 0;
+        boolean processes = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--filter", "--pipeline" -> pipeline = FilterPipeline.parse(value(args, ++i, arg));
+                    case "--processor" -> processor = ImageProcessor.valueOf(value(args, ++i, arg).toUpperCase(Locale.ROOT));
+                    case "--threads" -> threads = Integer.parseInt(value(args, ++i, arg));
+                    case "--block" -> blockSize = Integer.parseInt(value(args, ++i, arg));
+                    case "--workers" -> workers = Integer.parseInt(value(args, ++i, arg));
+                    case "--processes" -> processes = true;
+                    default -> {
+                        if (arg.startsWith("--")) throw new IllegalArgumentException("Unknown option: " + arg);
+                        if (input == null) input = arg;
+                        else if (output == null) output = arg;
+                        else throw new IllegalArgumentException("Unexpected argument: " + arg);
+                    }
+                }
+            }
+            if (input == null || output == null || pipeline == null) {
+                throw new IllegalArgumentException("An input, an output and --filter/--pipeline are required");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            System.err.println("""
+                    Usage: SegmentedVideo INPUT OUTPUT --filter NAME|--pipeline "A>B" [--workers N] [--processes]
+                                          [--processor SEQUENTIAL|FORKJOIN|EXECUTOR|SIMD|VIRTUAL|YUV] [--threads N] [--block N]
+                      --workers    segments filtered at once (default: one per core)
+                      --processes  run each worker as a separate local JVM instead of a thread
+                      --threads    tile threads inside each worker (0 = cores / workers)""");
+            System.exit(2);
+            return;
+        }
+        try {
+            System.out.println(process(input, output, pipeline, processor, threads, blockSize, workers, processes));
+            ProcessingRuntime.shutdown();
+            System.exit(0);
+        } catch (IOException e) {
+            System.err.println("❌ Segmented video failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // --worker INPUT OUTPUT INDEX START END PIPELINE PROCESSOR THREADS BLOCK, as ProcessWorker passes them
+    private static int worker(String[] args) {
+        try {
+            Segment segment = new Segment(Integer.parseInt(args[3]), Long.parseLong(args[4]), Long.parseLong(args[5]));
+            processSegment(new Task(args[1], segment, Path.of(args[2]), args[6], ImageProcessor.valueOf(args[7]),
+                    Integer.parseInt(args[8]), Integer.parseInt(args[9])));
+            ProcessingRuntime.shutdown();
+            return 0;
+        } catch (Exception e) {
+            System.err.println("❌ Segment worker failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+        return args[i];
+    }
+}
@@ -3,15 +3,27 @@ import java.awt.image.BufferedImage;
 public class SequentialProcessing {
 
     public static void applyFilter(FilterType filter, BufferedImage img) {
-        int width = img.getWidth();
-        int height = img.getHeight();
+        applyFilter(FilterPipeline.of(filter), img);
+    }
+
+    public static void applyFilter(FilterPipeline pipeline, BufferedImage img) {
+        applyFilter(pipeline, PixelSurface.of(img));
+    }
+
+    public static void applyFilter(FilterPipeline pipeline, PixelSurface img) {
+        applyFilter(Filters.SCALAR, pipeline, img);
+    }
+
+    // With the given kernels, so a caller that filters one image per thread can keep SIMD
+    static void applyFilter(PixelKernels kernels, FilterPipeline pipeline, PixelSurface img) {
+        int width = img.width();
+        int height = img.height();
 
-        switch (filter) {
-            case GRAYSCALE -> Filters.applyGrayscale(img, 0, 0, width, height);
-            case GAUSSIAN_BLUR -> Filters.applyGaussianBlur(img, 0, 0, width, height);
-            case INVERT -> Filters.applyInvert(img, 0, 0, width, height);
-            case SEPIA -> Filters.applySepia(img, 0, 0, width, height);
-            case EDGE_DETECTION -> Filters.applyEdgeDetection(img, 0, 0, width, height);
+        int[] source = pipeline.snapshotIfNeeded(img);
+        try {
+            pipeline.apply(kernels, source, img, 0, 0, width, height);
+        } finally {
+            FrameBufferPool.release(source);
         }
     }
 }
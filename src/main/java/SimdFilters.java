@@ -0,0 +1,239 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API versions of the filter kernels. Each kernel processes one vector of pixels per
+ * iteration, finishes the row with the scalar code from {@link Filters}, and falls back to it
+ * entirely when the preferred species is too narrow to pay off. The arithmetic mirrors the
+ * scalar kernels operation for operation, so results are bit-identical.
+ */
+public class SimdFilters implements PixelKernels {
+
+    public static final SimdFilters KERNELS = new SimdFilters();
+
+    // Integer and float lanes share a shape, so I2F/F2I conversions keep the lane count
+    private static final VectorSpecies<Integer> INT = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLE = DoubleVector.SPECIES_PREFERRED;
+    private static final boolean INT_LANES_OK = INT.length() >= 4;
+    private static final boolean DOUBLE_LANES_OK = DOUBLE.length() >= 2;
+    // Half-width int species with one lane per double lane, for the double-precision kernels
+    private static final VectorSpecies<Integer> INT_HALF = DOUBLE_LANES_OK
+            ? VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLE.length() * Integer.SIZE))
+            : null;
+
+    private static final float K_CORNER = 1f / 16, K_EDGE = 2f / 16, K_CENTER = 4f / 16;
+
+    private SimdFilters() {
+    }
+
+    // True when at least one kernel family runs vectorized on this CPU
+    public static boolean isAccelerated() {
+        return INT_LANES_OK || DOUBLE_LANES_OK;
+    }
+
+    @Override
+    public void grayscale(int[] px, int off, int len) {
+        int i = off;
+        if (DOUBLE_LANES_OK) {
+            int upper = off + INT_HALF.loopBound(len);
+            for (; i < upper; i += INT_HALF.length()) {
+                IntVector gray = luma(IntVector.fromArray(INT_HALF, px, i));
+                splat(gray).intoArray(px, i);
+            }
+        }
+        Filters.grayscale(px, i, off + len - i);
+    }
+
+    @Override
+    public void invert(int[] px, int off, int len) {
+        int i = off;
+        if (INT_LANES_OK) {
+            int upper = off + INT.loopBound(len);
+            for (; i < upper; i += INT.length()) {
+                IntVector.fromArray(INT, px, i).not().and(0x00FFFFFF).or(0xFF000000).intoArray(px, i);
+            }
+        }
+        Filters.invert(px, i, off + len - i);
+    }
+
+    @Override
+    public void sepia(int[] px, int off, int len) {
+        int i = off;
+        if (DOUBLE_LANES_OK) {
+            int upper = off + INT_HALF.loopBound(len);
+            for (; i < upper; i += INT_HALF.length()) {
+                IntVector rgb = IntVector.fromArray(INT_HALF, px, i);
+                DoubleVector r = toDouble(rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF));
+                DoubleVector g = toDouble(rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF));
+                DoubleVector b = toDouble(rgb.and(0xFF));
+
+                IntVector tr = toInt(r.mul(0.393).add(g.mul(0.769)).add(b.mul(0.189))).max(0).min(255);
+                IntVector tg = toInt(r.mul(0.349).add(g.mul(0.686)).add(b.mul(0.168))).max(0).min(255);
+                IntVector tb = toInt(r.mul(0.272).add(g.mul(0.534)).add(b.mul(0.131))).max(0).min(255);
+
+                tr.lanewise(VectorOperators.LSHL, 16)
+                        .or(tg.lanewise(VectorOperators.LSHL, 8))
+                        .or(tb)
+                        .or(0xFF000000)
+                        .intoArray(px, i);
+            }
+        }
+        Filters.sepia(px, i, off + len - i);
+    }
+
+    @Override
+    public void gaussianBlur(int[] src, int srcX, int srcY, int srcW, int srcH,
+                             int[] dst, int dstX, int dstY, int dstW, int dstH) {
+        if (!INT_LANES_OK) {
+            Filters.gaussianBlur(src, srcX, srcY, srcW, srcH, dst, dstX, dstY, dstW, dstH);
+            return;
+        }
+        // Columns whose left and right neighbours are inside src need no clamping
+        int vecStart = Math.max(0, srcX + 1 - dstX);
+        int vecEnd = Math.max(vecStart, Math.min(dstW, srcX + srcW - 1 - dstX));
+        int vecUpper = vecStart + INT.loopBound(vecEnd - vecStart);
+        for (int j = 0; j < dstH; j++) {
+            int sy = dstY + j - srcY;
+            int up = Math.max(sy - 1, 0) * srcW;
+            int mid = sy * srcW;
+            int down = Math.min(sy + 1, srcH - 1) * srcW;
+            int d = j * dstW;
+            int i = 0;
+            for (; i < vecStart; i++) {
+                dst[d + i] = blurScalar(src, srcW, up, mid, down, dstX + i - srcX);
+            }
+            for (; i < vecUpper; i += INT.length()) {
+                int c = dstX + i - srcX;
+                FloatVector red = null, green = null, blue = null;
+                // Row-major tap order keeps the float accumulation identical to the scalar kernel
+                for (int ky = 0; ky < 3; ky++) {
+                    int row = ky == 0 ? up : ky == 1 ? mid : down;
+                    for (int kx = 0; kx < 3; kx++) {
+                        float weight = ky == 1 && kx == 1 ? K_CENTER : ky == 1 || kx == 1 ? K_EDGE : K_CORNER;
+                        IntVector p = IntVector.fromArray(INT, src, row + c + kx - 1);
+                        FloatVector pr = toFloat(p.lanewise(VectorOperators.LSHR, 16).and(0xFF)).mul(weight);
+                        FloatVector pg = toFloat(p.lanewise(VectorOperators.LSHR, 8).and(0xFF)).mul(weight);
+                        FloatVector pb = toFloat(p.and(0xFF)).mul(weight);
+                        red = red == null ? pr : red.add(pr);
+                        green = green == null ? pg : green.add(pg);
+                        blue = blue == null ? pb : blue.add(pb);
+                    }
+                }
+                IntVector r = toInt(red).max(0).min(255);
+                IntVector g = toInt(green).max(0).min(255);
+                IntVector b = toInt(blue).max(0).min(255);
+                r.lanewise(VectorOperators.LSHL, 16)
+                        .or(g.lanewise(VectorOperators.LSHL, 8))
+                        .or(b)
+                        .or(0xFF000000)
+                        .intoArray(dst, d + i);
+            }
+            for (; i < dstW; i++) {
+                dst[d + i] = blurScalar(src, srcW, up, mid, down, dstX + i - srcX);
+            }
+        }
+    }
+
+    @Override
+    public void edgeDetection(int[] src, int srcX, int srcY, int srcW, int srcH,
+                              int[] dst, int dstX, int dstY, int dstW, int dstH) {
+        if (!DOUBLE_LANES_OK) {
+            Filters.edgeDetection(src, srcX, srcY, srcW, srcH, dst, dstX, dstY, dstW, dstH);
+            return;
+        }
+        int winX = Math.max(dstX - 1, srcX);
+        int winY = Math.max(dstY - 1, srcY);
+        int winW = Math.min(dstX + dstW + 1, srcX + srcW) - winX;
+        int winH = Math.min(dstY + dstH + 1, srcY + srcH) - winY;
+        int[] gray = TileScratch.get(TileScratch.GRAY, winW * winH);
+        int rowUpper = INT_HALF.loopBound(winW);
+        for (int j = 0; j < winH; j++) {
+            int s = (winY - srcY + j) * srcW + winX - srcX;
+            int g = j * winW;
+            int i = 0;
+            for (; i < rowUpper; i += INT_HALF.length()) {
+                luma(IntVector.fromArray(INT_HALF, src, s + i)).intoArray(gray, g + i);
+            }
+            for (; i < winW; i++) {
+                gray[g + i] = Filters.getGray(src[s + i]);
+            }
+        }
+
+        int vecStart = Math.max(0, winX + 1 - dstX);
+        int vecEnd = Math.max(vecStart, Math.min(dstW, winX + winW - 1 - dstX));
+        int vecUpper = vecStart + INT_HALF.loopBound(vecEnd - vecStart);
+        for (int j = 0; j < dstH; j++) {
+            int sy = dstY + j - winY;
+            int up = Math.max(sy - 1, 0) * winW;
+            int mid = sy * winW;
+            int down = Math.min(sy + 1, winH - 1) * winW;
+            int d = j * dstW;
+            int i = 0;
+            for (; i < vecStart; i++) {
+                dst[d + i] = sobelScalar(gray, winW, up, mid, down, dstX + i - winX);
+            }
+            for (; i < vecUpper; i += INT_HALF.length()) {
+                int c = dstX + i - winX;
+                IntVector ul = IntVector.fromArray(INT_HALF, gray, up + c - 1);
+                IntVector uc = IntVector.fromArray(INT_HALF, gray, up + c);
+                IntVector ur = IntVector.fromArray(INT_HALF, gray, up + c + 1);
+                IntVector ml = IntVector.fromArray(INT_HALF, gray, mid + c - 1);
+                IntVector mr = IntVector.fromArray(INT_HALF, gray, mid + c + 1);
+                IntVector dl = IntVector.fromArray(INT_HALF, gray, down + c - 1);
+                IntVector dc = IntVector.fromArray(INT_HALF, gray, down + c);
+                IntVector dr = IntVector.fromArray(INT_HALF, gray, down + c + 1);
+
+                // Integer sums are exact, so the tap order does not matter here
+                IntVector gx = ur.sub(ul).add(mr.sub(ml).mul(2)).add(dr.sub(dl));
+                IntVector gy = dl.sub(ul).add(dc.sub(uc).mul(2)).add(dr.sub(ur));
+                IntVector magnitude = toInt(toDouble(gx.mul(gx).add(gy.mul(gy))).lanewise(VectorOperators.SQRT))
+                        .max(0).min(255);
+                splat(magnitude).intoArray(dst, d + i);
+            }
+            for (; i < dstW; i++) {
+                dst[d + i] = sobelScalar(gray, winW, up, mid, down, dstX + i - winX);
+            }
+        }
+    }
+
+    private static int blurScalar(int[] src, int srcW, int up, int mid, int down, int sx) {
+        return Filters.blurPixel(src, up, mid, down, Math.max(sx - 1, 0), sx, Math.min(sx + 1, srcW - 1));
+    }
+
+    private static int sobelScalar(int[] gray, int grayW, int up, int mid, int down, int sx) {
+        return Filters.sobelPixel(gray, up, mid, down, Math.max(sx - 1, 0), sx, Math.min(sx + 1, grayW - 1));
+    }
+
+    // (int) (0.3 * r + 0.59 * g + 0.11 * b) per lane, evaluated in double like Filters.getGray
+    private static IntVector luma(IntVector rgb) {
+        DoubleVector r = toDouble(rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF));
+        DoubleVector g = toDouble(rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF));
+        DoubleVector b = toDouble(rgb.and(0xFF));
+        return toInt(r.mul(0.3).add(g.mul(0.59)).add(b.mul(0.11)));
+    }
+
+    // Replicate a 0-255 value into an opaque gray pixel
+    private static IntVector splat(IntVector v) {
+        return v.lanewise(VectorOperators.LSHL, 16).or(v.lanewise(VectorOperators.LSHL, 8)).or(v).or(0xFF000000);
+    }
+
+    private static DoubleVector toDouble(IntVector v) {
+        return (DoubleVector) v.convertShape(VectorOperators.I2D, DOUBLE, 0);
+    }
+
+    private static IntVector toInt(DoubleVector v) {
+        return (IntVector) v.convertShape(VectorOperators.D2I, INT_HALF, 0);
+    }
+
+    private static FloatVector toFloat(IntVector v) {
+        return (FloatVector) v.convert(VectorOperators.I2F, 0);
+    }
+
+    private static IntVector toInt(FloatVector v) {
+        return (IntVector) v.convert(VectorOperators.F2I, 0);
+    }
+}
@@ -0,0 +1,27 @@
+import java.awt.image.BufferedImage;
+
+public class SimdProcessing {
+
+    // Fork/join tiling across cores, with the Vector API kernels inside every tile
+    public static void applyFilter(FilterType filter, BufferedImage image, int numThreads, int blockSize) {
+        applyFilter(FilterPipeline.of(filter), image, numThreads, blockSize);
+    }
+
+    public static void applyFilter(FilterPipeline pipeline, BufferedImage image, int numThreads, int blockSize) {
+        applyFilter(pipeline, PixelSurface.of(image), numThreads, blockSize);
+    }
+
+    // numThreads or blockSize <= 0 lets the autotuner choose
+    public static void applyFilter(FilterPipeline pipeline, PixelSurface image, int numThreads, int blockSize) {
+        applyFilter(pipeline, image, numThreads, blockSize, TilingStrategy.defaultFor(ImageProcessor.SIMD));
+    }
+
+    public static void applyFilter(FilterPipeline pipeline, BufferedImage image, int numThreads, int blockSize, TilingStrategy tiling) {
+        applyFilter(pipeline, PixelSurface.of(image), numThreads, blockSize, tiling);
+    }
+
+    public static void applyFilter(FilterPipeline pipeline, PixelSurface image, int numThreads, int blockSize, TilingStrategy tiling) {
+        AutoTuner.Profile profile = AutoTuner.resolve(ImageProcessor.SIMD, pipeline, image.width(), image.height(), numThreads, blockSize);
+        ForkJoinProcessing.applyFilter(SimdFilters.KERNELS, pipeline, image, profile.threads(), profile.blockSize(), tiling);
+    }
+}
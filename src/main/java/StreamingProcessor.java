@@ -0,0 +1,244 @@
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Out-of-core filtering for images too large to decode at once (satellite and scan imagery of
+ * 20k x 20k and up). The image is processed in full-width bands: each worker reads its band,
+ * plus the pipeline's halo rows above and below, with its own ImageReader and
+ * {@link ImageReadParam#setSourceRegion}, filters it and writes it into a tiled TIFF with
+ * {@link ImageWriter#replacePixels}. Only one band per worker is ever in memory, so the heap
+ * needed depends on the image width and the thread count, not on the image height.
+ *
+ * Bands are whole TIFF tile rows, so every write replaces complete tiles. Inputs in formats with
+ * random access (TIFF, BMP) read each band directly; the JDK's PNG and JPEG readers decode from
+ * the top of the file for every region, which still bounds memory but costs time.
+ *
+ *   java -cp demo.jar StreamingProcessor scan.tif filtered.tif "GRAYSCALE>EDGE_DETECTION" [threads]
+ */
+public class StreamingProcessor {
+
+    // Output tile side; band heights are multiples of it
+    private static final int TILE = 256;
+    // Aim for bands of about this many pixels, but never thinner than one tile row
+    private static final long BAND_PIXELS = 4_000_000;
+
+    public record Report(int width, int height, int bands, int bandRows, int threads, double seconds) {
+
+        public double megapixelsPerSecond() {
+            return (double) width * height / 1e6 / seconds;
+        }
+
+        // Pixels of every band in memory at once, as decoded plus filtered copies
+        public long peakBandBytes() {
+            return (long) threads * width * bandRows * 8;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%dx%d in %d bands on %d threads: %.2f s, %.1f MP/s, about %d MB of bands in memory",
+                    width, height, bands, threads, seconds, megapixelsPerSecond(), peakBandBytes() >> 20);
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 3 || args.length > 4) {
+            System.err.println("Usage: StreamingProcessor <input image> <output.tif> <pipeline> [threads]");
+            System.exit(2);
+            return;
+        }
+        try {
+            int threads = args.length == 4 ? Integer.parseInt(args[3]) : 0;
+            Report report = process(Path.of(args[0]), Path.of(args[1]), FilterPipeline.parse(args[2]), threads);
+            System.out.println(report);
+            ProcessingRuntime.shutdown();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("❌ Streaming failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Width and height from the file header, without decoding any pixels
+    public static Dimensions dimensions(Path input) throws IOException {
+        ImageReader reader = openReader(input);
+        try {
+            return new Dimensions(reader.getWidth(0), reader.getHeight(0));
+        } finally {
+            closeReader(reader);
+        }
+    }
+
+    public record Dimensions(int width, int height) {
+
+        public long pixels() {
+            return (long) width * height;
+        }
+    }
+
+    public static Report process(Path input, Path output, FilterPipeline pipeline, int numThreads) throws IOException {
+        return process(input, output, pipeline, numThreads, new ProcessingJob());
+    }
+
+    /**
+     * Filters input into output (a tiled TIFF) band by band on numThreads workers (the runtime's
+     * default if <= 0). job is checked for cancellation before every band and told the pixels
+     * of every band written.
+     */
+    public static Report process(Path input, Path output, FilterPipeline pipeline, int numThreads, ProcessingJob job) throws IOException {
+        int threads = numThreads > 0 ? numThreads : ProcessingRuntime.settings().threads();
+        Dimensions size = dimensions(input);
+        int width = size.width();
+        int height = size.height();
+        int bandRows = (int) Math.max(TILE, BAND_PIXELS / width / TILE * TILE);
+        int bands = (height + bandRows - 1) / bandRows;
+        long start = System.nanoTime();
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("tiff");
+        if (!writers.hasNext()) throw new IOException("No TIFF writer available");
+        ImageWriter writer = writers.next();
+        // Readers are not thread-safe, so every worker borrows one of its own
+        BlockingQueue<ImageReader> readers = new LinkedBlockingQueue<>();
+        List<ImageReader> opened = new ArrayList<>();
+        Files.deleteIfExists(output);
+        try (var _ = Instrumentation.beginRun("streaming " + input.getFileName());
+             ImageOutputStream out = ImageIO.createImageOutputStream(output.toFile())) {
+            if (out == null) throw new IOException("Cannot write " + output);
+            writer.setOutput(out);
+            ImageWriteParam tiling = writer.getDefaultWriteParam();
+            tiling.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+            tiling.setTiling(TILE, TILE, 0, 0);
+            writer.prepareWriteEmpty(null, ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_3BYTE_BGR),
+                    width, height, null, null, tiling);
+            writer.endWriteEmpty();
+            writer.prepareReplacePixels(0, new Rectangle(0, 0, width, height));
+
+            // A single thread reads the bands itself rather than share the runtime's one-worker pool
+            ExecutorService executor = threads > 1 ? ProcessingRuntime.executor(threads) : null;
+            List<Future<?>> tasks = new ArrayList<>();
+            try {
+                for (int band = 0; band < bands; band++) {
+                    int y = band * bandRows;
+                    int rows = Math.min(bandRows, height - y);
+                    Runnable task = () -> {
+                        job.checkCancelled();
+                        ImageReader reader = readers.poll();
+                        try {
+                            if (reader == null) {
+                                reader = openReader(input);
+                                synchronized (opened) {
+                                    opened.add(reader);
+                                }
+                            }
+                            BufferedImage filtered = filterBand(reader, pipeline, job, width, height, y, rows);
+                            long t = Instrumentation.start();
+                            ImageWriteParam at = writer.getDefaultWriteParam();
+                            at.setDestinationOffset(new Point(0, y));
+                            synchronized (writer) {
+                                writer.replacePixels(filtered.getRaster(), at);
+                            }
+                            Instrumentation.record(Instrumentation.ENCODE, t);
+                            job.regionDone((long) width * rows);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        } finally {
+                            if (reader != null) readers.add(reader);
+                        }
+                    };
+                    if (executor == null) {
+                        task.run();
+                    } else {
+                        tasks.add(executor.submit(task));
+                    }
+                }
+            } finally {
+                ProcessingRuntime.awaitAll(tasks);
+            }
+            writer.endReplacePixels();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            writer.dispose();
+            for (ImageReader reader : opened) {
+                closeReader(reader);
+            }
+        }
+        return new Report(width, height, bands, bandRows, threads, (System.nanoTime() - start) / 1e9);
+    }
+
+    // Reads rows [y, y + rows) plus halo, filters them and returns just those rows as 8-bit BGR
+    private static BufferedImage filterBand(ImageReader reader, FilterPipeline pipeline, ProcessingJob job,
+                                            int width, int height, int y, int rows) throws IOException {
+        int halo = pipeline.haloRadius();
+        int top = Math.min(halo, y);
+        int bottom = Math.min(halo, height - y - rows);
+        ImageReadParam region = reader.getDefaultReadParam();
+        region.setSourceRegion(new Rectangle(0, y - top, width, top + rows + bottom));
+        long t = Instrumentation.start();
+        BufferedImage band = reader.read(0, region);
+        Instrumentation.record(Instrumentation.DECODE, t);
+
+        // The halo rows are real image rows, so the band's rows come out exactly as if the
+        // whole image had been filtered at once
+        long f = Instrumentation.start();
+        PixelSurface surface = job.guard(PixelSurface.of(band));
+        int[] source = pipeline.snapshotIfNeeded(surface);
+        try {
+            pipeline.apply(Filters.SCALAR, source, surface, 0, top, width, rows);
+        } finally {
+            FrameBufferPool.release(source);
+        }
+        Instrumentation.record(Instrumentation.FILTER, f);
+
+        if (band.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return band.getSubimage(0, top, width, rows);
+        }
+        BufferedImage bgr = new BufferedImage(width, rows, BufferedImage.TYPE_3BYTE_BGR);
+        int[] row = new int[width];
+        for (int r = 0; r < rows; r++) {
+            RasterAccess.read(band, 0, top + r, width, 1, row, 0, width);
+            RasterAccess.write(bgr, 0, r, width, 1, row, 0, width);
+        }
+        return bgr;
+    }
+
+    // A reader positioned on input; release it with closeReader
+    static ImageReader openReader(Path input) throws IOException {
+        ImageInputStream in = ImageIO.createImageInputStream(input.toFile());
+        if (in == null) throw new IOException("Cannot read " + input);
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            in.close();
+            throw new IOException("Unsupported image format: " + input.getFileName());
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(in, true, true);
+        return reader;
+    }
+
+    static void closeReader(ImageReader reader) throws IOException {
+        Object in = reader.getInput();
+        reader.dispose();
+        if (in instanceof ImageInputStream stream) stream.close();
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Per-thread scratch arrays for tile processing. Each worker keeps one growable array per slot,
+ * sized to the largest tile (plus halo) it has seen, so filtering a block allocates nothing.
+ */
+final class TileScratch {
+
+    static final int SOURCE = 0;
+    static final int TARGET = 1;
+    static final int GRAY = 2;
+    static final int INTERIOR = 3;
+    static final int BLUR = 4;
+
+    private static final ThreadLocal<int[][]> SLOTS = ThreadLocal.withInitial(() -> new int[5][0]);
+
+    private TileScratch() {
+    }
+
+    // An array of at least size ints for the given slot; contents are unspecified
+    static int[] get(int slot, int size) {
+        int[][] slots = SLOTS.get();
+        if (slots[slot].length < size) {
+            slots[slot] = new int[size];
+        }
+        return slots[slot];
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * How an image is cut into blocks and in which order they are handed out. Both the fork/join
+ * and executor backends take the ordered tile list and give contiguous runs of it to each
+ * worker, so tiles that are close in this order are filtered by the same thread.
+ *
+ * The default for a backend is its original layout (QUADRANT for fork/join, RASTER for the
+ * executor and virtual-thread backends) unless the system property processing.tiling names another strategy.
+ */
+public enum TilingStrategy {
+
+    // Recursive split into four quadrants until both sides fit in the block size
+    QUADRANT,
+    // Square blocks in row-major order
+    RASTER,
+    // Full-width bands with about one block of area each; threads only meet on band edges
+    ROW_BANDS,
+    // Recursive halving across the longer side, so tiles stay close to square on wide frames
+    LONGER_AXIS,
+    // Square blocks in Z-order, which keeps 2D neighbours next to each other in the list
+    MORTON;
+
+    public record Tile(int x, int y, int width, int height) {
+    }
+
+    // Column cuts fall on multiples of 16 ints (one 64-byte cache line) where possible
+    private static final int LINE_PIXELS = 16;
+    // Bands thinner than this spend more time re-reading halos than filtering
+    private static final int MIN_BAND_ROWS = 8;
+
+    public static TilingStrategy defaultFor(ImageProcessor backend) {
+        String configured = System.getProperty("processing.tiling");
+        if (configured != null && !configured.isBlank()) {
+            return valueOf(configured.trim().toUpperCase(Locale.ROOT));
+        }
+        return backend == ImageProcessor.EXECUTOR || backend == ImageProcessor.VIRTUAL ? RASTER : QUADRANT;
+    }
+
+    public List<Tile> tiles(int width, int height, int blockSize) {
+        List<Tile> tiles = new ArrayList<>();
+        if (width <= 0 || height <= 0) return tiles;
+        int block = Math.max(1, blockSize);
+        switch (this) {
+            case QUADRANT -> quadrants(tiles, 0, 0, width, height, block);
+            case RASTER -> {
+                for (int y = 0; y < height; y += block) {
+                    for (int x = 0; x < width; x += block) {
+                        tiles.add(new Tile(x, y, Math.min(block, width - x), Math.min(block, height - y)));
+                    }
+                }
+            }
+            case ROW_BANDS -> {
+                int rows = Math.max(MIN_BAND_ROWS, (int) Math.min(height, (long) block * block / width));
+                for (int y = 0; y < height; y += rows) {
+                    tiles.add(new Tile(0, y, width, Math.min(rows, height - y)));
+                }
+            }
+            case LONGER_AXIS -> halves(tiles, 0, 0, width, height, block);
+            case MORTON -> {
+                int side = alignToLine(block);
+                for (int y = 0; y < height; y += side) {
+                    for (int x = 0; x < width; x += side) {
+                        tiles.add(new Tile(x, y, Math.min(side, width - x), Math.min(side, height - y)));
+                    }
+                }
+                tiles.sort(Comparator.comparingLong(t -> interleave(t.x() / side, t.y() / side)));
+            }
+        }
+        return tiles;
+    }
+
+    // Same leaves, in the same order, as the original ForkJoinProcessing recursion
+    private static void quadrants(List<Tile> tiles, int x, int y, int width, int height, int block) {
+        if (width <= block && height <= block) {
+            if (width > 0 && height > 0) tiles.add(new Tile(x, y, width, height));
+            return;
+        }
+        int wMid = width / 2;
+        int hMid = height / 2;
+        quadrants(tiles, x, y, wMid, hMid, block);
+        quadrants(tiles, x + wMid, y, width - wMid, hMid, block);
+        quadrants(tiles, x, y + hMid, wMid, height - hMid, block);
+        quadrants(tiles, x + wMid, y + hMid, width - wMid, height - hMid, block);
+    }
+
+    private static void halves(List<Tile> tiles, int x, int y, int width, int height, int block) {
+        if (width <= block && height <= block) {
+            tiles.add(new Tile(x, y, width, height));
+        } else if (width >= height) {
+            int mid = width / 2;
+            // Prefer a cut on a cache-line boundary when that still leaves two non-empty halves
+            int aligned = (x + mid) / LINE_PIXELS * LINE_PIXELS - x;
+            if (aligned > 0 && aligned < width) mid = aligned;
+            halves(tiles, x, y, mid, height, block);
+            halves(tiles, x + mid, y, width - mid, height, block);
+        } else {
+            int mid = height / 2;
+            halves(tiles, x, y, width, mid, block);
+            halves(tiles, x, y + mid, width, height - mid, block);
+        }
+    }
+
+    private static int alignToLine(int size) {
+        return Math.max(LINE_PIXELS, (size + LINE_PIXELS - 1) / LINE_PIXELS * LINE_PIXELS);
+    }
+
+    // Morton code: the bits of col and row interleaved
+    private static long interleave(int col, int row) {
+        return spread(col) | spread(row) << 1;
+    }
+
+    private static long spread(int value) {
+        long v = value & 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+}
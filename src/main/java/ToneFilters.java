@@ -0,0 +1,72 @@
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Set;
+
+/**
+ * Tone adjustments as a {@link FilterProvider}, registered through META-INF/services like any
+ * third-party filter jar would be:
+ *
+ *   BRIGHTNESS(n): adds n (-255..255) to every channel.
+ *   CONTRAST(p): scales the distance from mid-gray by p percent.
+ *   GAMMA(p): gamma correction with gamma p / 100, e.g. GAMMA(220) for 2.2.
+ *   SWAP_RB: exchanges the red and blue channels.
+ *
+ * All of them are channel lookup tables, so in a pipeline they fuse with the built-in point
+ * filters into one table pass and cost next to nothing.
+ */
+public final class ToneFilters implements FilterProvider {
+
+    private static final Set<String> NAMES = Collections.unmodifiableSet(
+            new LinkedHashSet<>(List.of("BRIGHTNESS", "CONTRAST", "GAMMA", "SWAP_RB")));
+    // One table lookup per channel, like INVERT
+    private static final double COST = 0.8;
+
+    private record Tone(String spec, PointProgram.Op pointOp, PointProgram program) implements PixelFilter {
+
+        Tone(String spec, PointProgram.Op op) {
+            this(spec, op, PointProgram.compile(List.of(op)));
+        }
+
+        @Override
+        public Footprint footprint() {
+            return Footprint.point(COST);
+        }
+
+        @Override
+        public void apply(PixelKernels kernels, int[] src, int[] dst, int off, int len) {
+            if (dst != src) System.arraycopy(src, off, dst, off, len);
+            program.apply(dst, off, len);
+        }
+
+        @Override
+        public String toString() {
+            return spec;
+        }
+    }
+
+    @Override
+    public Set<String> names() {
+        return NAMES;
+    }
+
+    @Override
+    public PixelFilter create(String name, OptionalInt argument) {
+        if (name.equals("SWAP_RB")) {
+            if (argument.isPresent()) throw new IllegalArgumentException("SWAP_RB takes no argument");
+            return new Tone(name, PointProgram.swapChannels("BGR"));
+        }
+        int value = argument.orElseThrow(() -> new IllegalArgumentException(name + " needs a value, written " + name + "(n)"));
+        String spec = name + "(" + value + ")";
+        return switch (name) {
+            case "BRIGHTNESS" -> {
+                if (Math.abs(value) > 255) throw new IllegalArgumentException("Brightness must be between -255 and 255: " + value);
+                yield new Tone(spec, PointProgram.brightness(value));
+            }
+            case "CONTRAST" -> new Tone(spec, PointProgram.contrast(value / 100.0));
+            case "GAMMA" -> new Tone(spec, PointProgram.gamma(value / 100.0));
+            default -> throw new IllegalArgumentException("Unknown filter: " + name);
+        };
+    }
+}
@@ -0,0 +1,383 @@
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.Java2DFrameConverter;
+
+/**
+ * Frame-parallel video engine. One thread decodes, one converts to RGB, several filter whole
+ * frames concurrently (each still tiled across the worker runtime), and one encodes. Stages
+ * are connected by bounded queues, and a reorder buffer hands frames to the encoder in their
+ * original order. The number of frames between decode and encode is capped, so decoding
+ * stalls when the encoder falls behind instead of piling frames up in memory.
+ *
+ * Decoded frames are copied into a {@link FramePool}, so the native frame buffers are reused
+ * for the whole clip. In zero-copy mode the conversion stage is skipped: filters run directly
+ * on the pooled BGR frame ({@link FrameSurface}) and the same frame goes to the encoder.
+ */
+public class VideoPipeline {
+
+    // Throughput of one stage: frames handled and time spent working (summed over its threads)
+    public record StageReport(String stage, int threads, long frames, long busyNanos) {
+
+        // Frames per second this stage could sustain on its own
+        public double capacityFps() {
+            return busyNanos == 0 ? Double.POSITIVE_INFINITY : frames * threads * 1e9 / busyNanos;
+        }
+    }
+
+    public record Report(long frames, long wallNanos, List<StageReport> stages) {
+
+        public double framesPerSecond() {
+            return wallNanos == 0 ? 0 : frames * 1e9 / wallNanos;
+        }
+
+        // The stage with the lowest capacity limits the whole pipeline
+        public StageReport bottleneck() {
+            StageReport slowest = stages.get(0);
+            for (StageReport stage : stages) {
+                if (stage.capacityFps() < slowest.capacityFps()) slowest = stage;
+            }
+            return slowest;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%d frames in %.2f s (%.2f fps)%n", frames, wallNanos / 1e9, framesPerSecond()));
+            sb.append(String.format("%-8s %7s %7s %10s %12s%n", "stage", "threads", "frames", "busy ms", "capacity fps"));
+            for (StageReport stage : stages) {
+                sb.append(String.format("%-8s %7d %7d %10.1f %12.2f%n", stage.stage(), stage.threads(), stage.frames(),
+                        stage.busyNanos() / 1e6, stage.capacityFps()));
+            }
+            sb.append("bottleneck: ").append(bottleneck().stage());
+            return sb.toString();
+        }
+    }
+
+    // A frame travelling through the stages; value is null for frames without an image
+    private record Item<T>(long seq, T value) {
+    }
+
+    private static final Item<?> END = new Item<>(-1, null);
+
+    private static final class Stage {
+        final String name;
+        final int threads;
+        final LongAdder frames = new LongAdder();
+        final LongAdder busyNanos = new LongAdder();
+
+        Stage(String name, int threads) {
+            this.name = name;
+            this.threads = threads;
+        }
+
+        void record(long startNanos) {
+            frames.increment();
+            busyNanos.add(System.nanoTime() - startNanos);
+            Instrumentation.record(name, startNanos);
+        }
+
+        StageReport report() {
+            return new StageReport(name, threads, frames.sum(), busyNanos.sum());
+        }
+    }
+
+    // Holds filtered frames until the encoder asks for them in sequence order
+    private static final class ReorderBuffer {
+        private final Map<Long, Item<PixelSurface>> pending = new HashMap<>();
+        private long total = -1;
+
+        synchronized void put(Item<PixelSurface> item) {
+            pending.put(item.seq(), item);
+            notifyAll();
+        }
+
+        synchronized void finish(long frameCount) {
+            total = frameCount;
+            notifyAll();
+        }
+
+        // The frame with this sequence number, or null once the stream has ended before it
+        synchronized Item<PixelSurface> take(long seq) throws InterruptedException {
+            while (!pending.containsKey(seq)) {
+                if (total >= 0 && seq >= total) return null;
+                wait();
+            }
+            return pending.remove(seq);
+        }
+    }
+
+    public static Report process(String inputVideo, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType,
+                                 int numThreads, int blockSize, int filterWorkers) throws IOException {
+        return process(inputVideo, outputVideo, pipeline, processorType, numThreads, blockSize, filterWorkers, false);
+    }
+
+    public static Report process(String inputVideo, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType,
+                                 int numThreads, int blockSize, int filterWorkers, boolean zeroCopy) throws IOException {
+        if (processorType == ImageProcessor.YUV) {
+            throw new IllegalArgumentException("YUV mode runs through VideoProcessor.processVideoYuv");
+        }
+        int workers = Math.max(1, filterWorkers);
+        int window = workers * 2 + 2;
+        Stage decode = new Stage("decode", 1);
+        Stage convert = new Stage("convert", 1);
+        Stage filter = new Stage("filter", workers);
+        Stage encode = new Stage("encode", 1);
+
+        BlockingQueue<Item<Frame>> decoded = new ArrayBlockingQueue<>(window);
+        BlockingQueue<Item<PixelSurface>> converted = new ArrayBlockingQueue<>(window + workers);
+        ReorderBuffer reorder = new ReorderBuffer();
+        Semaphore inFlight = new Semaphore(window);
+
+        long start = System.nanoTime();
+        long[] encodedFrames = new long[1];
+        ExecutorService stages = Executors.newFixedThreadPool(3 + workers, runnable -> {
+            Thread thread = new Thread(runnable, "video-stage");
+            thread.setDaemon(true);
+            return thread;
+        });
+        FramePool[] pool = new FramePool[1];
+        try (var _ = Instrumentation.beginRun("pipelined video " + processorType);
+             FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(inputVideo);
+             FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(outputVideo, 0, 0)) {
+            // Packed BGR is what both FrameSurface and the Java2D converter read
+            grabber.setPixelFormat(org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_BGR24);
+            grabber.start();
+            VideoProcessor.startRecorderLike(grabber, recorder);
+            FramePool frames = pool[0] = new FramePool(grabber.getImageWidth(), grabber.getImageHeight());
+
+            ExecutorCompletionService<Void> completion = new ExecutorCompletionService<>(stages);
+            completion.submit(() -> {
+                long seq = 0;
+                while (true) {
+                    inFlight.acquire();
+                    long t = System.nanoTime();
+                    Frame frame = grabber.grabImage();
+                    if (frame == null) {
+                        inFlight.release();
+                        break;
+                    }
+                    // The grabber reuses its buffers for the next frame
+                    Frame copy = frames.copyOf(frame);
+                    decode.record(t);
+                    decoded.put(new Item<>(seq++, copy));
+                }
+                reorder.finish(seq);
+                decoded.put(cast(END));
+                return null;
+            });
+            completion.submit(() -> {
+                try (Java2DFrameConverter converter = new Java2DFrameConverter()) {
+                    while (true) {
+                        Item<Frame> item = decoded.take();
+                        if (item == END) break;
+                        long t = System.nanoTime();
+                        PixelSurface surface;
+                        if (zeroCopy) {
+                            surface = new FrameSurface(item.value());
+                        } else {
+                            BufferedImage img = converter.convert(item.value());
+                            // The converter also reuses its output image
+                            surface = img == null ? null : PixelSurface.of(Java2DFrameConverter.cloneBufferedImage(img));
+                            frames.release(item.value());
+                        }
+                        convert.record(t);
+                        converted.put(new Item<>(item.seq(), surface));
+                    }
+                }
+                for (int i = 0; i < workers; i++) {
+                    converted.put(cast(END));
+                }
+                return null;
+            });
+            for (int i = 0; i < workers; i++) {
+                completion.submit(() -> {
+                    while (true) {
+                        Item<PixelSurface> item = converted.take();
+                        if (item == END) break;
+                        long t = System.nanoTime();
+                        if (item.value() != null) {
+                            VideoProcessor.filterFrame(item.value(), pipeline, processorType, numThreads, blockSize);
+                        }
+                        filter.record(t);
+                        reorder.put(item);
+                    }
+                    return null;
+                });
+            }
+            completion.submit(() -> {
+                try (Java2DFrameConverter converter = new Java2DFrameConverter()) {
+                    for (long seq = 0; ; seq++) {
+                        Item<PixelSurface> item = reorder.take(seq);
+                        if (item == null) break;
+                        long t = System.nanoTime();
+                        if (item.value() instanceof FrameSurface surface) {
+                            recorder.record(surface.frame());
+                            frames.release(surface.frame());
+                            encodedFrames[0]++;
+                        } else if (item.value() instanceof PixelSurface.ImageSurface surface) {
+                            recorder.record(converter.convert(surface.image()));
+                            encodedFrames[0]++;
+                        }
+                        encode.record(t);
+                        inFlight.release();
+                    }
+                }
+                return null;
+            });
+
+            awaitStages(completion, 3 + workers, stages);
+            grabber.stop();
+            recorder.stop();
+        } catch (Exception e) {
+            throw new IOException("Pipelined video processing failed", e instanceof ExecutionException ? e.getCause() : e);
+        } finally {
+            stages.shutdownNow();
+            if (pool[0] != null) pool[0].close();
+        }
+        return new Report(encodedFrames[0], System.nanoTime() - start,
+                List.of(decode.report(), convert.report(), filter.report(), encode.report()));
+    }
+
+    /**
+     * Frame-parallel pass over a {@link FrameStore}: one thread prefetches slots from disk ahead
+     * of the workers, several filter whole frames in place and, when outputVideo is not null,
+     * one encodes them straight from the mapped slots in order through the reorder buffer. At
+     * most a fixed window of frames is between prefetch and completion, so memory use does not
+     * grow with the clip. numThreads is the total budget (settings().threads() if <= 0), split
+     * between frames and tiles by {@link AutoTuner#frameSplit}: small frames are each filtered on
+     * their worker, large ones share one pool of the whole budget. A null pipeline only encodes.
+     */
+    public static Report process(FrameStore store, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType,
+                                 int numThreads, int blockSize) throws IOException {
+        if (processorType == ImageProcessor.YUV) {
+            throw new IllegalArgumentException("Frame stores hold BGR frames; YUV mode runs through VideoProcessor.processVideoYuv");
+        }
+        boolean filtering = pipeline != null;
+        boolean encoding = outputVideo != null;
+        AutoTuner.FrameSplit split = AutoTuner.frameSplit(store.width(), store.height(), numThreads);
+        int workers = filtering ? split.frameWorkers() : 1;
+        int window = workers * 2 + 2;
+        int frameCount = store.frameCount();
+        Stage prefetch = new Stage("prefetch", 1);
+        Stage filter = new Stage("filter", workers);
+        Stage encode = new Stage("encode", 1);
+
+        BlockingQueue<Item<PixelSurface>> loaded = new ArrayBlockingQueue<>(window + workers);
+        ReorderBuffer reorder = new ReorderBuffer();
+        reorder.finish(frameCount);
+        Semaphore inFlight = new Semaphore(window);
+        LongAdder completed = new LongAdder();
+
+        long start = System.nanoTime();
+        int stageThreads = 1 + workers + (encoding ? 1 : 0);
+        ExecutorService stages = Executors.newFixedThreadPool(stageThreads, runnable -> {
+            Thread thread = new Thread(runnable, "frame-store-stage");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (var _ = Instrumentation.beginRun("frame store " + processorType);
+             FFmpegFrameRecorder recorder = encoding ? new FFmpegFrameRecorder(outputVideo, store.width(), store.height()) : null) {
+            if (recorder != null) {
+                VideoProcessor.startRecorder(recorder, store.width(), store.height(), store.frameRate());
+            }
+
+            ExecutorCompletionService<Void> completion = new ExecutorCompletionService<>(stages);
+            completion.submit(() -> {
+                for (int seq = 0; seq < frameCount; seq++) {
+                    inFlight.acquire();
+                    long t = System.nanoTime();
+                    // Page the slot in here, so workers and the encoder do not stall on disk reads
+                    store.prefetch(seq);
+                    PixelSurface surface = store.surface(seq);
+                    prefetch.record(t);
+                    loaded.put(new Item<>(seq, surface));
+                }
+                for (int i = 0; i < workers; i++) {
+                    loaded.put(cast(END));
+                }
+                return null;
+            });
+            for (int i = 0; i < workers; i++) {
+                completion.submit(() -> {
+                    while (true) {
+                        Item<PixelSurface> item = loaded.take();
+                        if (item == END) break;
+                        long t = System.nanoTime();
+                        if (filtering) {
+                            VideoProcessor.filterFrame(item.value(), pipeline, processorType, split.frameThreads(), blockSize);
+                        }
+                        filter.record(t);
+                        if (encoding) {
+                            reorder.put(item);
+                        } else {
+                            completed.increment();
+                            inFlight.release();
+                        }
+                    }
+                    return null;
+                });
+            }
+            if (encoding) {
+                completion.submit(() -> {
+                    for (long seq = 0; ; seq++) {
+                        Item<PixelSurface> item = reorder.take(seq);
+                        if (item == null) break;
+                        long t = System.nanoTime();
+                        recorder.record(((FrameSurface) item.value()).frame());
+                        encode.record(t);
+                        completed.increment();
+                        inFlight.release();
+                    }
+                    return null;
+                });
+            }
+
+            awaitStages(completion, stageThreads, stages);
+            if (recorder != null) recorder.stop();
+        } catch (Exception e) {
+            throw new IOException("Frame store processing failed", e instanceof ExecutionException ? e.getCause() : e);
+        } finally {
+            stages.shutdownNow();
+        }
+        List<StageReport> reports = new ArrayList<>(List.of(prefetch.report()));
+        if (filtering) reports.add(filter.report());
+        if (encoding) reports.add(encode.report());
+        return new Report(completed.sum(), System.nanoTime() - start, reports);
+    }
+
+    // Waits for every stage; the first failure stops the others before their resources are closed
+    private static void awaitStages(ExecutorCompletionService<Void> completion, int count, ExecutorService stages)
+            throws InterruptedException, ExecutionException {
+        for (int i = 0; i < count; i++) {
+            try {
+                completion.take().get();
+            } catch (ExecutionException e) {
+                stages.shutdownNow();
+                stages.awaitTermination(1, TimeUnit.MINUTES);
+                throw e;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Item<T> cast(Item<?> item) {
+        return (Item<T>) item;
+    }
+}
@@ -4,10 +4,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.Arrays;
 import java.util.Comparator;
-
-import javax.imageio.ImageIO;
+import java.util.concurrent.CancellationException;
 
 import org.bytedeco.javacv.FFmpegFrameGrabber;
 import org.bytedeco.javacv.FFmpegFrameRecorder;
@@ -73,75 +71,73 @@ public class VideoProcessor {
         }
     }*/
 
+    /**
+     * Out-of-core version of {@link #processVideoInMemory} for clips that do not fit in the
+     * heap: decodes every frame into a memory-mapped {@link FrameStore}, then filters several
+     * frames at once in place while encoding the finished ones in order straight from the
+     * mapped file (see {@link VideoPipeline#process(FrameStore, String, FilterPipeline,
+     * ImageProcessor, int, int)}). The store is deleted afterwards.
+     */
+    public static VideoPipeline.Report processVideoWithFrameStore(String inputVideo, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType, int numThreads, int blockSize) throws IOException {
+        Path store = extractFrames(inputVideo);
+        try {
+            return processFrameStore(store, outputVideo, pipeline, processorType, numThreads, blockSize);
+        } finally {
+            // Outside the scope that held the mappings; see FrameStore.delete
+            FrameStore.delete(store);
+        }
+    }
+
+    // Decodes every frame, as raw BGR, into a new frame store in the temp directory
     public static Path extractFrames(String inputVideo) throws IOException {
-        Path tempDir = Files.createTempDirectory("video_frames_");
-        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(inputVideo);
-             Java2DFrameConverter converter = new Java2DFrameConverter()) {
+        Path file = Files.createTempFile("video_frames_", ".frames");
+        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(inputVideo)) {
+            grabber.setPixelFormat(org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_BGR24);
             grabber.start();
-            Frame frame;
-            int frameNumber = 0;
-            while ((frame = grabber.grabImage()) != null) {
-                BufferedImage img = converter.convert(frame);
-                if (img != null) {
-                    File outFile = tempDir.resolve(String.format("frame_%03d.png", frameNumber++)).toFile();
-                    ImageIO.write(img, "png", outFile);
+            try (FrameStore store = FrameStore.create(file, grabber.getImageWidth(), grabber.getImageHeight(), grabber.getFrameRate())) {
+                Frame frame;
+                while ((frame = grabber.grabImage()) != null) {
+                    store.append(frame);
                 }
             }
             grabber.stop();
         } catch (Exception e) {
+            FrameStore.delete(file);
             throw new IOException("JavaCV frame extraction failed", e);
         }
-        return tempDir;
+        return file;
     }
 
-    public static Path copyFramesToTempDir(File[] frames, String suffix) throws IOException {
-        Path tempDir = Files.createTempDirectory("video_frames_" + suffix + "_");
-        for (File frame : frames) {
-            Path dest = tempDir.resolve(frame.getName());
-            Files.copy(frame.toPath(), dest, StandardCopyOption.REPLACE_EXISTING);
-        }
-        return tempDir;
+    // A copy of a frame store, so the same decoded frames can be filtered more than once
+    public static Path copyFrameStore(Path store, String suffix) throws IOException {
+        Path copy = Files.createTempFile("video_frames_" + suffix + "_", ".frames");
+        Files.copy(store, copy, StandardCopyOption.REPLACE_EXISTING);
+        return copy;
     }
 
-    public static void processFramesInDir(Path dir, FilterType filter, ImageProcessor processorType, int numThreads, int blockSize) throws IOException {
-        var frames = dir.toFile().listFiles((_, name) -> name.endsWith(".png"));
-        if (frames == null) throw new IOException("No frames in directory: " + dir);
-        for (File frame : frames) {
-            BufferedImage original = ImageIO.read(frame);
-            switch (processorType) {
-                case SEQUENTIAL -> SequentialProcessing.applyFilter(filter, original);
-                case FORKJOIN -> ForkJoinProcessing.applyFilter(filter, original, numThreads, blockSize);
-                case EXECUTOR -> ExecutorServiceProcessing.applyFilter(filter, original, numThreads, blockSize);
-                default -> throw new IllegalArgumentException("Unsupported processor type: " + processorType);
-            }
-            ImageIO.write(original, "png", frame);
+    // Filters every frame in place in the mapped file, several frames at once
+    // (numThreads is the total budget, split between frames and tiles)
+    public static VideoPipeline.Report processFrameStore(Path store, FilterPipeline pipeline, ImageProcessor processorType, int numThreads, int blockSize) throws IOException {
+        return processFrameStore(store, null, pipeline, processorType, numThreads, blockSize);
+    }
+
+    // Same, encoding the filtered frames to outputVideo unless it is null
+    private static VideoPipeline.Report processFrameStore(Path store, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType, int numThreads, int blockSize) throws IOException {
+        try (FrameStore frames = FrameStore.open(store, true)) {
+            return VideoPipeline.process(frames, outputVideo, pipeline, processorType, numThreads, blockSize);
         }
     }
 
-    public static void encodeFramesToVideo(Path framesDir, String outputVideo)
+    public static VideoPipeline.Report processFrameStore(Path store, FilterType filter, ImageProcessor processorType, int numThreads, int blockSize) throws IOException {
+        return processFrameStore(store, FilterPipeline.of(filter), processorType, numThreads, blockSize);
+    }
+
+    // Encodes the frames of a store straight from the mapped slots, prefetching ahead of the encoder
+    public static void encodeFramesToVideo(Path store, String outputVideo)
             throws IOException {
-        File[] frames = framesDir.toFile().listFiles((_, name) -> name.endsWith(".png"));
-        if (frames == null || frames.length == 0) throw new IOException("No frames to encode");
-        Arrays.sort(frames);
-        BufferedImage first = ImageIO.read(frames[0]);
-        int width = first.getWidth();
-        int height = first.getHeight();
-        int frameRate = 25;
-        try (FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(outputVideo, width, height);
-             Java2DFrameConverter converter = new Java2DFrameConverter()) {
-            recorder.setVideoCodec(org.bytedeco.ffmpeg.global.avcodec.AV_CODEC_ID_H264);
-            recorder.setFormat("mp4");
-            recorder.setFrameRate(frameRate);
-            recorder.setPixelFormat(org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_YUV420P);
-            recorder.start();
-            for (File frameFile : frames) {
-                BufferedImage img = ImageIO.read(frameFile);
-                Frame frame = converter.convert(img);
-                recorder.record(frame);
-            }
-            recorder.stop();
-        } catch (Exception e) {
-            throw new IOException("JavaCV video encoding failed", e);
+        try (FrameStore frames = FrameStore.open(store, false)) {
+            if (frames.frameCount() == 0) throw new IOException("No frames to encode");
+            VideoPipeline.process(frames, outputVideo, null, ImageProcessor.SEQUENTIAL, 1, 0);
         }
     }
 
@@ -155,8 +151,8 @@ public class VideoProcessor {
     }
 
     // Overload for backward compatibility (if needed)
-    public static void processFramesInDir(Path dir, FilterType filter, ImageProcessor processorType, int numThreads) throws IOException {
-        processFramesInDir(dir, filter, processorType, numThreads, -1);
+    public static VideoPipeline.Report processFrameStore(Path store, FilterType filter, ImageProcessor processorType, int numThreads) throws IOException {
+        return processFrameStore(store, filter, processorType, numThreads, -1);
     }
 
     /**
@@ -164,40 +160,249 @@ public class VideoProcessor {
      * No intermediate PNGs are written to disk.
      */
     public static void processVideoInMemory(String inputVideo, String outputVideo, FilterType filter, ImageProcessor processorType, int numThreads, int blockSize) throws IOException {
-        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(inputVideo);
+        processVideoInMemory(inputVideo, outputVideo, FilterPipeline.of(filter), processorType, numThreads, blockSize);
+    }
+
+    // Same as above, running a whole filter chain in one pass per frame
+    public static void processVideoInMemory(String inputVideo, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType, int numThreads, int blockSize) throws IOException {
+        processVideoInMemory(inputVideo, outputVideo, pipeline, processorType, numThreads, blockSize, new ProcessingJob());
+    }
+
+    /**
+     * Same as above, reporting every filtered frame to job and stopping with a
+     * CancellationException (within one tile) once it is cancelled.
+     */
+    public static void processVideoInMemory(String inputVideo, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType, int numThreads, int blockSize, ProcessingJob job) throws IOException {
+        if (processorType == ImageProcessor.YUV) {
+            processVideoYuv(inputVideo, outputVideo, pipeline, numThreads, blockSize, job);
+            return;
+        }
+        try (var _ = Instrumentation.beginRun("video " + processorType);
+             FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(inputVideo);
              FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(outputVideo, 0, 0);
              Java2DFrameConverter converter = new Java2DFrameConverter()) {
             grabber.start();
-            int width = grabber.getImageWidth();
-            int height = grabber.getImageHeight();
-            int frameRate = (int) grabber.getFrameRate();
-            if (frameRate <= 0) frameRate = 25;
-            recorder.setVideoCodec(org.bytedeco.ffmpeg.global.avcodec.AV_CODEC_ID_H264);
-            recorder.setFormat("mp4");
-            recorder.setFrameRate(frameRate);
-            recorder.setPixelFormat(org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_YUV420P);
-            recorder.setImageWidth(width);
-            recorder.setImageHeight(height);
-            recorder.start();
+            startRecorderLike(grabber, recorder);
+            job.startFrames(grabber.getLengthInFrames());
             Frame frame;
-            while ((frame = grabber.grabImage()) != null) {
+            while (true) {
+                job.checkCancelled();
+                long t = Instrumentation.start();
+                if ((frame = grabber.grabImage()) == null) break;
+                Instrumentation.record(Instrumentation.DECODE, t);
+                long c = Instrumentation.start();
                 BufferedImage img = converter.convert(frame);
+                Instrumentation.record(Instrumentation.CONVERT, c);
                 if (img != null) {
                     // Filtering (parallel if needed)
-                    switch (processorType) {
-                        case SEQUENTIAL -> SequentialProcessing.applyFilter(filter, img);
-                        case FORKJOIN -> ForkJoinProcessing.applyFilter(filter, img, numThreads, blockSize);
-                        case EXECUTOR -> ExecutorServiceProcessing.applyFilter(filter, img, numThreads, blockSize);
-                        default -> throw new IllegalArgumentException("Unsupported processor type: " + processorType);
-                    }
+                    long f = Instrumentation.start();
+                    filterFrame(job.guard(PixelSurface.of(img)), pipeline, processorType, numThreads, blockSize);
+                    Instrumentation.record(Instrumentation.FILTER, f);
+                    long e = Instrumentation.start();
                     Frame filteredFrame = converter.convert(img);
                     recorder.record(filteredFrame);
+                    Instrumentation.record(Instrumentation.ENCODE, e);
+                    job.frameDone(img);
                 }
+                Instrumentation.record(Instrumentation.FRAME, t);
             }
             grabber.stop();
             recorder.stop();
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             throw new IOException("In-memory video processing failed", e);
         }
     }
+
+    /**
+     * {@link #processVideoInMemory} through the result cache: when this video was already
+     * filtered with the same chain, the cached output is copied instead. Returns true on a hit.
+     */
+    public static boolean processVideoCached(String inputVideo, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType, int numThreads, int blockSize) throws IOException {
+        ResultCache.Key key = ResultCache.key(Path.of(inputVideo), pipeline, processorType);
+        if (ResultCache.copyEncoded(key, Path.of(outputVideo))) {
+            return true;
+        }
+        processVideoInMemory(inputVideo, outputVideo, pipeline, processorType, numThreads, blockSize);
+        ResultCache.putEncoded(key, Path.of(outputVideo));
+        return false;
+    }
+
+    /**
+     * Staged version of {@link #processVideoInMemory}: decode, RGB conversion, filtering and
+     * encoding run concurrently, with filterWorkers frames filtered at once. Returns per-stage
+     * throughput so the bottleneck stage can be identified.
+     */
+    public static VideoPipeline.Report processVideoPipelined(String inputVideo, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType, int numThreads, int blockSize, int filterWorkers) throws IOException {
+        return VideoPipeline.process(inputVideo, outputVideo, pipeline, processorType, numThreads, blockSize, filterWorkers);
+    }
+
+    // Same as above, filtering pooled BGR frames in place instead of converting to BufferedImages
+    public static VideoPipeline.Report processVideoPipelinedZeroCopy(String inputVideo, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType, int numThreads, int blockSize, int filterWorkers) throws IOException {
+        return VideoPipeline.process(inputVideo, outputVideo, pipeline, processorType, numThreads, blockSize, filterWorkers, true);
+    }
+
+    /**
+     * Splits the input at keyframes and filters and encodes the segments in parallel, on
+     * worker threads or (with processes) local worker JVMs, then joins them without
+     * re-encoding; see {@link SegmentedVideo}. Unlike the other modes this also runs several
+     * H.264 encoders at once.
+     */
+    public static SegmentedVideo.Report processVideoSegmented(String inputVideo, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType,
+                                                              int numThreads, int blockSize, int workers, boolean processes) throws IOException {
+        return SegmentedVideo.process(inputVideo, outputVideo, pipeline, processorType, numThreads, blockSize, workers, processes);
+    }
+
+    /**
+     * Filters the decoded YUV420P planes directly (see {@link YuvProcessing}) and hands them to
+     * the encoder in the same format, skipping both colour-space conversions per frame.
+     */
+    public static void processVideoYuv(String inputVideo, String outputVideo, FilterPipeline pipeline, int numThreads, int blockSize) throws IOException {
+        processVideoYuv(inputVideo, outputVideo, pipeline, numThreads, blockSize, new ProcessingJob());
+    }
+
+    // Same as above; cancellation is checked between frames, as the planes are not tracked per tile
+    public static void processVideoYuv(String inputVideo, String outputVideo, FilterPipeline pipeline, int numThreads, int blockSize, ProcessingJob job) throws IOException {
+        try (var _ = Instrumentation.beginRun("video YUV");
+             FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(inputVideo);
+             FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(outputVideo, 0, 0)) {
+            grabber.setPixelFormat(org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_YUV420P);
+            grabber.start();
+            startRecorderLike(grabber, recorder);
+            job.startFrames(grabber.getLengthInFrames());
+            Frame frame;
+            while (true) {
+                job.checkCancelled();
+                long t = Instrumentation.start();
+                if ((frame = grabber.grabImage()) == null) break;
+                Instrumentation.record(Instrumentation.DECODE, t);
+                long f = Instrumentation.start();
+                YuvProcessing.applyFilter(pipeline, frame, numThreads, blockSize);
+                Instrumentation.record(Instrumentation.FILTER, f);
+                long e = Instrumentation.start();
+                recorder.record(frame, org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_YUV420P);
+                Instrumentation.record(Instrumentation.ENCODE, e);
+                job.frameDone(null);
+                Instrumentation.record(Instrumentation.FRAME, t);
+            }
+            grabber.stop();
+            recorder.stop();
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("YUV video processing failed", e);
+        }
+    }
+
+    /**
+     * Zero-copy version of {@link #processVideoInMemory}: frames are decoded as packed BGR,
+     * filtered in the decoder's own buffer and handed straight back to the encoder, so no
+     * BufferedImage is created and no pixels are copied per frame.
+     */
+    public static void processVideoZeroCopy(String inputVideo, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType, int numThreads, int blockSize) throws IOException {
+        try (var _ = Instrumentation.beginRun("zero-copy video " + processorType);
+             FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(inputVideo);
+             FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(outputVideo, 0, 0)) {
+            grabber.setPixelFormat(org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_BGR24);
+            grabber.start();
+            startRecorderLike(grabber, recorder);
+            Frame frame;
+            while (true) {
+                long t = Instrumentation.start();
+                if ((frame = grabber.grabImage()) == null) break;
+                Instrumentation.record(Instrumentation.DECODE, t);
+                // The frame is encoded before the next grab overwrites its buffer
+                long f = Instrumentation.start();
+                filterFrame(new FrameSurface(frame), pipeline, processorType, numThreads, blockSize);
+                Instrumentation.record(Instrumentation.FILTER, f);
+                long e = Instrumentation.start();
+                recorder.record(frame);
+                Instrumentation.record(Instrumentation.ENCODE, e);
+                Instrumentation.record(Instrumentation.FRAME, t);
+            }
+            grabber.stop();
+            recorder.stop();
+        } catch (Exception e) {
+            throw new IOException("Zero-copy video processing failed", e);
+        }
+    }
+
+    /**
+     * {@link #processVideoZeroCopy} for mostly static footage: only tiles whose input changed
+     * since the previous frame (beyond tolerance per channel, 0 for exact output) are filtered,
+     * the rest reuse the previous frame's output (see {@link IncrementalFilter}). Returns how
+     * many tiles were reused over the clip.
+     */
+    public static IncrementalFilter.Stats processVideoIncremental(String inputVideo, String outputVideo, FilterPipeline pipeline, ImageProcessor processorType, int numThreads, int tolerance) throws IOException {
+        IncrementalFilter incremental = new IncrementalFilter(pipeline, processorType, numThreads, tolerance);
+        try (var _ = Instrumentation.beginRun("incremental video " + processorType);
+             FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(inputVideo);
+             FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(outputVideo, 0, 0)) {
+            grabber.setPixelFormat(org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_BGR24);
+            grabber.start();
+            startRecorderLike(grabber, recorder);
+            Frame frame;
+            while (true) {
+                long t = Instrumentation.start();
+                if ((frame = grabber.grabImage()) == null) break;
+                Instrumentation.record(Instrumentation.DECODE, t);
+                long f = Instrumentation.start();
+                incremental.filter(new FrameSurface(frame));
+                Instrumentation.record(Instrumentation.FILTER, f);
+                long e = Instrumentation.start();
+                recorder.record(frame);
+                Instrumentation.record(Instrumentation.ENCODE, e);
+                Instrumentation.record(Instrumentation.FRAME, t);
+            }
+            grabber.stop();
+            recorder.stop();
+        } catch (Exception e) {
+            throw new IOException("Incremental video processing failed", e);
+        }
+        return incremental.stats();
+    }
+
+    // Apply a pipeline to one decoded frame with the chosen backend
+    static void filterFrame(BufferedImage img, FilterPipeline pipeline, ImageProcessor processorType, int numThreads, int blockSize) {
+        filterFrame(PixelSurface.of(img), pipeline, processorType, numThreads, blockSize);
+    }
+
+    static void filterFrame(PixelSurface img, FilterPipeline pipeline, ImageProcessor processorType, int numThreads, int blockSize) {
+        switch (processorType) {
+            case SEQUENTIAL -> SequentialProcessing.applyFilter(pipeline, img);
+            case FORKJOIN -> ForkJoinProcessing.applyFilter(pipeline, img, numThreads, blockSize);
+            case EXECUTOR -> ExecutorServiceProcessing.applyFilter(pipeline, img, numThreads, blockSize);
+            case SIMD -> SimdProcessing.applyFilter(pipeline, img, numThreads, blockSize);
+            case VIRTUAL -> VirtualThreadProcessing.applyFilter(pipeline, img, numThreads, blockSize);
+            case YUV -> throw new IllegalArgumentException("YUV mode filters decoded video frames, not RGB images");
+            default -> throw new IllegalArgumentException("Unsupported processor type: " + processorType);
+        }
+    }
+
+    // H.264/mp4 output with the same size and frame rate as the (started) input
+    static void startRecorderLike(FFmpegFrameGrabber grabber, FFmpegFrameRecorder recorder) throws FFmpegFrameRecorder.Exception {
+        startRecorder(recorder, grabber.getImageWidth(), grabber.getImageHeight(), grabber.getFrameRate());
+    }
+
+    static void startRecorder(FFmpegFrameRecorder recorder, int width, int height, double fps) throws FFmpegFrameRecorder.Exception {
+        startRecorder(recorder, width, height, fps, "mp4");
+    }
+
+    // Same H.264 settings in another container, e.g. "mpegts" for segments that are joined later
+    static void startRecorder(FFmpegFrameRecorder recorder, int width, int height, double fps, String format) throws FFmpegFrameRecorder.Exception {
+        recorder.setVideoCodec(org.bytedeco.ffmpeg.global.avcodec.AV_CODEC_ID_H264);
+        recorder.setFormat(format);
+        recorder.setFrameRate(recordedFrameRate(fps));
+        recorder.setPixelFormat(org.bytedeco.ffmpeg.global.avutil.AV_PIX_FMT_YUV420P);
+        recorder.setImageWidth(width);
+        recorder.setImageHeight(height);
+        recorder.start();
+    }
+
+    // Output is written at whole frames per second, 25 when the input does not say
+    static int recordedFrameRate(double fps) {
+        int frameRate = (int) fps;
+        return frameRate <= 0 ? 25 : frameRate;
+    }
 }
@@ -0,0 +1,78 @@
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tile filtering for callers on virtual threads, which are themselves mostly waiting on I/O
+ * (batch decode/encode, FFmpeg). The caller blocks cheaply while its runs of tiles are filtered
+ * on the shared {@link ProcessingRuntime#cpuPool()}, so however many jobs filter at once, no
+ * more threads compute than there are cores. A call asking for n threads also has at most n of
+ * its runs filtering at any time, so a pinned thread count means the same as in other backends.
+ */
+public class VirtualThreadProcessing {
+
+    public static void applyFilter(FilterType filter, BufferedImage image, int numThreads, int blockSize) {
+        applyFilter(FilterPipeline.of(filter), image, numThreads, blockSize);
+    }
+
+    public static void applyFilter(FilterPipeline pipeline, BufferedImage image, int numThreads, int blockSize) {
+        applyFilter(pipeline, PixelSurface.of(image), numThreads, blockSize);
+    }
+
+    // numThreads or blockSize <= 0 lets the autotuner choose
+    public static void applyFilter(FilterPipeline pipeline, PixelSurface image, int numThreads, int blockSize) {
+        applyFilter(pipeline, image, numThreads, blockSize, TilingStrategy.defaultFor(ImageProcessor.VIRTUAL));
+    }
+
+    public static void applyFilter(FilterPipeline pipeline, BufferedImage image, int numThreads, int blockSize, TilingStrategy tiling) {
+        applyFilter(pipeline, PixelSurface.of(image), numThreads, blockSize, tiling);
+    }
+
+    public static void applyFilter(FilterPipeline pipeline, PixelSurface image, int numThreads, int blockSize, TilingStrategy tiling) {
+        AutoTuner.Profile profile = AutoTuner.resolve(ImageProcessor.VIRTUAL, pipeline, image.width(), image.height(), numThreads, blockSize);
+        List<TilingStrategy.Tile> tiles = tiling.tiles(image.width(), image.height(), profile.blockSize());
+        if (tiles.isEmpty()) return;
+        // Stencil blocks read their halo from an unmodified copy, never from a neighbour's output
+        int[] source = pipeline.snapshotIfNeeded(image);
+        try {
+            // The calling (virtual) thread only waits; tiles are filtered on the shared CPU pool,
+            // whose warm workers keep their tile scratch from one call to the next
+            ForkJoinPool cpu = ProcessingRuntime.cpuPool();
+            // Contiguous runs of tiles, about four per thread as in the executor backend, or one
+            // run when a single thread was asked for
+            int runLength = profile.threads() == 1 ? tiles.size()
+                    : Math.max(1, (tiles.size() + profile.threads() * 4 - 1) / (profile.threads() * 4));
+            List<List<TilingStrategy.Tile>> runs = new ArrayList<>();
+            for (int start = 0; start < tiles.size(); start += runLength) {
+                runs.add(tiles.subList(start, Math.min(tiles.size(), start + runLength)));
+            }
+            // One pool task per thread asked for, each taking the next run until none is left
+            AtomicInteger next = new AtomicInteger();
+            List<Future<?>> workers = new ArrayList<>();
+            try {
+                for (int w = 0; w < Math.min(profile.threads(), runs.size()); w++) {
+                    long queued = Instrumentation.start();
+                    workers.add(cpu.submit(() -> {
+                        Instrumentation.record(Instrumentation.QUEUE_WAIT, queued);
+                        for (int i = next.getAndIncrement(); i < runs.size(); i = next.getAndIncrement()) {
+                            applyTiles(pipeline, source, image, runs.get(i));
+                        }
+                    }));
+                }
+            } finally {
+                ProcessingRuntime.awaitAll(workers);
+            }
+        } finally {
+            FrameBufferPool.release(source);
+        }
+    }
+
+    private static void applyTiles(FilterPipeline pipeline, int[] source, PixelSurface image, List<TilingStrategy.Tile> tiles) {
+        for (TilingStrategy.Tile tile : tiles) {
+            pipeline.apply(Filters.SCALAR, source, image, tile.x(), tile.y(), tile.width(), tile.height());
+        }
+    }
+}
@@ -0,0 +1,263 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Filters decoded YUV420P (I420) frames directly in their planes, so video never makes the
+ * YUV -> RGB -> YUV round trip. Each filter is expressed in YUV space:
+ *
+ * GRAYSCALE keeps Y and sets chroma to neutral; EDGE_DETECTION runs Sobel on Y (leaving the
+ * one-pixel border as it was) and neutralises chroma; GAUSSIAN_BLUR blurs every plane at its
+ * own resolution; INVERT inverts all three planes; SEPIA scales Y and derives the sepia tint
+ * from the local luma. Results are close to, but not bit-identical with, the RGB filters.
+ */
+public class YuvProcessing {
+
+    private static final int NEUTRAL = 128;
+
+    // Sepia of a gray level k is (1.351k, 1.203k, 0.937k) in RGB, i.e. 1.217k luma and a
+    // chroma offset proportional to k
+    private static final double SEPIA_LUMA = 1.217;
+    private static final double SEPIA_U = -0.158;
+    private static final double SEPIA_V = 0.0955;
+
+    private static final byte[] INVERT_LUT = new byte[256];
+    private static final byte[] SEPIA_LUT = new byte[256];
+
+    static {
+        for (int v = 0; v < 256; v++) {
+            INVERT_LUT[v] = (byte) (255 - v);
+            SEPIA_LUT[v] = (byte) Math.min(255, (int) (SEPIA_LUMA * v));
+        }
+    }
+
+    // One image plane inside the frame buffer
+    private record Plane(ByteBuffer buffer, int offset, int width, int height, int stride) {
+        int index(int x, int y) {
+            return offset + y * stride + x;
+        }
+    }
+
+    private interface RowBand {
+        void run(int fromRow, int toRow);
+    }
+
+    // Per-thread row buffers: two source rows and one output row
+    private static final ThreadLocal<byte[][]> ROWS = ThreadLocal.withInitial(() -> new byte[3][0]);
+    // Unmodified plane copy for stencils, owned by the calling thread while its bands run
+    private static final ThreadLocal<byte[][]> SNAPSHOT = ThreadLocal.withInitial(() -> new byte[1][0]);
+
+    public static void applyFilter(FilterType filter, Frame frame, int numThreads, int blockSize) {
+        applyFilter(FilterPipeline.of(filter), frame, numThreads, blockSize);
+    }
+
+    // Rows are split into bands of blockSize rows and filtered on the shared executor
+    // (numThreads or blockSize <= 0 picks the configured threads and 64-row bands)
+    public static void applyFilter(FilterPipeline pipeline, Frame frame, int numThreads, int blockSize) {
+        // Plane kernels exist only for the built-in filters that declare the layout; checked
+        // up front, so a frame is never left half filtered
+        for (PixelFilter step : pipeline.steps()) {
+            if (!(step instanceof BuiltinFilter) || !step.footprint().layouts().contains(PixelFilter.Layout.YUV420P)) {
+                throw new IllegalArgumentException("Unsupported filter in YUV mode: " + step.spec());
+            }
+        }
+        Plane[] planes = planes(frame);
+        // Not tuned: row bands are cheap to schedule, so a fixed height works everywhere
+        int threads = numThreads > 0 ? numThreads : ProcessingRuntime.settings().threads();
+        int band = blockSize > 0 ? blockSize : 64;
+        for (PixelFilter step : pipeline.steps()) {
+            FilterType filter = ((BuiltinFilter) step).type();
+            switch (filter) {
+                case GRAYSCALE -> {
+                    fill(planes[1], NEUTRAL);
+                    fill(planes[2], NEUTRAL);
+                }
+                case INVERT -> {
+                    for (Plane plane : planes) {
+                        map(plane, INVERT_LUT, threads, band);
+                    }
+                }
+                case SEPIA -> {
+                    // Chroma is derived from the original luma, so it goes first
+                    sepiaChroma(planes[0], planes[1], SEPIA_U, threads, band);
+                    sepiaChroma(planes[0], planes[2], SEPIA_V, threads, band);
+                    map(planes[0], SEPIA_LUT, threads, band);
+                }
+                case GAUSSIAN_BLUR -> {
+                    for (Plane plane : planes) {
+                        blur(plane, threads, band);
+                    }
+                }
+                case EDGE_DETECTION -> {
+                    sobel(planes[0], threads, band);
+                    fill(planes[1], NEUTRAL);
+                    fill(planes[2], NEUTRAL);
+                }
+                default -> throw new IllegalArgumentException("Unsupported filter in YUV mode: " + filter);
+            }
+        }
+    }
+
+    // Y, U and V planes of a packed I420 frame as produced by the grabber with AV_PIX_FMT_YUV420P
+    private static Plane[] planes(Frame frame) {
+        if (frame.imageDepth != Frame.DEPTH_UBYTE || !(frame.image[0] instanceof ByteBuffer buffer)) {
+            throw new IllegalArgumentException("Unsupported frame layout: depth " + frame.imageDepth + " (expected 8-bit YUV420P)");
+        }
+        int width = frame.imageWidth;
+        int height = frame.imageHeight;
+        int chromaW = (width + 1) / 2;
+        int chromaH = (height + 1) / 2;
+        int lumaSize = frame.imageStride * height;
+        if (buffer.capacity() < lumaSize + 2 * chromaW * chromaH) {
+            throw new IllegalArgumentException("Frame buffer too small for " + width + "x" + height + " YUV420P");
+        }
+        return new Plane[] {
+                new Plane(buffer, 0, width, height, frame.imageStride),
+                new Plane(buffer, lumaSize, chromaW, chromaH, chromaW),
+                new Plane(buffer, lumaSize + chromaW * chromaH, chromaW, chromaH, chromaW)
+        };
+    }
+
+    private static void fill(Plane plane, int value) {
+        byte[] row = row(0, plane.width());
+        Arrays.fill(row, 0, plane.width(), (byte) value);
+        for (int y = 0; y < plane.height(); y++) {
+            plane.buffer().put(plane.index(0, y), row, 0, plane.width());
+        }
+    }
+
+    private static void map(Plane plane, byte[] lut, int numThreads, int band) {
+        forEachBand(plane.height(), numThreads, band, (from, to) -> {
+            byte[] row = row(0, plane.width());
+            for (int y = from; y < to; y++) {
+                plane.buffer().get(plane.index(0, y), row, 0, plane.width());
+                for (int x = 0; x < plane.width(); x++) {
+                    row[x] = lut[row[x] & 0xFF];
+                }
+                plane.buffer().put(plane.index(0, y), row, 0, plane.width());
+            }
+        });
+    }
+
+    // chroma = 128 + factor * (average luma of the 2x2 block it covers)
+    private static void sepiaChroma(Plane luma, Plane chroma, double factor, int numThreads, int band) {
+        forEachBand(chroma.height(), numThreads, band, (from, to) -> {
+            byte[] top = row(0, luma.width());
+            byte[] bottom = row(1, luma.width());
+            byte[] out = row(2, chroma.width());
+            for (int cy = from; cy < to; cy++) {
+                int y0 = cy * 2;
+                int y1 = Math.min(y0 + 1, luma.height() - 1);
+                luma.buffer().get(luma.index(0, y0), top, 0, luma.width());
+                luma.buffer().get(luma.index(0, y1), bottom, 0, luma.width());
+                for (int cx = 0; cx < chroma.width(); cx++) {
+                    int x0 = cx * 2;
+                    int x1 = Math.min(x0 + 1, luma.width() - 1);
+                    int sum = (top[x0] & 0xFF) + (top[x1] & 0xFF) + (bottom[x0] & 0xFF) + (bottom[x1] & 0xFF);
+                    out[cx] = (byte) Filters.clamp((int) (NEUTRAL + factor * sum / 4), 0, 255);
+                }
+                chroma.buffer().put(chroma.index(0, cy), out, 0, chroma.width());
+            }
+        });
+    }
+
+    // Same 3x3 kernel as Filters.applyGaussianBlur, clamped at the plane edges
+    private static void blur(Plane plane, int numThreads, int band) {
+        byte[] source = snapshot(plane);
+        int w = plane.width();
+        int h = plane.height();
+        forEachBand(h, numThreads, band, (from, to) -> {
+            byte[] out = row(2, w);
+            for (int y = from; y < to; y++) {
+                int up = Math.max(y - 1, 0) * w;
+                int mid = y * w;
+                int down = Math.min(y + 1, h - 1) * w;
+                for (int x = 0; x < w; x++) {
+                    int l = Math.max(x - 1, 0);
+                    int r = Math.min(x + 1, w - 1);
+                    int sum = (source[up + l] & 0xFF) + 2 * (source[up + x] & 0xFF) + (source[up + r] & 0xFF)
+                            + 2 * (source[mid + l] & 0xFF) + 4 * (source[mid + x] & 0xFF) + 2 * (source[mid + r] & 0xFF)
+                            + (source[down + l] & 0xFF) + 2 * (source[down + x] & 0xFF) + (source[down + r] & 0xFF);
+                    out[x] = (byte) (sum >> 4);
+                }
+                plane.buffer().put(plane.index(0, y), out, 0, w);
+            }
+        });
+    }
+
+    // Sobel magnitude on the interior; the one-pixel border keeps its luma
+    private static void sobel(Plane plane, int numThreads, int band) {
+        int w = plane.width();
+        int h = plane.height();
+        if (w < 3 || h < 3) return;
+        byte[] source = snapshot(plane);
+        forEachBand(h, numThreads, band, (from, to) -> {
+            byte[] out = row(2, w);
+            for (int y = Math.max(from, 1); y < Math.min(to, h - 1); y++) {
+                int up = (y - 1) * w;
+                int mid = y * w;
+                int down = (y + 1) * w;
+                out[0] = source[mid];
+                out[w - 1] = source[mid + w - 1];
+                for (int x = 1; x < w - 1; x++) {
+                    int ul = source[up + x - 1] & 0xFF, uc = source[up + x] & 0xFF, ur = source[up + x + 1] & 0xFF;
+                    int ml = source[mid + x - 1] & 0xFF, mr = source[mid + x + 1] & 0xFF;
+                    int dl = source[down + x - 1] & 0xFF, dc = source[down + x] & 0xFF, dr = source[down + x + 1] & 0xFF;
+                    int gx = ur - ul + 2 * (mr - ml) + dr - dl;
+                    int gy = dl - ul + 2 * (dc - uc) + dr - ur;
+                    out[x] = (byte) Filters.clamp((int) Math.sqrt(gx * gx + gy * gy), 0, 255);
+                }
+                plane.buffer().put(plane.index(0, y), out, 0, w);
+            }
+        });
+    }
+
+    // Contiguous copy of a plane, reused by the calling thread from frame to frame
+    private static byte[] snapshot(Plane plane) {
+        int w = plane.width();
+        byte[][] holder = SNAPSHOT.get();
+        if (holder[0].length < w * plane.height()) {
+            holder[0] = new byte[w * plane.height()];
+        }
+        byte[] copy = holder[0];
+        for (int y = 0; y < plane.height(); y++) {
+            plane.buffer().get(plane.index(0, y), copy, y * w, w);
+        }
+        return copy;
+    }
+
+    private static void forEachBand(int height, int numThreads, int band, RowBand task) {
+        if (numThreads <= 1 || height <= band) {
+            task.run(0, height);
+            return;
+        }
+        ExecutorService executor = ProcessingRuntime.executor(numThreads);
+        List<Future<?>> bands = new ArrayList<>();
+        try {
+            for (int y = 0; y < height; y += band) {
+                final int from = y;
+                final int to = Math.min(height, y + band);
+                long queued = Instrumentation.start();
+                bands.add(executor.submit(() -> {
+                    Instrumentation.record(Instrumentation.QUEUE_WAIT, queued);
+                    task.run(from, to);
+                }));
+            }
+        } finally {
+            ProcessingRuntime.awaitAll(bands);
+        }
+    }
+
+    private static byte[] row(int slot, int size) {
+        byte[][] rows = ROWS.get();
+        if (rows[slot].length < size) {
+            rows[slot] = new byte[size];
+        }
+        return rows[slot];
+    }
+}
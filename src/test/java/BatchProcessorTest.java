@@ -0,0 +1,90 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Batch runs over images that decode to palette or grey rasters, whose filtered colours those
+ * rasters cannot hold: the output must be what filtering the decoded pixels as RGB gives. Also
+ * incremental video mode on a short generated clip, which needs the bundled FFmpeg.
+ */
+public class BatchProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void paletteAndGreyInputsAreFilteredInFullColour() throws IOException {
+        Path input = folder.newFolder("in").toPath();
+        Path output = folder.getRoot().toPath().resolve("out");
+        Random random = new Random(12);
+        ImageIO.write(TestFixtures.noise(BufferedImage.TYPE_BYTE_INDEXED, 61, 37, random), "png", input.resolve("palette.png").toFile());
+        ImageIO.write(TestFixtures.noise(BufferedImage.TYPE_BYTE_GRAY, 61, 37, random), "png", input.resolve("grey.png").toFile());
+
+        String pipeline = "SEPIA>GAUSSIAN_BLUR";
+        assertEquals(0, BatchProcessor.run("--input", input.toString(), "--output", output.toString(), "--pipeline", pipeline,
+                "--processor", "FORKJOIN", "--threads", "1", "--block", "64", "--jobs", "2", "--no-cache"));
+
+        for (String name : new String[] {"palette.png", "grey.png"}) {
+            BufferedImage decoded = ImageIO.read(input.resolve(name).toFile());
+            BufferedImage expected = new BufferedImage(decoded.getWidth(), decoded.getHeight(), BufferedImage.TYPE_INT_RGB);
+            expected.setRGB(0, 0, decoded.getWidth(), decoded.getHeight(), TestFixtures.pixels(decoded), 0, decoded.getWidth());
+            SequentialProcessing.applyFilter(FilterPipeline.parse(pipeline), expected);
+
+            assertArrayEquals(name, TestFixtures.pixels(expected), TestFixtures.pixels(ImageIO.read(output.resolve(name).toFile())));
+        }
+        assertEquals(2, output.toFile().list().length);
+    }
+
+    @Test
+    public void incrementalVideosReuseUnchangedTiles() throws Exception {
+        Path input = folder.newFolder("clips").toPath();
+        Path output = folder.getRoot().toPath().resolve("filtered");
+        Path clip = input.resolve("static.mp4");
+        try (FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(clip.toString(), 0, 0)) {
+            VideoProcessor.startRecorder(recorder, 320, 256, 25);
+            Frame frame = TestFixtures.blankBgrFrame(320, 256);
+            ByteBuffer bytes = (ByteBuffer) frame.image[0];
+            for (int i = 0; i < 12; i++) {
+                // A still background with a small square moving across it
+                for (int y = 0; y < 256; y++) {
+                    for (int x = 0; x < 320; x++) {
+                        boolean square = x >= 20 + i * 8 && x < 52 + i * 8 && y >= 40 && y < 72;
+                        int offset = (y * 320 + x) * 3;
+                        bytes.put(offset, (byte) (square ? 250 : x));
+                        bytes.put(offset + 1, (byte) (square ? 250 : y));
+                        bytes.put(offset + 2, (byte) (square ? 20 : 128));
+                    }
+                }
+                recorder.record(frame);
+            }
+            recorder.stop();
+        }
+
+        IncrementalFilter.Stats stats = VideoProcessor.processVideoIncremental(clip.toString(),
+                folder.getRoot().toPath().resolve("direct.mp4").toString(), FilterPipeline.parse("SEPIA"), ImageProcessor.FORKJOIN, 2, 8);
+        assertEquals(12, stats.frames());
+        assertTrue(stats.toString(), stats.reuseRatio() > 0.5);
+
+        assertEquals(0, BatchProcessor.run("--input", input.toString(), "--output", output.toString(), "--pipeline", "SEPIA",
+                "--threads", "2", "--block", "64", "--incremental", "8", "--no-cache"));
+        assertTrue(Files.size(output.resolve("static.mp4")) > 0);
+        assertThrows(IllegalArgumentException.class, () -> BatchProcessor.run("--input", input.toString(), "--output", output.toString(),
+                "--pipeline", "SEPIA", "--processor", "YUV", "--incremental", "0"));
+    }
+}
@@ -0,0 +1,56 @@
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Blurring tile by tile, each tile reading its halo clipped to the image, against one call over
+ * the whole image: the passes clamp to the rectangle they read, so no grid may change a pixel.
+ */
+public class BlurTest {
+
+    private static final int WIDTH = 131;
+    private static final int HEIGHT = 97;
+
+    @Test
+    public void anyTileGridMatchesTheWholeImage() {
+        int[] image = new int[WIDTH * HEIGHT];
+        Random random = new Random(23);
+        for (int i = 0; i < image.length; i++) image[i] = random.nextInt();
+
+        for (int radius : new int[] {2, 3, 4, 8}) {
+            int[] whole = new int[image.length];
+            Blur.apply(radius, image, 0, 0, WIDTH, HEIGHT, whole, 0, 0, WIDTH, HEIGHT);
+            for (int[] grid : new int[][] {{1, 1}, {7, 5}, {16, 16}, {33, 64}, {WIDTH, 10}, {200, 200}}) {
+                assertArrayEquals("radius " + radius + ", " + grid[0] + "x" + grid[1] + " tiles",
+                        whole, tiled(radius, image, grid[0], grid[1]));
+            }
+        }
+    }
+
+    private static int[] tiled(int radius, int[] image, int tileW, int tileH) {
+        int halo = Blur.halo(radius);
+        int[] out = new int[image.length];
+        for (int y = 0; y < HEIGHT; y += tileH) {
+            for (int x = 0; x < WIDTH; x += tileW) {
+                int w = Math.min(tileW, WIDTH - x);
+                int h = Math.min(tileH, HEIGHT - y);
+                int sx = Math.max(0, x - halo);
+                int sy = Math.max(0, y - halo);
+                int sw = Math.min(WIDTH, x + w + halo) - sx;
+                int sh = Math.min(HEIGHT, y + h + halo) - sy;
+                int[] src = new int[sw * sh];
+                for (int row = 0; row < sh; row++) {
+                    System.arraycopy(image, (sy + row) * WIDTH + sx, src, row * sw, sw);
+                }
+                int[] dst = new int[w * h];
+                Blur.apply(radius, src, sx, sy, sw, sh, dst, x, y, w, h);
+                for (int row = 0; row < h; row++) {
+                    System.arraycopy(dst, row * w, out, (y + row) * WIDTH + x, w);
+                }
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,64 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Filters from a provider on the class path ({@link TestFilters}) through pipeline specs, the
+ * footprint checks, and the tiled backends, which only know the plugin by its footprint.
+ */
+public class FilterProviderTest {
+
+    private static final int WIDTH = 150;
+    private static final int HEIGHT = 101;
+
+    @Test
+    public void parseResolvesProviderFilters() {
+        assertTrue(FilterRegistry.names().containsAll(List.of("XOR", "SHIFT", "BRIGHTNESS", "GRAYSCALE")));
+
+        FilterPipeline pipeline = FilterPipeline.parse("xor(85) > SHIFT( 3 ), GRAYSCALE>SHIFT(2)");
+        assertEquals("XOR(85) > SHIFT(3) > GRAYSCALE > SHIFT(2)", pipeline.toString());
+        assertEquals(5, pipeline.haloRadius());
+        assertEquals(2.5, pipeline.cost(), 1e-9);
+        assertFalse(pipeline.supports(PixelFilter.Layout.YUV420P));
+        assertEquals("SHIFT(1)", FilterPipeline.parse("SHIFT").steps().get(0).spec());
+    }
+
+    @Test
+    public void footprintsThatDoNotFitTheFilterAreRejected() {
+        for (String spec : new String[] {"BAD_HALO(2)", "STENCIL_IN_PLACE(1)", "FREE", "YUV_ONLY", "SHIFT(0)", "GRAYSCALE>SHIFT(-1)"}) {
+            assertThrows(spec, IllegalArgumentException.class, () -> FilterPipeline.parse(spec));
+        }
+        assertThrows(IllegalArgumentException.class, () -> FilterPipeline.parse("NO_SUCH_FILTER"));
+    }
+
+    @Test
+    public void tiledBackendsMatchSequential() {
+        FilterPipeline pipeline = FilterPipeline.parse("XOR(85)>SHIFT(3)>GRAYSCALE>SHIFT(2)>GAUSSIAN_BLUR");
+        BufferedImage image = TestFixtures.noise(BufferedImage.TYPE_INT_RGB, WIDTH, HEIGHT, new Random(24));
+        BufferedImage expected = TestFixtures.copy(image);
+        SequentialProcessing.applyFilter(pipeline, expected);
+
+        for (int blockSize : new int[] {37, 64}) {
+            BufferedImage forkJoin = TestFixtures.copy(image);
+            ForkJoinProcessing.applyFilter(pipeline, forkJoin, 2, blockSize);
+            assertArrayEquals("FORKJOIN " + blockSize, TestFixtures.pixels(expected), TestFixtures.pixels(forkJoin));
+            BufferedImage executor = TestFixtures.copy(image);
+            ExecutorServiceProcessing.applyFilter(pipeline, executor, 2, blockSize);
+            assertArrayEquals("EXECUTOR " + blockSize, TestFixtures.pixels(expected), TestFixtures.pixels(executor));
+            BufferedImage simd = TestFixtures.copy(image);
+            SimdProcessing.applyFilter(pipeline, simd, 2, blockSize);
+            assertArrayEquals("SIMD " + blockSize, TestFixtures.pixels(expected), TestFixtures.pixels(simd));
+            BufferedImage virtual = TestFixtures.copy(image);
+            VirtualThreadProcessing.applyFilter(pipeline, virtual, 2, blockSize);
+            assertArrayEquals("VIRTUAL " + blockSize, TestFixtures.pixels(expected), TestFixtures.pixels(virtual));
+        }
+    }
+}
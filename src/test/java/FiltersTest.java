@@ -0,0 +1,193 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+/**
+ * The packed kernels and the raster fast paths against the original per-pixel filters, which
+ * went through getRGB, java.awt.Color and setRGB for every pixel. Every image layout RasterAccess
+ * distinguishes is covered, plus a sub-image whose raster does not start at its buffer's origin.
+ * Tiled runs read their halos from a snapshot, so they must give the whole-image result too.
+ */
+public class FiltersTest {
+
+    private static final int WIDTH = 67;
+    private static final int HEIGHT = 41;
+
+    private static final float[][] GAUSS = {{1f / 16, 2f / 16, 1f / 16}, {2f / 16, 4f / 16, 2f / 16}, {1f / 16, 2f / 16, 1f / 16}};
+    private static final int[][] SOBEL_X = {{-1, 0, 1}, {-2, 0, 2}, {-1, 0, 1}};
+    private static final int[][] SOBEL_Y = {{-1, -2, -1}, {0, 0, 0}, {1, 2, 1}};
+
+    // A fresh image of every layout on each get(); all are lossless for 8-bit RGB, so the
+    // reference sees the same pixels
+    private static Map<String, Supplier<BufferedImage>> images() {
+        Map<String, Supplier<BufferedImage>> images = new LinkedHashMap<>();
+        images.put("INT_RGB", () -> image(BufferedImage.TYPE_INT_RGB, 0, 0));
+        images.put("INT_ARGB", () -> image(BufferedImage.TYPE_INT_ARGB, 0, 0));
+        images.put("3BYTE_BGR", () -> image(BufferedImage.TYPE_3BYTE_BGR, 0, 0));
+        images.put("INT_BGR (generic)", () -> image(BufferedImage.TYPE_INT_BGR, 0, 0));
+        images.put("4BYTE_ABGR (generic)", () -> image(BufferedImage.TYPE_4BYTE_ABGR, 0, 0));
+        images.put("INT_RGB sub-image", () -> image(BufferedImage.TYPE_INT_RGB, 5, 3));
+        images.put("3BYTE_BGR sub-image", () -> image(BufferedImage.TYPE_3BYTE_BGR, 4, 2));
+        return images;
+    }
+
+    // WIDTH x HEIGHT random pixels, the same for every call; cut from a larger image at (x, y) unless both are 0
+    private static BufferedImage image(int type, int x, int y) {
+        if (x == 0 && y == 0) return TestFixtures.noise(type, WIDTH, HEIGHT, new Random(1 + type));
+        return TestFixtures.noise(type, WIDTH + 9, HEIGHT + 5, new Random(1 + type)).getSubimage(x, y, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void layoutsAreRecognised() {
+        Map<String, Supplier<BufferedImage>> images = images();
+        assertEquals(RasterAccess.Layout.INT_RGB, RasterAccess.layoutOf(images.get("INT_RGB").get()));
+        assertEquals(RasterAccess.Layout.INT_ARGB, RasterAccess.layoutOf(images.get("INT_ARGB").get()));
+        assertEquals(RasterAccess.Layout.BYTE_BGR, RasterAccess.layoutOf(images.get("3BYTE_BGR").get()));
+        assertEquals(RasterAccess.Layout.GENERIC, RasterAccess.layoutOf(images.get("INT_BGR (generic)").get()));
+        assertEquals(RasterAccess.Layout.GENERIC, RasterAccess.layoutOf(images.get("4BYTE_ABGR (generic)").get()));
+        assertEquals(RasterAccess.Layout.INT_RGB, RasterAccess.layoutOf(images.get("INT_RGB sub-image").get()));
+    }
+
+    @Test
+    public void rasterAccessMatchesGetAndSetRgb() {
+        Random random = new Random(3);
+        for (Map.Entry<String, Supplier<BufferedImage>> entry : images().entrySet()) {
+            BufferedImage image = entry.getValue().get();
+            // An unaligned region into an array with its own offset and scan
+            int x = 3, y = 2, w = WIDTH - 10, h = HEIGHT - 7, off = 11, scan = w + 4;
+            int[] read = new int[off + scan * h];
+            RasterAccess.read(image, x, y, w, h, read, off, scan);
+            assertArrayEquals(entry.getKey() + " read", image.getRGB(x, y, w, h, null, off, scan), read);
+
+            int[] src = new int[off + scan * h];
+            for (int i = 0; i < src.length; i++) src[i] = random.nextInt();
+            BufferedImage expected = TestFixtures.copy(image);
+            expected.setRGB(x, y, w, h, src, off, scan);
+            RasterAccess.write(image, x, y, w, h, src, off, scan);
+            assertArrayEquals(entry.getKey() + " write", TestFixtures.pixels(expected), TestFixtures.pixels(image));
+        }
+    }
+
+    @Test
+    public void packedKernelsMatchPerPixelFilters() {
+        for (Map.Entry<String, Supplier<BufferedImage>> entry : images().entrySet()) {
+            for (FilterType filter : FilterType.values()) {
+                BufferedImage expected = entry.getValue().get();
+                reference(filter, expected);
+                for (PixelKernels kernels : new PixelKernels[] {Filters.SCALAR, SimdFilters.KERNELS}) {
+                    BufferedImage actual = entry.getValue().get();
+                    Filters.apply(kernels, filter, actual, 0, 0, WIDTH, HEIGHT);
+                    assertArrayEquals(entry.getKey() + " " + filter + " " + kernels.getClass().getSimpleName(),
+                            TestFixtures.pixels(expected), TestFixtures.pixels(actual));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tilesReadingTheSnapshotMatchTheWholeImage() {
+        for (Map.Entry<String, Supplier<BufferedImage>> entry : images().entrySet()) {
+            for (FilterType filter : FilterType.values()) {
+                BufferedImage expected = entry.getValue().get();
+                reference(filter, expected);
+                for (int block : new int[] {1, 5, 16, 40}) {
+                    // Blocks written back one by one must still read their neighbours' input
+                    BufferedImage tiled = entry.getValue().get();
+                    int[] source = Filters.snapshot(tiled);
+                    for (TilingStrategy.Tile tile : TilingStrategy.RASTER.tiles(WIDTH, HEIGHT, block)) {
+                        Filters.apply(Filters.SCALAR, filter, source, tiled, tile.x(), tile.y(), tile.width(), tile.height());
+                    }
+                    FrameBufferPool.release(source);
+                    assertArrayEquals(entry.getKey() + " " + filter + " in blocks of " + block, TestFixtures.pixels(expected), TestFixtures.pixels(tiled));
+                }
+                BufferedImage forkJoin = entry.getValue().get();
+                ForkJoinProcessing.applyFilter(filter, forkJoin, 2, 9);
+                assertArrayEquals(entry.getKey() + " " + filter + " FORKJOIN", TestFixtures.pixels(expected), TestFixtures.pixels(forkJoin));
+                BufferedImage executor = entry.getValue().get();
+                ExecutorServiceProcessing.applyFilter(filter, executor, 2, 9);
+                assertArrayEquals(entry.getKey() + " " + filter + " EXECUTOR", TestFixtures.pixels(expected), TestFixtures.pixels(executor));
+            }
+        }
+    }
+
+    // The original filters of Filters, applied to the whole image
+    private static void reference(FilterType filter, BufferedImage img) {
+        int w = img.getWidth();
+        int h = img.getHeight();
+        switch (filter) {
+            case GRAYSCALE, INVERT, SEPIA -> {
+                for (int y = 0; y < h; y++) {
+                    for (int x = 0; x < w; x++) {
+                        Color c = new Color(img.getRGB(x, y));
+                        int r = c.getRed(), g = c.getGreen(), b = c.getBlue();
+                        Color out = switch (filter) {
+                            case GRAYSCALE -> {
+                                int gray = (int) (0.3 * r + 0.59 * g + 0.11 * b);
+                                yield new Color(gray, gray, gray);
+                            }
+                            case INVERT -> new Color(255 - r, 255 - g, 255 - b);
+                            default -> new Color(clamp((int) (0.393 * r + 0.769 * g + 0.189 * b)),
+                                    clamp((int) (0.349 * r + 0.686 * g + 0.168 * b)),
+                                    clamp((int) (0.272 * r + 0.534 * g + 0.131 * b)));
+                        };
+                        img.setRGB(x, y, out.getRGB());
+                    }
+                }
+            }
+            case GAUSSIAN_BLUR -> {
+                BufferedImage copy = new BufferedImage(w, h, img.getType());
+                for (int y = 0; y < h; y++) {
+                    for (int x = 0; x < w; x++) {
+                        float r = 0, g = 0, b = 0;
+                        for (int ky = -1; ky <= 1; ky++) {
+                            for (int kx = -1; kx <= 1; kx++) {
+                                Color c = new Color(img.getRGB(Math.max(0, Math.min(w - 1, x + kx)), Math.max(0, Math.min(h - 1, y + ky))));
+                                float weight = GAUSS[ky + 1][kx + 1];
+                                r += c.getRed() * weight;
+                                g += c.getGreen() * weight;
+                                b += c.getBlue() * weight;
+                            }
+                        }
+                        copy.setRGB(x, y, new Color(clamp((int) r), clamp((int) g), clamp((int) b)).getRGB());
+                    }
+                }
+                for (int y = 0; y < h; y++) {
+                    for (int x = 0; x < w; x++) img.setRGB(x, y, copy.getRGB(x, y));
+                }
+            }
+            case EDGE_DETECTION -> {
+                BufferedImage copy = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+                for (int y = 1; y < h - 1; y++) {
+                    for (int x = 1; x < w - 1; x++) {
+                        int gx = 0, gy = 0;
+                        for (int ky = -1; ky <= 1; ky++) {
+                            for (int kx = -1; kx <= 1; kx++) {
+                                Color c = new Color(img.getRGB(x + kx, y + ky));
+                                int gray = (int) (0.3 * c.getRed() + 0.59 * c.getGreen() + 0.11 * c.getBlue());
+                                gx += SOBEL_X[ky + 1][kx + 1] * gray;
+                                gy += SOBEL_Y[ky + 1][kx + 1] * gray;
+                            }
+                        }
+                        int magnitude = clamp((int) Math.sqrt(gx * gx + gy * gy));
+                        copy.setRGB(x, y, new Color(magnitude, magnitude, magnitude).getRGB());
+                    }
+                }
+                for (int y = 1; y < h - 1; y++) {
+                    for (int x = 1; x < w - 1; x++) img.setRGB(x, y, copy.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
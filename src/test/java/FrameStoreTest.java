@@ -0,0 +1,61 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.bytedeco.javacv.Frame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Reopening a store: the frame count comes from the header, filtering in place does not grow
+ * the file, and appending after a reopen maps the rest of the last chunk again.
+ */
+public class FrameStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reopenedStoreKeepsItsFramesAndSize() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("clip.frames");
+        try (FrameStore store = FrameStore.create(file, 16, 8, 25)) {
+            for (int i = 0; i < 3; i++) {
+                store.append(frame(i));
+            }
+        }
+        long size = Files.size(file);
+
+        try (FrameStore store = FrameStore.open(file, true)) {
+            assertEquals(3, store.frameCount());
+            ((ByteBuffer) store.frame(1).image[0]).put(0, (byte) 42);
+        }
+        assertEquals(size, Files.size(file));
+
+        try (FrameStore store = FrameStore.open(file, true)) {
+            store.append(frame(3));
+        }
+        try (FrameStore store = FrameStore.open(file, false)) {
+            assertEquals(4, store.frameCount());
+            assertEquals(42, ((ByteBuffer) store.frame(1).image[0]).get(0));
+            for (int i = 0; i < 4; i++) {
+                assertEquals(i == 1 ? 42 : i, ((ByteBuffer) store.frame(i).image[0]).get(0));
+                assertEquals(i, ((ByteBuffer) store.frame(i).image[0]).get(16 * 8 * 3 - 1));
+            }
+        }
+        FrameStore.delete(file);
+        assertFalse(Files.exists(file));
+    }
+
+    // A 16x8 frame with every byte set to value
+    private static Frame frame(int value) {
+        Frame frame = TestFixtures.blankBgrFrame(16, 8);
+        ByteBuffer bytes = (ByteBuffer) frame.image[0];
+        for (int i = 0; i < bytes.capacity(); i++) bytes.put(i, (byte) value);
+        return frame;
+    }
+}
@@ -0,0 +1,47 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A clip whose frames differ from the previous one only in a small moving patch, through a
+ * chain of stencils: with tolerance 0 every output frame must be the one a full filter pass
+ * gives, while most tiles are still reused.
+ */
+public class IncrementalFilterTest {
+
+    private static final int WIDTH = 517;
+    private static final int HEIGHT = 389;
+    private static final int FRAMES = 8;
+
+    @Test
+    public void toleranceZeroMatchesFullFiltering() {
+        FilterPipeline pipeline = FilterPipeline.parse("GAUSSIAN_BLUR(4)>EDGE_DETECTION");
+        for (ImageProcessor processor : new ImageProcessor[] {ImageProcessor.SEQUENTIAL, ImageProcessor.FORKJOIN, ImageProcessor.SIMD, ImageProcessor.EXECUTOR}) {
+            IncrementalFilter incremental = new IncrementalFilter(pipeline, processor, 2, 0);
+            Random random = new Random(20);
+            BufferedImage frame = TestFixtures.noise(BufferedImage.TYPE_INT_RGB, WIDTH, HEIGHT, random);
+            for (int i = 0; i < FRAMES; i++) {
+                if (i > 0) {
+                    // A patch that crosses tile borders and moves a little every frame
+                    int x = 100 + i * 23;
+                    int y = 60 + i * 17;
+                    for (int py = y; py < y + 40; py++) {
+                        for (int px = x; px < x + 40; px++) frame.setRGB(px, py, random.nextInt());
+                    }
+                }
+                BufferedImage expected = TestFixtures.copy(frame);
+                SequentialProcessing.applyFilter(pipeline, expected);
+                BufferedImage actual = TestFixtures.copy(frame);
+                incremental.filter(PixelSurface.of(actual));
+
+                assertArrayEquals(processor + " frame " + i, TestFixtures.pixels(expected), TestFixtures.pixels(actual));
+            }
+            IncrementalFilter.Stats stats = incremental.stats();
+            assertTrue(processor + ": " + stats, stats.reuseRatio() > 0);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * The compiled tables against the per-pixel formulas, over every 24-bit colour. The fixed-point
+ * sums are only bit-exact because of the near-integer fallback, so a change to the table
+ * precision or the margins shows up here as mismatches, not as a slightly different image.
+ */
+public class PointProgramTest {
+
+    private static final FilterType G = FilterType.GRAYSCALE;
+    private static final FilterType S = FilterType.SEPIA;
+    private static final FilterType I = FilterType.INVERT;
+
+    // Applied in blocks, so the bulk path is tested as well as applyPixel
+    private static final int BLOCK = 1 << 16;
+
+    private interface Reference {
+        int apply(int rgb);
+    }
+
+    @Test
+    public void builtInChainsMatchFilters() {
+        FilterType[][] chains = {{G}, {S}, {I}, {G, S}, {S, G}, {S, I}, {I, S}, {S, S}, {I, I}, {I, G, S, I}, {S, I, S}};
+        for (FilterType[] chain : chains) {
+            assertExact(List.of(chain).toString(), PointProgram.compile(chain), rgb -> {
+                for (FilterType filter : chain) rgb = Filters.pointPixel(filter, rgb);
+                return rgb;
+            });
+        }
+    }
+
+    @Test
+    public void mixedChainMatchesItsOperationsOneByOne() {
+        double[][] weights = {{1.2, -0.3, 0.1}, {-0.5, 1.5, 0}, {0.2, 0.2, 0.6}};
+        List<PointProgram.Op> ops = List.of(PointProgram.brightness(-30), PointProgram.swapChannels("GBR"),
+                new PointProgram.Matrix(weights), PointProgram.gamma(0.7), PointProgram.of(S), PointProgram.contrast(1.5),
+                PointProgram.of(G), PointProgram.brightness(20));
+        List<PointProgram> single = new ArrayList<>();
+        for (PointProgram.Op op : ops) single.add(PointProgram.compile(List.of(op)));
+        assertExact("mixed chain", PointProgram.compile(ops), rgb -> {
+            for (PointProgram program : single) rgb = program.applyPixel(rgb);
+            return rgb;
+        });
+    }
+
+    @Test
+    public void matrixMatchesItsFormula() {
+        double[][] weights = {{1.2, -0.3, 0.1}, {-0.5, 1.5, 0}, {0.2, 0.2, 0.6}};
+        assertExact("matrix", PointProgram.compile(List.of(new PointProgram.Matrix(weights))), rgb -> {
+            int r = rgb >> 16 & 0xFF;
+            int g = rgb >> 8 & 0xFF;
+            int b = rgb & 0xFF;
+            int out = 0xFF000000;
+            for (int c = 0; c < 3; c++) {
+                int v = (int) (weights[c][0] * r + weights[c][1] * g + weights[c][2] * b);
+                out |= Filters.clamp(v, 0, 255) << (16 - 8 * c);
+            }
+            return out;
+        });
+    }
+
+    // Every colour, with a translucent alpha that the program must replace by opaque
+    private static void assertExact(String name, PointProgram program, Reference reference) {
+        int[] block = new int[BLOCK];
+        long mismatches = 0;
+        int first = -1;
+        for (int base = 0; base < 1 << 24; base += BLOCK) {
+            for (int i = 0; i < BLOCK; i++) block[i] = 0x7F000000 | base + i;
+            program.apply(block, 0, BLOCK);
+            for (int i = 0; i < BLOCK; i++) {
+                if (block[i] != reference.apply(0x7F000000 | base + i)) {
+                    if (first < 0) first = base + i;
+                    mismatches++;
+                }
+            }
+        }
+        assertEquals(name + " mismatches, first at #" + Integer.toHexString(first), 0, mismatches);
+    }
+}
@@ -0,0 +1,33 @@
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Isolated work, as used by calibration sweeps: it filters on pools of its own, which are
+ * invisible to poolStats() and shut down afterwards, while the shared pools are left alone.
+ */
+public class ProcessingRuntimeTest {
+
+    @Test
+    public void isolatedWorkGetsPrivatePools() {
+        ForkJoinPool shared = ProcessingRuntime.forkJoinPool(3);
+        TestFixtures.Probe probe = new TestFixtures.Probe();
+
+        ForkJoinPool own = ProcessingRuntime.isolated(() -> {
+            ForkJoinProcessing.applyFilter(FilterPipeline.of(probe), new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB), 3, 32);
+            return ProcessingRuntime.forkJoinPool(3);
+        });
+
+        assertNotSame(shared, own);
+        assertTrue(own.isShutdown());
+        assertTrue(probe.peak.get() > 0);
+        assertSame(shared, ProcessingRuntime.forkJoinPool(3));
+        assertFalse(shared.isShutdown());
+    }
+}
@@ -0,0 +1,150 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * The coordinator with fake workers, which only record what they were given and fail on cue,
+ * and the filter step of worker threads on plain frames; decoding and encoding segments needs
+ * FFmpeg and real video, and is not covered here.
+ */
+public class SegmentedVideoTest {
+
+    // count segments of different lengths; the last one runs to the end of the input
+    private static List<SegmentedVideo.Task> tasks(int count) {
+        List<SegmentedVideo.Task> tasks = new ArrayList<>();
+        long start = 0;
+        for (int i = 0; i < count; i++) {
+            long end = i == count - 1 ? Long.MAX_VALUE : start + 1000 + i * 37 % 500;
+            tasks.add(new SegmentedVideo.Task("in.mp4", new SegmentedVideo.Segment(i, start, end),
+                    Path.of("segment-" + i + ".ts"), "GRAYSCALE", ImageProcessor.FORKJOIN, 1, 0));
+            start = end;
+        }
+        return tasks;
+    }
+
+    @Test
+    public void failedSegmentsAreRetriedAndFailingWorkersDropped() throws IOException {
+        Map<Integer, Integer> doneBy = new ConcurrentHashMap<>();
+        AtomicInteger badAttempts = new AtomicInteger();
+        AtomicBoolean failedOnce = new AtomicBoolean();
+        List<SegmentedVideo.Worker> workers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            int id = w;
+            workers.add(task -> {
+                Thread.sleep(5);
+                if (id == 2) {
+                    badAttempts.incrementAndGet();
+                    throw new IOException("bad worker");
+                }
+                if (task.segment().index() == 5 && failedOnce.compareAndSet(false, true)) {
+                    throw new IOException("transient");
+                }
+                assertTrue("segment done twice", doneBy.put(task.segment().index(), id) == null);
+            });
+        }
+        int retries = SegmentedVideo.runAll(workers, tasks(12));
+
+        assertEquals(12, doneBy.size());
+        assertFalse(doneBy.containsValue(2));
+        assertTrue("bad worker was used " + badAttempts.get() + " times", badAttempts.get() <= 2);
+        assertEquals(badAttempts.get() + 1, retries);
+    }
+
+    @Test
+    public void segmentThatAlwaysFailsGivesUpAfterThreeAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+        SegmentedVideo.Worker worker = task -> {
+            if (task.segment().index() == 3) {
+                attempts.incrementAndGet();
+                throw new IOException("corrupt GOP");
+            }
+        };
+        IOException e = assertThrows(IOException.class, () -> SegmentedVideo.runAll(List.of(worker, worker), tasks(6)));
+
+        assertEquals(3, attempts.get());
+        assertEquals("corrupt GOP", e.getCause().getMessage());
+    }
+
+    @Test
+    public void lastWorkerIsKeptEvenWhenItFails() throws IOException {
+        AtomicInteger calls = new AtomicInteger();
+        SegmentedVideo.Worker flaky = task -> {
+            if (calls.incrementAndGet() <= 2) throw new IOException("flaky");
+        };
+
+        assertEquals(2, SegmentedVideo.runAll(List.of(flaky), tasks(4)));
+        assertEquals(6, calls.get());
+    }
+
+    @Test
+    public void longestSegmentsGoFirst() throws IOException {
+        List<SegmentedVideo.Task> tasks = tasks(8);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        SegmentedVideo.runAll(List.of(task -> order.add(task.segment().index())), tasks);
+
+        List<Integer> expected = new ArrayList<>();
+        expected.add(7);
+        tasks.subList(0, 7).stream()
+                .sorted((a, b) -> Long.compare(b.segment().endMicros() - b.segment().startMicros(),
+                        a.segment().endMicros() - a.segment().startMicros()))
+                .forEach(task -> expected.add(task.segment().index()));
+        assertEquals(expected, order);
+    }
+
+    @Test
+    public void workerThreadsFilterTheirFramesConcurrently() throws Exception {
+        int workers = 4;
+        // Worker processes keep their share; worker threads filter inline or share one pool
+        assertEquals(2, SegmentedVideo.workerThreads(2, workers, true));
+        assertEquals(1, SegmentedVideo.workerThreads(1, workers, false));
+        assertEquals(8, SegmentedVideo.workerThreads(2, workers, false));
+
+        for (int tileThreads : new int[] {1, 2}) {
+            int threads = SegmentedVideo.workerThreads(tileThreads, workers, false);
+            for (ImageProcessor processor : new ImageProcessor[] {ImageProcessor.FORKJOIN, ImageProcessor.EXECUTOR, ImageProcessor.SIMD}) {
+                int peak = peakFiltering(processor, threads, workers);
+                assertTrue(processor + " with " + threads + " threads filtered at most " + peak + " frame at a time", peak > 1);
+            }
+        }
+    }
+
+    // Most frames inside the filter at once while every worker filters three frames of its segment
+    private static int peakFiltering(ImageProcessor processor, int threads, int workers) throws Exception {
+        TestFixtures.Probe probe = new TestFixtures.Probe();
+        FilterPipeline pipeline = FilterPipeline.of(probe);
+        ExecutorService segments = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                SegmentedVideo.Task task = new SegmentedVideo.Task("in.mp4", new SegmentedVideo.Segment(w, 0, Long.MAX_VALUE),
+                        Path.of("segment-" + w + ".ts"), pipeline.toString(), processor, threads, 32);
+                running.add(segments.submit(() -> {
+                    for (int i = 0; i < 3; i++) {
+                        SegmentedVideo.filter(TestFixtures.blankBgrFrame(32, 32), pipeline, task);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : running) future.get();
+        } finally {
+            segments.shutdown();
+        }
+        return probe.peak.get();
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.EnumSet;
+import java.util.OptionalInt;
+import java.util.Set;
+
+/**
+ * A plugin as a third party would write it, registered in the test resources' META-INF/services:
+ *
+ *   XOR(n): flips the colour bits of n in every pixel, into a second buffer.
+ *   SHIFT(n): each pixel takes the one n to the right and n above, clamped to what it reads.
+ *
+ * and filters whose declared footprints are impossible (a point filter with a halo, a stencil
+ * in place, no cost, no packed layout), as is SHIFT(0), a stencil reading no neighbours.
+ */
+public final class TestFilters implements FilterProvider {
+
+    private record Xor(int mask) implements PixelFilter {
+
+        @Override
+        public String spec() {
+            return "XOR(" + mask + ")";
+        }
+
+        @Override
+        public Footprint footprint() {
+            return new Footprint(Kind.POINT, 0, false, 0.5, EnumSet.of(Layout.PACKED_RGB));
+        }
+
+        @Override
+        public void apply(PixelKernels kernels, int[] src, int[] dst, int off, int len) {
+            for (int i = off; i < off + len; i++) dst[i] = src[i] ^ (mask & 0xFFFFFF);
+        }
+    }
+
+    private record Shift(int distance) implements PixelFilter {
+
+        @Override
+        public String spec() {
+            return "SHIFT(" + distance + ")";
+        }
+
+        @Override
+        public Footprint footprint() {
+            return Footprint.neighbourhood(distance, 0.5);
+        }
+
+        @Override
+        public void apply(PixelKernels kernels, int[] src, int srcX, int srcY, int srcW, int srcH,
+                          int[] dst, int dstX, int dstY, int dstW, int dstH, int imageW, int imageH) {
+            for (int y = 0; y < dstH; y++) {
+                int sy = Math.max(srcY, dstY + y - distance) - srcY;
+                for (int x = 0; x < dstW; x++) {
+                    int sx = Math.min(srcX + srcW - 1, dstX + x + distance) - srcX;
+                    dst[y * dstW + x] = src[sy * srcW + sx];
+                }
+            }
+        }
+    }
+
+    // A filter that only declares a footprint, for the ones the pipeline must refuse
+    private record Declared(String spec, PixelFilter.Kind kind, int halo, boolean inPlace, double cost,
+                            Set<PixelFilter.Layout> layouts) implements PixelFilter {
+
+        @Override
+        public Footprint footprint() {
+            return new Footprint(kind, halo, inPlace, cost, layouts);
+        }
+    }
+
+    @Override
+    public Set<String> names() {
+        return Set.of("XOR", "SHIFT", "BAD_HALO", "STENCIL_IN_PLACE", "FREE", "YUV_ONLY");
+    }
+
+    @Override
+    public PixelFilter create(String name, OptionalInt argument) {
+        int value = argument.orElse(1);
+        Set<PixelFilter.Layout> packed = EnumSet.of(PixelFilter.Layout.PACKED_RGB);
+        return switch (name) {
+            case "XOR" -> new Xor(value);
+            case "SHIFT" -> new Shift(value);
+            case "BAD_HALO" -> new Declared(name, PixelFilter.Kind.POINT, value, true, 1, packed);
+            case "STENCIL_IN_PLACE" -> new Declared(name, PixelFilter.Kind.NEIGHBOURHOOD, value, true, 1, packed);
+            case "FREE" -> new Declared(name, PixelFilter.Kind.POINT, 0, true, 0, packed);
+            case "YUV_ONLY" -> new Declared(name, PixelFilter.Kind.POINT, 0, true, 1, EnumSet.of(PixelFilter.Layout.YUV420P));
+            default -> throw new IllegalArgumentException("Unknown filter: " + name);
+        };
+    }
+}
@@ -0,0 +1,79 @@
+import java.awt.image.BufferedImage;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Shared test fixtures: a filter that measures how many calls run at once, plain frames that
+ * need no FFmpeg, and random images to compare filter results on.
+ */
+final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    // A point filter that only sleeps, and records how many calls were inside it at once
+    static final class Probe implements PixelFilter {
+
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+
+        @Override
+        public String spec() {
+            return "PROBE";
+        }
+
+        @Override
+        public Footprint footprint() {
+            return Footprint.point(1.0);
+        }
+
+        @Override
+        public void apply(PixelKernels kernels, int[] src, int[] dst, int off, int len) {
+            peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    // A blank 8-bit BGR frame on the heap, like the frames a grabber hands out
+    static Frame blankBgrFrame(int width, int height) {
+        Frame frame = new Frame();
+        frame.imageWidth = width;
+        frame.imageHeight = height;
+        frame.imageDepth = Frame.DEPTH_UBYTE;
+        frame.imageChannels = 3;
+        frame.imageStride = width * 3;
+        frame.image = new Buffer[] {ByteBuffer.allocate(width * height * 3)};
+        return frame;
+    }
+
+    // An image of the given type filled with random opaque or translucent colours
+    static BufferedImage noise(int type, int width, int height, Random random) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) image.setRGB(x, y, random.nextInt());
+        }
+        return image;
+    }
+
+    // A new image of the same type and pixels, backed by its own raster
+    static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        copy.setRGB(0, 0, image.getWidth(), image.getHeight(), pixels(image), 0, image.getWidth());
+        return copy;
+    }
+
+    // Every pixel as getRGB returns it, row by row
+    static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
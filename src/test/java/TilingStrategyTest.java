@@ -0,0 +1,56 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Every strategy must hand out each pixel exactly once, also for the sizes the recursive and
+ * aligned splits are most likely to get wrong: one-pixel strips, prime sides, and blocks that
+ * do not divide the image or are larger than it.
+ */
+public class TilingStrategyTest {
+
+    private static final int[][] SIZES = {{1, 1}, {1, 997}, {997, 1}, {2, 3}, {17, 1}, {97, 89}, {101, 13}, {640, 7}};
+    private static final int[] BLOCKS = {0, 1, 2, 7, 16, 31, 64, 1000};
+
+    @Test
+    public void everyPixelIsCoveredExactlyOnce() {
+        for (TilingStrategy strategy : TilingStrategy.values()) {
+            for (int[] size : SIZES) {
+                for (int block : BLOCKS) {
+                    String what = strategy + " " + size[0] + "x" + size[1] + " block " + block;
+                    int[] hits = new int[size[0] * size[1]];
+                    List<TilingStrategy.Tile> tiles = strategy.tiles(size[0], size[1], block);
+                    for (TilingStrategy.Tile tile : tiles) {
+                        assertTrue(what + ": " + tile, tile.width() > 0 && tile.height() > 0
+                                && tile.x() >= 0 && tile.y() >= 0
+                                && tile.x() + tile.width() <= size[0] && tile.y() + tile.height() <= size[1]);
+                        for (int y = tile.y(); y < tile.y() + tile.height(); y++) {
+                            for (int x = tile.x(); x < tile.x() + tile.width(); x++) hits[y * size[0] + x]++;
+                        }
+                    }
+                    for (int i = 0; i < hits.length; i++) {
+                        assertEquals(what + ", pixel " + i % size[0] + "," + i / size[0], 1, hits[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void blockLargerThanTheImageIsOneTile() {
+        for (TilingStrategy strategy : TilingStrategy.values()) {
+            assertEquals(strategy.toString(), List.of(new TilingStrategy.Tile(0, 0, 97, 89)), strategy.tiles(97, 89, 1000));
+        }
+    }
+
+    @Test
+    public void emptyImageHasNoTiles() {
+        for (TilingStrategy strategy : TilingStrategy.values()) {
+            assertTrue(strategy.tiles(0, 50, 16).isEmpty());
+            assertTrue(strategy.tiles(50, 0, 16).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.bytedeco.javacv.Frame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The frame-store pass without encoding, which needs no FFmpeg: frames are filtered in place in
+ * the mapped file by the frame workers, and must really be filtered several at a time.
+ */
+public class VideoPipelineTest {
+
+    private static final int FRAMES = 12;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void smallFramesAreFilteredConcurrently() throws IOException {
+        for (ImageProcessor processor : new ImageProcessor[] {ImageProcessor.FORKJOIN, ImageProcessor.EXECUTOR, ImageProcessor.SIMD}) {
+            // 32x32 frames get one tile thread each, so four threads mean four frame workers
+            assertEquals(1, AutoTuner.frameSplit(32, 32, 4).frameThreads());
+            TestFixtures.Probe probe = new TestFixtures.Probe();
+            try (FrameStore store = store(processor + ".frames", 32, 32)) {
+                VideoPipeline.Report report = VideoPipeline.process(store, null, FilterPipeline.of(probe), processor, 4, 32);
+
+                assertEquals(FRAMES, report.frames());
+                assertTrue(processor + " filtered at most " + probe.peak.get() + " frame at a time", probe.peak.get() > 1);
+            }
+        }
+    }
+
+    @Test
+    public void largeFramesShareOnePoolOfTheWholeBudget() {
+        AutoTuner.FrameSplit split = AutoTuner.frameSplit(3840, 2160, 8);
+
+        assertEquals(2, split.frameWorkers());
+        assertEquals(4, split.tileThreads());
+        assertEquals(8, split.frameThreads());
+    }
+
+    private FrameStore store(String name, int width, int height) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        FrameStore store = FrameStore.create(file, width, height, 25);
+        Frame frame = TestFixtures.blankBgrFrame(width, height);
+        for (int i = 0; i < FRAMES; i++) {
+            store.append(frame);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,25 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+/**
+ * A pinned thread count on the virtual-thread backend: the tiles go to the shared CPU pool, but
+ * never more of them at once than the caller asked for.
+ */
+public class VirtualThreadProcessingTest {
+
+    @Test
+    public void pinnedThreadsBoundConcurrentTiles() {
+        int parallelism = ProcessingRuntime.cpuPool().getParallelism();
+        for (int threads : new int[] {1, 2}) {
+            TestFixtures.Probe probe = new TestFixtures.Probe();
+            VirtualThreadProcessing.applyFilter(FilterPipeline.of(probe), new BufferedImage(128, 128, BufferedImage.TYPE_INT_RGB), threads, 32);
+
+            assertTrue(threads + " threads pinned, " + probe.peak.get() + " tiles at once", probe.peak.get() <= threads);
+            if (parallelism >= threads) assertEquals(threads, probe.peak.get());
+        }
+    }
+}